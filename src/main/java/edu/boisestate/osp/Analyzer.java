@@ -37,7 +37,6 @@ import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.stream.IntStream;
 
@@ -194,6 +193,23 @@ public class Analyzer{
     }
     
     public Report analyze(Request r){
+        ScoringMetrics.Scoring scoring = as.metrics.beginScoring();
+        try{
+            return analyzeNetwork(r);
+        } finally {
+            as.metrics.endScoring(scoring, false, 1);
+        }
+    }
+    
+    /**
+     * Returns the counts and timings of the analyses done by this analyzer.
+     * @return
+     */
+    public ScoringMetrics getMetrics(){
+        return as.getMetrics();
+    }
+    
+    private Report analyzeNetwork(Request r){
         Collection<String> neededProperties = new HashSet<>();
         Collection<String> neededParameters = new HashSet<>();
         
@@ -576,26 +592,30 @@ public class Analyzer{
     
     static private class AnalysisSupervisor{
         final ExecutorService es;
+        final ScoringMetrics metrics; // counts and timings of analyses. also records the tasks run by es.
         final int maxThreads;
         final int maxThreadsPerNetwork;
         
         final Map<Integer,int[]> knownRanges;
         final Map<Integer,Combination[]> knownCombos; // map connecting variable domain index to affected combinations;
         final Map<Integer,Map<Integer,BasePair[][]>> knownBasePairs;
+        final Map<Integer,Map<Integer,DuplexPointsTable>> knownPointsTables; // map connecting SLC and SB to a points table.
 
-        final Map<Integer,BigInteger> knownIntraScores;
-        final Map<Integer,BigInteger> knownInterScores;
         
         AnalysisSupervisor(int maxThreads, int maxThreadsPerNetwork){
             this.maxThreads = maxThreads;
             this.maxThreadsPerNetwork = maxThreadsPerNetwork;
-            es = Executors.newFixedThreadPool(maxThreads);
+            metrics = new ScoringMetrics("Analyzer");
+            es = metrics.newFixedThreadPool(maxThreads);
             
-            knownIntraScores = new ConcurrentHashMap<>();
-            knownInterScores = new ConcurrentHashMap<>();
             knownRanges = new ConcurrentHashMap<>();
             knownBasePairs = new ConcurrentHashMap<>();
             knownCombos = new ConcurrentHashMap<>();
+            knownPointsTables = new ConcurrentHashMap<>();
+        }
+        
+        ScoringMetrics getMetrics(){
+            return metrics;
         }
         
         Map<Integer,Integer> getBaselineInterDuplexCount( IDomainBasedEncodedNetwork network, int interSLC){
@@ -1760,25 +1780,26 @@ public class Analyzer{
         }
         
         BigInteger getN (Map<Integer,Integer> uniqueLengthCounts, int interSB, int interSLC){
-            BigInteger retScore = BigInteger.valueOf(0);
-            for(Map.Entry<Integer,Integer> entry: uniqueLengthCounts.entrySet()){
-                int length = entry.getKey();
-                int counts = entry.getValue();
-                BigInteger lengthScore = knownInterScores.computeIfAbsent(length, (x)->calculateUniqueDuplexPoints(x, interSLC, interSB));
-                retScore = retScore.add(lengthScore.multiply(BigInteger.valueOf(counts)));
-            }
-            return retScore;
+            return getPointsTable(uniqueLengthCounts, interSLC, interSB).getScore(uniqueLengthCounts);
         }
         
         BigInteger getO (Map<Integer,Integer> uniqueLengthCounts, int intraSB, int intraSLC){
-            BigInteger retScore = BigInteger.valueOf(0);
-            for(Map.Entry<Integer,Integer> entry: uniqueLengthCounts.entrySet()){
-                int length = entry.getKey();
-                int counts = entry.getValue();
-                BigInteger lengthScore = knownIntraScores.computeIfAbsent(length, (x)->calculateUniqueDuplexPoints(x, intraSLC, intraSB));
-                retScore = retScore.add(lengthScore.multiply(BigInteger.valueOf(counts)));
+            return getPointsTable(uniqueLengthCounts, intraSLC, intraSB).getScore(uniqueLengthCounts);
+        }
+        
+        // returns a table of points covering at least the longest counted duplex.
+        // a table is only built again when a longer duplex is counted.
+        private DuplexPointsTable getPointsTable(Map<Integer,Integer> uniqueLengthCounts, int slc, int sb){
+            int maxLength = 0;
+            for (int length : uniqueLengthCounts.keySet()){
+                maxLength = Math.max(maxLength, length);
             }
-            return retScore;
+            Map<Integer,DuplexPointsTable> tables = knownPointsTables.computeIfAbsent(slc, x -> new ConcurrentHashMap<>());
+            DuplexPointsTable table = tables.get(sb);
+            if (table == null || table.getMaxLength() < maxLength){
+                table = tables.merge(sb, new DuplexPointsTable(maxLength, slc, sb), (x,y) -> (x.getMaxLength() >= y.getMaxLength()) ? x : y);
+            }
+            return table;
         }
         
         static private class CountInterDuplexRequest implements Callable<int[]>{
@@ -2238,6 +2259,15 @@ public class Analyzer{
                 retIndex++;
             }
         }
+        
+        // every base-pair of every combination is visited by the caller.
+        long basePairs = 0;
+        for (Combination combo : ret){
+            for (BasePair[] bps : combo.allBP){
+                basePairs += bps.length;
+            }
+        }
+        as.metrics.addVisited(ret.length, basePairs);
 
         return ret;
     }
@@ -2253,18 +2283,6 @@ public class Analyzer{
         }
     }
     
-    private static BigInteger calculateUniqueDuplexPoints (int length, int slc, int base){
-        BigInteger score = BigInteger.valueOf(0);
-        
-        int numberOfStructures = 1;
-        for (int i = length; i >= slc; i--){
-            score = score.add(BigInteger.valueOf(base).pow(i).multiply(BigInteger.valueOf(numberOfStructures)));
-            numberOfStructures++;
-        }
-        
-        return score;
-    }
-    
     private static Map<String,int[]> encode(String[] names, String[] sequences){
         Map<String,int[]> encoded = new HashMap<>();
     for(int i : IntStream.range(0, names.length).toArray()){
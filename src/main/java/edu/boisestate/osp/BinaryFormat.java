@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2019 Boise State University
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package edu.boisestate.osp;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads and writes the strings, arrays and maps held by checkpoints, topology
+ * snapshots and the messages of LineageProtocol. A string is written as the
+ * number of its UTF-8 bytes followed by the bytes, and an array or map as the
+ * number of its elements followed by the elements. Values read from a stream
+ * may come from another process, so their lengths are checked before any
+ * memory is allocated for them.
+ *
+ * @author mtobi
+ */
+public final class BinaryFormat {
+    static final int MAX_STRING_BYTES = 1 << 24; // longest string read from a stream.
+    static final int MAX_COUNT = 1 << 20; // most elements of an array or map read from a stream.
+
+    private BinaryFormat(){
+    }
+
+    /**
+     * Writes a string which is read by readString.
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    public static void writeString(DataOutputStream out, String value) throws IOException{
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by writeString.
+     * @param in
+     * @return
+     * @throws IOException if the string is longer than MAX_STRING_BYTES or the stream ends first.
+     */
+    public static String readString(DataInputStream in) throws IOException{
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) throw new IOException("String of "+length+" bytes exceeds the limit of "+MAX_STRING_BYTES+" bytes.");
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a string written by writeString.
+     * @param in
+     * @return
+     * @throws BufferUnderflowException if the string is longer than the remaining bytes.
+     */
+    public static String readString(ByteBuffer in){
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) throw new BufferUnderflowException();
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the number of elements of an array or map.
+     * @param in
+     * @return
+     * @throws IOException if the number is negative or greater than MAX_COUNT.
+     */
+    public static int readCount(DataInputStream in) throws IOException{
+        int count = in.readInt();
+        if (count < 0 || count > MAX_COUNT) throw new IOException("Count of "+count+" exceeds the limit of "+MAX_COUNT+".");
+        return count;
+    }
+
+    /**
+     * Reads the number of elements of an array or map, each of which takes at
+     * least one byte.
+     * @param in
+     * @return
+     * @throws BufferUnderflowException if the number is negative or greater than the remaining bytes.
+     */
+    public static int readCount(ByteBuffer in){
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining()) throw new BufferUnderflowException();
+        return count;
+    }
+
+    /**
+     * Writes an array which is read by readStrings.
+     * @param out
+     * @param values
+     * @throws IOException
+     */
+    public static void writeStrings(DataOutputStream out, String[] values) throws IOException{
+        out.writeInt(values.length);
+        for (String value : values){
+            writeString(out, value);
+        }
+    }
+
+    /**
+     * Reads an array written by writeStrings.
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static String[] readStrings(DataInputStream in) throws IOException{
+        String[] values = new String[readCount(in)];
+        for (int i = 0; i < values.length; i++){
+            values[i] = readString(in);
+        }
+        return values;
+    }
+
+    /**
+     * Writes the entries of a map, in the order of the map, which are read by
+     * readMap.
+     * @param out
+     * @param map
+     * @throws IOException
+     */
+    public static void writeMap(DataOutputStream out, Map<String,String> map) throws IOException{
+        out.writeInt(map.size());
+        for (Map.Entry<String,String> entry : map.entrySet()){
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+    }
+
+    /**
+     * Reads a map written by writeMap.
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static Map<String,String> readMap(DataInputStream in) throws IOException{
+        Map<String,String> map = new TreeMap<>();
+        int size = readCount(in);
+        for (int i = 0; i < size; i++){
+            String key = readString(in);
+            map.put(key, readString(in));
+        }
+        return map;
+    }
+
+    /**
+     * Writes a map which is read by readListMap.
+     * @param out
+     * @param map
+     * @throws IOException
+     */
+    public static void writeListMap(DataOutputStream out, Map<String,String[]> map) throws IOException{
+        out.writeInt(map.size());
+        for (Map.Entry<String,String[]> entry : map.entrySet()){
+            writeString(out, entry.getKey());
+            writeStrings(out, entry.getValue());
+        }
+    }
+
+    /**
+     * Reads a map written by writeListMap.
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static Map<String,String[]> readListMap(DataInputStream in) throws IOException{
+        Map<String,String[]> map = new TreeMap<>();
+        int size = readCount(in);
+        for (int i = 0; i < size; i++){
+            String key = readString(in);
+            map.put(key, readStrings(in));
+        }
+        return map;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2019 Boise State University
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package edu.boisestate.osp;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stores the state of an optimization in a file, so that an interrupted
+ * optimization can be resumed.
+ * 
+ * A checkpoint is identified by a digest of the fixed domains, the initial
+ * variable domains, the domains of each oligomer and the parameters of the
+ * optimization. A resumed optimization therefore only finds checkpoints
+ * written with identical inputs and parameters. The digest does not cover
+ * the saved state, so a damaged checkpoint is only found while it is read.
+ * 
+ * @author mtobi
+ */
+public final class Checkpoint extends DigestFile {
+    static final int MAGIC = 0x4F535043; // first four bytes of every checkpoint file.
+    static final int VERSION = 1; // incremented whenever the contents of any checkpoint change.
+    
+    /**
+     * Creates a checkpoint of the given kind for the given inputs.
+     * @param directory directory holding the checkpoint files.
+     * @param kind name of the optimization whose state is held by the checkpoint.
+     * @param fixedDomains
+     * @param oligomerDomains
+     * @param variableDomains
+     * @param parameters parameters the optimization depends on.
+     */
+    public Checkpoint(File directory, String kind, Map<String,String> fixedDomains, Map<String,String[]> oligomerDomains, Map<String,String> variableDomains, Map<String,String> parameters){
+        super(directory, kind+"-checkpoint-", MAGIC, VERSION, "checkpoint", kind, out -> {
+            writeMap(out, fixedDomains);
+            writeMap(out, variableDomains);
+            out.writeInt(oligomerDomains.size());
+            for (Map.Entry<String,String[]> entry : new TreeMap<>(oligomerDomains).entrySet()){
+                BinaryFormat.writeString(out, entry.getKey());
+                BinaryFormat.writeStrings(out, entry.getValue());
+            }
+            writeMap(out, parameters);
+        });
+    }
+    
+    // writes the entries of the map in the order of their keys.
+    private static void writeMap(DataOutputStream out, Map<String,String> map) throws IOException{
+        Map<String,String> trimmed = new TreeMap<>();
+        for (Map.Entry<String,String> entry : map.entrySet()){
+            trimmed.put(entry.getKey(), entry.getValue().trim());
+        }
+        BinaryFormat.writeMap(out, trimmed);
+    }
+}
@@ -440,6 +440,10 @@ public class DevPro {
         String ODFP_DEFAULT = "dp_in_oligomers.txt";
         String ODFP_DESCRIPTION = "File listing the domains on each oligomer.";
 
+        String TOPOLOGY_SNAPSHOT_LABEL = "topologySnapshotDirectory";
+        String TOPOLOGY_SNAPSHOT_DEFAULT = "false";
+        String TOPOLOGY_SNAPSHOT_DESCRIPTION = "Directory where structures derived from the network topology are stored, so that later runs on the same topology start faster. Value must be either false or a directory path.";
+
         // output files
         String OUTPUT_DIRECTORY_DEFAULT = "output" + File.separator;
         String OUTPUT_DIRECTORY_LABEL = "outputDirectory";
@@ -493,6 +497,9 @@ public class DevPro {
                     PS.println("// " + ODFP_LABEL + " - " + ODFP_DESCRIPTION);
                     PS.println(ODFP_LABEL+"\t"+ODFP_DEFAULT);
                     PS.println();
+                    PS.println("// " + TOPOLOGY_SNAPSHOT_LABEL + " - " + TOPOLOGY_SNAPSHOT_DESCRIPTION);
+                    PS.println(TOPOLOGY_SNAPSHOT_LABEL+"\t"+TOPOLOGY_SNAPSHOT_DEFAULT);
+                    PS.println();
                     
                     PS.println("// *******************");
                     PS.println("// Analysis Parameters");
@@ -570,7 +577,10 @@ public class DevPro {
         
         // make network object
         final ICoder coder = new Coder();
-        final FactoryDomainBasedEncodedNetwork factory = new FactoryDomainBasedEncodedNetwork(coder, fixedDomains, oligomerDomains, variableDomains);
+        final String TOPOLOGYSNAPSHOT = providedParameters.getOrDefault(TOPOLOGY_SNAPSHOT_LABEL, TOPOLOGY_SNAPSHOT_DEFAULT);
+        usedParameters.put(TOPOLOGY_SNAPSHOT_LABEL, TOPOLOGYSNAPSHOT);
+        final File snapshotDirectory = TOPOLOGYSNAPSHOT.equalsIgnoreCase("false") ? null : new File(TOPOLOGYSNAPSHOT);
+        final FactoryDomainBasedEncodedNetwork factory = new FactoryDomainBasedEncodedNetwork(coder, fixedDomains, oligomerDomains, variableDomains, snapshotDirectory);
         final IDomainBasedEncodedNetwork network = factory.getNewNetwork(variableDomains);
         
         Collection<String> requestedProperties = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
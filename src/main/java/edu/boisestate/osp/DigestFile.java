@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2019 Boise State University
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package edu.boisestate.osp;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * A file named and identified by a SHA-256 digest of the inputs its contents
+ * depend on.
+ *
+ * The digest covers the kind of the contents, the format version and whatever
+ * inputs the subclass writes. The file starts with a magic number, the version
+ * and the digest, which are checked when the file is loaded, so that a file
+ * written for other inputs or by another version is never used. Files are
+ * read into memory, so that no mapping keeps them open and they can be
+ * replaced while in use. They are written to a temporary file which is then
+ * moved into place, so that no reader sees a partial file and an interrupted
+ * write leaves the previous file intact.
+ *
+ * @author mtobi
+ */
+public abstract class DigestFile {
+    final int magic; // first four bytes of the file.
+    final int version;
+    final String description; // names the file in messages.
+    final File file;
+    final byte[] digest;
+    
+    /**
+     * Writes the contents of a file, or the inputs which are digested.
+     */
+    public interface Contents{
+        void write(DataOutputStream out) throws IOException;
+    }
+    
+    /**
+     * @param directory directory holding the file.
+     * @param prefix start of the file name, which continues with the digest.
+     * @param magic first four bytes of the file.
+     * @param version format version of the file.
+     * @param description names the file in messages.
+     * @param kind name of the contents.
+     * @param inputs writes the inputs the contents depend on.
+     */
+    DigestFile(File directory, String prefix, int magic, int version, String description, String kind, Contents inputs){
+        this.magic = magic;
+        this.version = version;
+        this.description = description;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try{
+            out.writeUTF(kind);
+            out.writeInt(version);
+            inputs.write(out);
+            out.flush();
+            digest = MessageDigest.getInstance("SHA-256").digest(bytes.toByteArray());
+        } catch (IOException | NoSuchAlgorithmException e){
+            throw new IllegalStateException(e);
+        }
+        
+        StringBuilder name = new StringBuilder(prefix);
+        for (int i = 0; i < 16; i++){
+            name.append(String.format("%02x", digest[i]));
+        }
+        this.file = new File(directory, name.append(".bin").toString());
+    }
+    
+    /**
+     * Returns the file.
+     * @return
+     */
+    public File getFile(){
+        return file;
+    }
+    
+    /**
+     * Returns the contents of the file, or null if the file does not exist or
+     * was written for different inputs or by a different version.
+     * @return
+     */
+    public ByteBuffer load(){
+        if (!file.isFile()) return null;
+        try{
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            if (buffer.remaining() < 8+digest.length || buffer.getInt() != magic || buffer.getInt() != version) return null;
+            byte[] storedDigest = new byte[digest.length];
+            buffer.get(storedDigest);
+            if (!Arrays.equals(storedDigest, digest)) return null;
+            return buffer.slice();
+        } catch (IOException e){
+            System.out.println("Could not load "+description+" "+file+": "+e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Stores the given contents, replacing the previous file. Failures are
+     * reported and otherwise ignored, since the caller can always continue
+     * without the file.
+     * @param contents
+     */
+    public void save(Contents contents){
+        File temporaryFile = null;
+        try{
+            File directory = file.getAbsoluteFile().getParentFile();
+            Files.createDirectories(directory.toPath());
+            temporaryFile = File.createTempFile(file.getName(), ".tmp", directory);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile.toPath())))){
+                out.writeInt(magic);
+                out.writeInt(version);
+                out.write(digest);
+                contents.write(out);
+            }
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e){
+            System.out.println("Could not save "+description+" "+file+": "+e.getMessage());
+            if (temporaryFile != null) temporaryFile.delete();
+        }
+    }
+    
+    /**
+     * Writes a value which is read by readBigInteger.
+     * @param out
+     * @param value
+     * @throws IOException
+     */
+    public static void writeBigInteger(DataOutputStream out, BigInteger value) throws IOException{
+        byte[] bytes = value.toByteArray();
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    /**
+     * Reads a value written by writeBigInteger.
+     * @param in
+     * @return
+     */
+    public static BigInteger readBigInteger(ByteBuffer in){
+        byte[] bytes = new byte[BinaryFormat.readCount(in)];
+        in.get(bytes);
+        return new BigInteger(bytes);
+    }
+    
+    /**
+     * Writes an array which is read by readInts.
+     * @param out
+     * @param values
+     * @throws IOException
+     */
+    public static void writeInts(DataOutputStream out, int[] values) throws IOException{
+        out.writeInt(values.length);
+        for (int value : values){
+            out.writeInt(value);
+        }
+    }
+    
+    /**
+     * Reads an array written by writeInts.
+     * @param in
+     * @return
+     */
+    public static int[] readInts(ByteBuffer in){
+        int[] values = new int[BinaryFormat.readCount(in)];
+        in.asIntBuffer().get(values);
+        in.position(in.position()+4*values.length);
+        return values;
+    }
+}
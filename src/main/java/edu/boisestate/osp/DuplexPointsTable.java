@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2019 Boise State University
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package edu.boisestate.osp;
+
+import java.math.BigInteger;
+import java.util.Map;
+
+/**
+ * Stores the points of a unique duplex of each length up to a maximum length.
+ *
+ * Points which fit in 127 bits are stored as two 64 bit words. A histogram of
+ * duplex lengths is then scored as a 128 bit dot product with the table.
+ * BigInteger arithmetic is only used for lengths with larger points, or when
+ * the sum overflows.
+ *
+ * @author mtobi
+ */
+public final class DuplexPointsTable {
+    private static final int WIDE = -1; // high word of lengths whose points need more than 127 bits.
+    
+    final int maxLength;
+    final int slc;
+    final int base;
+    final BigInteger[] points; // points of each length. calculated when first needed for wide lengths.
+    final long[] highWords; // bits 64 to 126 of the points of each length.
+    final long[] lowWords; // bits 0 to 63 of the points of each length.
+    
+    public DuplexPointsTable(int maxLength, int slc, int base){
+        this.maxLength = maxLength;
+        this.slc = slc;
+        this.base = base;
+        points = new BigInteger[maxLength+1];
+        highWords = new long[maxLength+1];
+        lowWords = new long[maxLength+1];
+        
+        // points(L) = points(L-1) + sum of base^i for i from slc to L.
+        BigInteger lengthPoints = BigInteger.ZERO;
+        BigInteger powerSum = BigInteger.ZERO;
+        BigInteger power = BigInteger.valueOf(base).pow(Math.max(slc,0));
+        int length = 0;
+        for (; length <= maxLength; length++){
+            if (length >= slc){
+                powerSum = powerSum.add(power);
+                power = power.multiply(BigInteger.valueOf(base));
+                lengthPoints = lengthPoints.add(powerSum);
+            }
+            if (lengthPoints.bitLength() > 127) break;
+            points[length] = lengthPoints;
+            highWords[length] = lengthPoints.shiftRight(64).longValue();
+            lowWords[length] = lengthPoints.longValue();
+        }
+        // points only grow with length.
+        for (; length <= maxLength; length++){
+            highWords[length] = WIDE;
+        }
+    }
+    
+    public int getMaxLength(){
+        return maxLength;
+    }
+    
+    /**
+     * Returns the points of a unique duplex of the given length.
+     * @param length
+     * @return
+     */
+    public BigInteger getPoints(int length){
+        BigInteger ret = points[length];
+        if (ret == null){
+            ret = util.calculateUniqueDuplexPoints(length, slc, base);
+            points[length] = ret;
+        }
+        return ret;
+    }
+    
+    /**
+     * Returns the sum of counts times points for each length, and sets every
+     * count to zero. Counts may be negative.
+     * @param lengthCounts the number of duplexes of each length.
+     * @return
+     */
+    public BigInteger getScore(int[] lengthCounts){
+        long high = 0;
+        long low = 0;
+        BigInteger wide = null;
+        for (int length = 0; length < lengthCounts.length; length++){
+            int counts = lengthCounts[length];
+            if (counts == 0) continue;
+            lengthCounts[length] = 0;
+            
+            long pointsHigh = highWords[length];
+            if (wide == null && pointsHigh != WIDE){
+                try{
+                    // counts times points as a signed 128 bit value.
+                    long pointsLow = lowWords[length];
+                    long productLow = counts * pointsLow;
+                    long productHigh = Math.addExact(multiplyHigh(counts, pointsLow) + ((pointsLow >> 63) & counts), Math.multiplyExact((long)counts, pointsHigh));
+                    long sumLow = low + productLow;
+                    long carry = (Long.compareUnsigned(sumLow, low) < 0) ? 1 : 0;
+                    high = Math.addExact(Math.addExact(high, productHigh), carry);
+                    low = sumLow;
+                    continue;
+                } catch (ArithmeticException e){}
+            }
+            if (wide == null){
+                wide = toBigInteger(high, low);
+            }
+            wide = wide.add(getPoints(length).multiply(BigInteger.valueOf(counts)));
+        }
+        return (wide == null) ? toBigInteger(high, low) : wide;
+    }
+    
+    /**
+     * Returns the sum of counts times points for each length.
+     * @param lengthCounts map connecting a duplex length to the number of duplexes of that length.
+     * @return
+     */
+    public BigInteger getScore(Map<Integer,Integer> lengthCounts){
+        int[] counts = new int[maxLength+1];
+        BigInteger ret = BigInteger.ZERO;
+        for (Map.Entry<Integer,Integer> entry : lengthCounts.entrySet()){
+            int length = entry.getKey();
+            if (length <= maxLength){
+                counts[length] += entry.getValue();
+            } else {
+                ret = ret.add(util.calculateUniqueDuplexPoints(length, slc, base).multiply(BigInteger.valueOf(entry.getValue())));
+            }
+        }
+        return ret.add(getScore(counts));
+    }
+    
+    // returns high*2^64 + low, where low is unsigned.
+    private static BigInteger toBigInteger(long high, long low){
+        if (high == (low >> 63)){
+            return BigInteger.valueOf(low);
+        }
+        BigInteger unsignedLow = BigInteger.valueOf(low >>> 1).shiftLeft(1).add(BigInteger.valueOf(low & 1));
+        return BigInteger.valueOf(high).shiftLeft(64).add(unsignedLow);
+    }
+    
+    // returns the high 64 bits of the signed 128 bit product of x and y.
+    private static long multiplyHigh(long x, long y){
+        long x1 = x >> 32;
+        long x2 = x & 0xFFFFFFFFL;
+        long y1 = y >> 32;
+        long y2 = y & 0xFFFFFFFFL;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = t & 0xFFFFFFFFL;
+        long z0 = t >> 32;
+        z1 += x2 * y1;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+}
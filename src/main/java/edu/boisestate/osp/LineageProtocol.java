@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2019 Boise State University
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package edu.boisestate.osp;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Messages exchanged between a SeqEvo coordinator and the worker processes
+ * which run its lineages.
+ *
+ * The coordinator opens one TCP connection to each worker and sends a JOB
+ * message holding the parameters, the domains and oligomers of the network,
+ * the total number of lineages and the index of the first lineage run by the
+ * worker. While the lineages run, both sides send POST messages holding the
+ * variable domain sequences of a network posted for migration and TARGET
+ * messages when a lineage reaches the target score. The coordinator relays
+ * these to every other worker. When its lineages have stopped, the worker
+ * sends a RESULT message and closes the connection. A worker which cannot run
+ * the job, or whose lineages fail, sends an ERROR message holding the reason
+ * instead and closes the connection. Networks are always sent
+ * as sequences and scored by the receiver. All values are written in the
+ * order of DataOutputStream, and strings, arrays and maps as by BinaryFormat.
+ *
+ * Both sides send a HEARTBEAT message every HEARTBEAT_INTERVAL_MILLIS, so that
+ * a side which has received nothing for READ_TIMEOUT_MILLIS treats the other
+ * side as lost instead of waiting for it forever.
+ *
+ * Workers do not authenticate coordinators, so they only accept connections
+ * on the loopback address unless another address is given.
+ *
+ * @author mtobi
+ */
+public final class LineageProtocol {
+    static final int MAGIC = 0x4F53504C; // first four bytes of every JOB message.
+    static final int VERSION = 3; // incremented whenever any message changes.
+
+    static final byte JOB = 1;
+    static final byte POST = 2;
+    static final byte TARGET = 3;
+    static final byte RESULT = 4;
+    static final byte HEARTBEAT = 5;
+    static final byte ERROR = 6;
+
+    static final int CONNECT_TIMEOUT_MILLIS = 10000; // longest wait for a worker to accept a connection.
+    static final int HEARTBEAT_INTERVAL_MILLIS = 5000;
+    static final int READ_TIMEOUT_MILLIS = 30000; // longest wait for any message, including the JOB message.
+
+    private LineageProtocol(){
+    }
+
+    /**
+     * Starts a daemon thread which sends a HEARTBEAT message every
+     * HEARTBEAT_INTERVAL_MILLIS until isFinished returns true or a message
+     * cannot be sent. Messages are written while synchronized on out.
+     * @param out
+     * @param isFinished
+     * @param name name of the thread.
+     * @return the started thread.
+     */
+    static Thread startHeartbeat(DataOutputStream out, BooleanSupplier isFinished, String name){
+        Thread heartbeat = new Thread(() -> {
+            try{
+                while(true){
+                    Thread.sleep(HEARTBEAT_INTERVAL_MILLIS);
+                    synchronized(out){
+                        if (isFinished.getAsBoolean()) return;
+                        out.writeByte(HEARTBEAT);
+                        out.flush();
+                    }
+                }
+            } catch (IOException | InterruptedException e){
+                // the connection is closed.
+            }
+        }, name);
+        heartbeat.setDaemon(true);
+        heartbeat.start();
+        return heartbeat;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2019 Boise State University
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package edu.boisestate.osp;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events committed by ScoringMetrics. This class is
+ * only loaded after ScoringMetrics has found jdk.jfr, so that scoring still
+ * runs on JVMs without Flight Recorder.
+ *
+ * @author mtobi
+ */
+final class ScoringEvents {
+    
+    // checked before an event is created, so that disabled events allocate nothing.
+    private static final EventType SCORING_TYPE = EventType.getEventType(ScoringEvent.class);
+    private static final EventType TASK_TYPE = EventType.getEventType(ScoringTaskEvent.class);
+    
+    private ScoringEvents(){
+    }
+    
+    // returns a started scoring event, or null if no recording enables it.
+    static Object beginScoring(){
+        if (!SCORING_TYPE.isEnabled()) return null;
+        ScoringEvent event = new ScoringEvent();
+        event.begin();
+        return event;
+    }
+    
+    static void commitScoring(Object event, String source, boolean isIncremental, int networks){
+        ScoringEvent scoringEvent = (ScoringEvent) event;
+        scoringEvent.source = source;
+        scoringEvent.incremental = isIncremental;
+        scoringEvent.networks = networks;
+        scoringEvent.commit();
+    }
+    
+    static void commitTask(String source, String task, long combinations, long basePairs, long queueWaitNanos, long computeNanos){
+        if (!TASK_TYPE.isEnabled()) return;
+        ScoringTaskEvent event = new ScoringTaskEvent();
+        event.source = source;
+        event.task = task;
+        event.combinations = combinations;
+        event.basePairs = basePairs;
+        event.queueWait = queueWaitNanos;
+        event.compute = computeNanos;
+        event.commit();
+    }
+    
+    @Name("edu.boisestate.osp.Scoring")
+    @Label("Scoring")
+    @Category("OSP")
+    @Description("Scoring of one or more networks")
+    static class ScoringEvent extends Event{
+        @Label("Source")
+        String source;
+        
+        @Label("Incremental")
+        boolean incremental;
+        
+        @Label("Networks")
+        int networks;
+    }
+    
+    @Name("edu.boisestate.osp.ScoringTask")
+    @Label("Scoring Task")
+    @Category("OSP")
+    @Description("Range of oligomer combinations scored by one thread")
+    @StackTrace(false)
+    static class ScoringTaskEvent extends Event{
+        @Label("Source")
+        String source;
+        
+        @Label("Task")
+        String task;
+        
+        @Label("Combinations")
+        long combinations;
+        
+        @Label("Base-pairs")
+        long basePairs;
+        
+        @Label("Queue Wait")
+        @Timespan(Timespan.NANOSECONDS)
+        long queueWait;
+        
+        @Label("Compute")
+        @Timespan(Timespan.NANOSECONDS)
+        long compute;
+    }
+}
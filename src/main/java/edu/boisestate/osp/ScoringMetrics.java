@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2019 Boise State University
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package edu.boisestate.osp;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the work done by a scorer or analyzer: how many networks were fully
+ * or incrementally scored, how many oligomer combinations and base-pairs were
+ * visited, and how long scoring tasks waited in a queue compared to how long
+ * they computed. The latency of each scoring call is recorded in a histogram
+ * of power-of-two buckets.
+ *
+ * When the running JVM provides Java Flight Recorder, each scoring call and
+ * each scoring task is also committed as a JFR event, so that a recording
+ * shows scoring next to garbage collection and thread activity. Events cost
+ * nothing unless a recording enables them.
+ *
+ * All methods may be called concurrently.
+ *
+ * @author mtobi
+ */
+public final class ScoringMetrics {
+    public static final int LATENCY_BUCKETS = 64; // bucket b holds calls which took from 2^b up to 2^(b+1) nanoseconds.
+    static final boolean JFR_AVAILABLE = isJfrAvailable();
+    
+    final String source; // name of the scorer or analyzer, recorded with each event.
+    final LongAdder fullScorings = new LongAdder();
+    final LongAdder incrementalScorings = new LongAdder();
+    final LongAdder combinations = new LongAdder();
+    final LongAdder basePairs = new LongAdder();
+    final LongAdder tasks = new LongAdder();
+    final LongAdder queueWaitNanos = new LongAdder();
+    final LongAdder computeNanos = new LongAdder();
+    final AtomicLongArray latencyCounts = new AtomicLongArray(LATENCY_BUCKETS);
+    
+    public ScoringMetrics(String source){
+        this.source = source;
+    }
+    
+    // returns true if jdk.jfr can be loaded by this JVM.
+    private static boolean isJfrAvailable(){
+        try{
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e){
+            return false;
+        }
+    }
+    
+    /**
+     * Marks the start of a scoring call. The returned object must be passed
+     * to endScoring once the call returns.
+     * @return
+     */
+    public Scoring beginScoring(){
+        Object event = JFR_AVAILABLE ? ScoringEvents.beginScoring() : null;
+        return new Scoring(System.nanoTime(), event);
+    }
+    
+    /**
+     * Records a scoring call started by beginScoring.
+     * @param scoring The object returned by beginScoring.
+     * @param isIncremental True if the networks were scored from a previous network.
+     * @param networks Number of networks scored by the call.
+     */
+    public void endScoring(Scoring scoring, boolean isIncremental, int networks){
+        long latency = System.nanoTime()-scoring.startNanos;
+        if (isIncremental) incrementalScorings.add(networks);
+        else fullScorings.add(networks);
+        latencyCounts.incrementAndGet(getLatencyBucket(latency));
+        if (scoring.event != null) ScoringEvents.commitScoring(scoring.event, source, isIncremental, networks);
+    }
+    
+    /**
+     * Records the oligomer combinations and base-pairs visited outside of a
+     * timed task.
+     * @param combinations
+     * @param basePairs
+     */
+    public void addVisited(long combinations, long basePairs){
+        this.combinations.add(combinations);
+        this.basePairs.add(basePairs);
+    }
+    
+    /**
+     * Records one scoring task.
+     * @param task Name of the task.
+     * @param combinations Number of oligomer combinations visited by the task.
+     * @param basePairs Number of base-pairs visited by the task.
+     * @param queueWaitNanos Time between submitting the task and a thread starting it.
+     * @param computeNanos Time the task spent computing.
+     */
+    public void recordTask(String task, long combinations, long basePairs, long queueWaitNanos, long computeNanos){
+        tasks.increment();
+        addVisited(combinations, basePairs);
+        this.queueWaitNanos.add(queueWaitNanos);
+        this.computeNanos.add(computeNanos);
+        if (JFR_AVAILABLE) ScoringEvents.commitTask(source, task, combinations, basePairs, queueWaitNanos, computeNanos);
+    }
+    
+    /**
+     * Returns a fixed thread pool equivalent to Executors.newFixedThreadPool
+     * which records the queue wait and compute time of each submitted task.
+     * @param threads
+     * @return
+     */
+    public ExecutorService newFixedThreadPool(int threads){
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>()){
+            @Override
+            protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable){
+                return new TimedTask<>(callable);
+            }
+            
+            @Override
+            protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value){
+                return new TimedTask<>(Executors.callable(runnable, value));
+            }
+            
+            @Override
+            protected void beforeExecute(Thread t, Runnable r){
+                if (r instanceof TimedTask) ((TimedTask<?>) r).startNanos = System.nanoTime();
+            }
+            
+            @Override
+            protected void afterExecute(Runnable r, Throwable t){
+                if (r instanceof TimedTask){
+                    TimedTask<?> task = (TimedTask<?>) r;
+                    recordTask(task.name, 0, 0, task.startNanos-task.queuedNanos, System.nanoTime()-task.startNanos);
+                }
+            }
+        };
+    }
+    
+    /**
+     * Returns the number of networks scored without a previous network.
+     * @return
+     */
+    public long getFullScorings(){
+        return fullScorings.sum();
+    }
+    
+    /**
+     * Returns the number of networks scored from a previous network.
+     * @return
+     */
+    public long getIncrementalScorings(){
+        return incrementalScorings.sum();
+    }
+    
+    /**
+     * Returns the number of oligomer combinations visited.
+     * @return
+     */
+    public long getCombinationsVisited(){
+        return combinations.sum();
+    }
+    
+    /**
+     * Returns the number of base-pairs visited.
+     * @return
+     */
+    public long getBasePairsVisited(){
+        return basePairs.sum();
+    }
+    
+    /**
+     * Returns the number of scoring tasks recorded.
+     * @return
+     */
+    public long getTasks(){
+        return tasks.sum();
+    }
+    
+    /**
+     * Returns the total time tasks waited between being submitted and being started.
+     * @return
+     */
+    public long getQueueWaitNanos(){
+        return queueWaitNanos.sum();
+    }
+    
+    /**
+     * Returns the total time tasks spent computing.
+     * @return
+     */
+    public long getComputeNanos(){
+        return computeNanos.sum();
+    }
+    
+    /**
+     * Returns the number of scoring calls in each latency bucket. Element b
+     * counts calls which took from getLatencyBucketStart(b) nanoseconds up to
+     * getLatencyBucketStart(b+1) nanoseconds.
+     * @return
+     */
+    public long[] getLatencyHistogram(){
+        long[] ret = new long[LATENCY_BUCKETS];
+        for (int b = 0; b < LATENCY_BUCKETS; b++){
+            ret[b] = latencyCounts.get(b);
+        }
+        return ret;
+    }
+    
+    /**
+     * Returns the shortest latency, in nanoseconds, counted by the given bucket.
+     * @param bucket
+     * @return
+     */
+    public static long getLatencyBucketStart(int bucket){
+        return (bucket == 0) ? 0 : 1L << bucket;
+    }
+    
+    // returns the histogram bucket of the given latency.
+    static int getLatencyBucket(long nanos){
+        if (nanos <= 1) return 0;
+        return 63-Long.numberOfLeadingZeros(nanos);
+    }
+    
+    /**
+     * Returns a human-readable summary of the recorded metrics.
+     * @return
+     */
+    @Override
+    public String toString(){
+        StringBuilder sb = new StringBuilder();
+        sb.append("Full scorings: ").append(getFullScorings()).append(System.lineSeparator());
+        sb.append("Incremental scorings: ").append(getIncrementalScorings()).append(System.lineSeparator());
+        sb.append("Combinations visited: ").append(getCombinationsVisited()).append(System.lineSeparator());
+        sb.append("Base-pairs visited: ").append(getBasePairsVisited()).append(System.lineSeparator());
+        sb.append("Scoring tasks: ").append(getTasks()).append(System.lineSeparator());
+        sb.append("Task queue wait (ms): ").append(getQueueWaitNanos()/1000000).append(System.lineSeparator());
+        sb.append("Task compute time (ms): ").append(getComputeNanos()/1000000).append(System.lineSeparator());
+        sb.append("Scoring latency histogram (us, calls):");
+        long[] histogram = getLatencyHistogram();
+        for (int b = 0; b < LATENCY_BUCKETS; b++){
+            if (histogram[b] == 0) continue;
+            sb.append(System.lineSeparator()).append(getLatencyBucketStart(b)/1000).append(" ").append(histogram[b]);
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * A scoring call in progress.
+     */
+    public static final class Scoring {
+        final long startNanos;
+        final Object event; // JFR event of the call, or null if no event is recorded.
+        
+        Scoring(long startNanos, Object event){
+            this.startNanos = startNanos;
+            this.event = event;
+        }
+    }
+    
+    // a task of an instrumented thread pool, stamped when it is submitted and when it is started.
+    private static class TimedTask<T> extends FutureTask<T>{
+        final long queuedNanos = System.nanoTime();
+        final String name;
+        long startNanos; // set and read by the thread which runs the task.
+        
+        TimedTask(Callable<T> callable){
+            super(callable);
+            this.name = callable.getClass().getSimpleName();
+        }
+    }
+}
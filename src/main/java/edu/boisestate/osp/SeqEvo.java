@@ -31,21 +31,46 @@ import edu.boisestate.osp.coders.Coder;
 import edu.boisestate.osp.networks.FactoryDomainBasedEncodedNetwork;
 import edu.boisestate.osp.networks.IDomainBasedEncodedNetwork;
 import edu.boisestate.osp.networks.IDomainBasedEncodedScoredNetwork;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Map;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Date;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.stream.IntStream;
 
 public class SeqEvo {
@@ -66,6 +91,24 @@ public class SeqEvo {
     final static String INTER_SLC_DEFAULT = "1";
     final static String INTER_SB_LABEL = "interSB";
     final static String INTER_SB_DEFAULT = "10";
+    final static String INTER_KERNEL_LABEL = "interKernel";
+    final static String INTER_KERNEL_DEFAULT = "scalar";
+    final static String[] INTER_KERNEL_VALUES = new String[] {"scalar","packed"};
+    final static String SCORE_CACHE_LABEL = "scoreCacheSize";
+    final static String SCORE_CACHE_DEFAULT = "4096";
+    final static String TOP_OFFENDERS_LABEL = "topOffenders";
+    final static String TOP_OFFENDERS_DEFAULT = "0";
+    final static String TOPOLOGY_SNAPSHOT_LABEL = "topologySnapshotDirectory";
+    final static String TOPOLOGY_SNAPSHOT_DEFAULT = "false";
+    final static String CHECKPOINT_INTERVAL_LABEL = "checkpointInterval";
+    final static String CHECKPOINT_INTERVAL_DEFAULT = "0";
+    final static String CHECKPOINT_DIRECTORY_LABEL = "checkpointDirectory";
+    final static String CHECKPOINT_DIRECTORY_DEFAULT = "false";
+    final static String RESUME_LABEL = "resume";
+    final static String RESUME_DEFAULT = "false";
+    final static String[] RESUME_VALUES = new String[] {"false","true"};
+    final static String WORKERS_LABEL = "workers";
+    final static String WORKERS_DEFAULT = "false";
     
     // mutation parameters
     final static String MAX_AA_LABEL = "maxAA";
@@ -80,14 +123,37 @@ public class SeqEvo {
     // optimization parameters
     final static String CPL_LABEL = "CPL";
     final static String CPL_DEFAULT = "100000";
+    final static String CPM_LABEL = "CPM";
+    final static String CPM_DEFAULT = "0";
+    final static String CS_LABEL = "CS";
+    final static String CS_DEFAULT = "geometric";
+    final static String[] CS_VALUES = new String[] {"geometric","linear"};
+    final static String CWI_LABEL = "CWI";
+    final static String CWI_DEFAULT = "0";
+    final static String ENGINE_LABEL = "engine";
+    final static String ENGINE_DEFAULT = "genetic";
+    final static String[] ENGINE_VALUES = new String[] {"genetic","annealing"};
+    final static String FT_LABEL = "FT";
+    final static String FT_DEFAULT = "0.00001";
     final static String GPC_LABEL = "GPC";
     final static String GPC_DEFAULT = "1";
+    final static String IT_LABEL = "IT";
+    final static String IT_DEFAULT = "0.001";
     final static String NDPG_LABEL = "NDPG";
     final static String NDPG_DEFAULT = "1";
+    final static String ANNEALING_NDPG_DEFAULT = "4"; // NDPG of annealing chains, unless NDPG is given.
+    final static String MOT_LABEL = "MOT";
+    final static String MOT_DEFAULT = "0";
     final static String NL_LABEL = "NL";
     final static String NL_DEFAULT = "8";
     final static String NMPC_LABEL = "NMPC";
     final static String NMPC_DEFAULT = "2";
+    final static String NRPM_LABEL = "NRPM";
+    final static String NRPM_DEFAULT = "1";
+    final static String T2F_LABEL = "T2F";
+    final static String T2F_DEFAULT = "0.8";
+    final static String TS_LABEL = "TS";
+    final static String TS_DEFAULT = "false";
     
     final static ArrayList<Parameter> scoringParameters = new ArrayList<>();
     static {
@@ -96,6 +162,10 @@ public class SeqEvo {
         scoringParameters.add(new IntegerParameter( INTER_SLC_DEFAULT, "Inter-oligomer duplexes with base-pairs less than this value do not contribute to profiles or scores. Must be an integer greater than or equal to 1 and less than "+Integer.MAX_VALUE+".", INTER_SLC_LABEL, 1, Integer.MAX_VALUE));
         scoringParameters.add(new IntegerParameter( INTRA_SB_DEFAULT, "Intra-oligomer duplexes will contribute points to N equalt to this value raised to the length of the duplex. Must be an integer greater than or equal to 0 and less than "+Integer.MAX_VALUE+".", INTRA_SB_LABEL, 0, Integer.MAX_VALUE));
         scoringParameters.add(new IntegerParameter( INTRA_SLC_DEFAULT, "Intra-oligomer duplexes with base-pairs less than this value do not contribute to profiles or scores. Must be an integer greater than or equal to 1 and less than "+Integer.MAX_VALUE+".", INTRA_SLC_LABEL, 1, Integer.MAX_VALUE));
+        scoringParameters.add(new StringParameter( INTER_KERNEL_DEFAULT, "Method used to identify inter-oligomer duplexes. Accepted values are scalar (one base-pair at a time) and packed (eight base-pairs at a time).", INTER_KERNEL_LABEL, INTER_KERNEL_VALUES));
+        scoringParameters.add(new IntegerParameter( SCORE_CACHE_DEFAULT, "Number of recently scored networks whose scores are remembered, so that networks which are seen again are not scored again. 0 disables the cache. Must be an integer greater than or equal to 0 and less than "+Integer.MAX_VALUE+".", SCORE_CACHE_LABEL, 0, Integer.MAX_VALUE));
+        scoringParameters.add(new IntegerParameter( TOP_OFFENDERS_DEFAULT, "Number of the largest contributions of single oligomers and of pairs of oligomers to the score of the fittest network which are listed in the report. If greater than 0, the contributions are updated with each accepted mutation. Must be an integer greater than or equal to 0 and less than "+Integer.MAX_VALUE+".", TOP_OFFENDERS_LABEL, 0, Integer.MAX_VALUE));
+        scoringParameters.add(new OutputDirectoryParameter( TOPOLOGY_SNAPSHOT_DEFAULT, "Directory where structures derived from the network topology are stored, so that later runs on the same topology start faster. Value must be either false or a directory path.", TOPOLOGY_SNAPSHOT_LABEL));
         scoringParameters.add(new IntegerParameter( SWX_DEFAULT, "W will be calculated as O times this value plus N. Must be an integer greater than or equal to 1 and less than "+Integer.MAX_VALUE+".", SWX_LABEL, 0, Integer.MAX_VALUE));
         scoringParameters.add(new IntegerParameter( MAX_AA_DEFAULT, "Maximum number of consecutive adenosine bases. Any stretch of bases greater than this number will make a network invalid. Must be an integer greater than or equal to 1 and less than "+Integer.MAX_VALUE+".", MAX_AA_LABEL,1,Integer.MAX_VALUE));
         scoringParameters.add(new IntegerParameter( MAX_CC_DEFAULT, "Maximum number of consecutive cytosine bases. Any stretch of bases greater than this number will make a network invalid. Must be an integer greater than or equal to 1 and less than "+Integer.MAX_VALUE+".", MAX_CC_LABEL,1,Integer.MAX_VALUE));
@@ -108,9 +178,23 @@ public class SeqEvo {
     static {
         heuristicParameters.add(new IntegerParameter( CPL_DEFAULT, "Cycles-Per-Lineage. Must be an integer greater than or equal to 1 and less than "+Integer.MAX_VALUE+".", CPL_LABEL,1,Integer.MAX_VALUE));
         heuristicParameters.add(new IntegerParameter( GPC_DEFAULT, "Generations-Per-Cycle. Must be an integer greater than or equal to 1 and less than "+Integer.MAX_VALUE+".", GPC_LABEL,1,Integer.MAX_VALUE));
-        heuristicParameters.add(new IntegerParameter( NDPG_DEFAULT, "New-Daughters-Per-Generation. Must be an integer greater than or equal to 1 and less than "+Integer.MAX_VALUE+".", NDPG_LABEL,1,Integer.MAX_VALUE));
+        heuristicParameters.add(new IntegerParameter( NDPG_DEFAULT, "New-Daughters-Per-Generation. If not given, "+NDPG_DEFAULT+" for the genetic engine and "+ANNEALING_NDPG_DEFAULT+" for the annealing engine, so that a cycle of either engine scores about as many networks with the default NMPC. Annealing chains with fewer daughters per generation stall far from the fittest networks unless they run many cycles. Must be an integer greater than or equal to 1 and less than "+Integer.MAX_VALUE+".", NDPG_LABEL,1,Integer.MAX_VALUE));
         heuristicParameters.add(new IntegerParameter( NL_DEFAULT, "Number-of-Lineages. Must be an integer greater than or equal to 1 and less than "+Integer.MAX_VALUE+".", NL_LABEL,1,Integer.MAX_VALUE));
         heuristicParameters.add(new IntegerParameter( NMPC_DEFAULT, "New-Mothers-Per-Cycle. Must be an integer greater than or equal to 1 and less than "+Integer.MAX_VALUE+".", NMPC_LABEL,1,Integer.MAX_VALUE));
+        heuristicParameters.add(new IntegerParameter( CPM_DEFAULT, "Cycles-Per-Migration. Every this many cycles, each lineage shares its fittest network with the other lineages. 0 keeps the lineages isolated. Must be an integer greater than or equal to 0 and less than "+Integer.MAX_VALUE+".", CPM_LABEL,0,Integer.MAX_VALUE));
+        heuristicParameters.add(new IntegerParameter( NRPM_DEFAULT, "Number-Reseeded-Per-Migration. At each migration, a lineage whose fittest network is among this many least fit shared networks continues from the fittest shared network instead. Must be an integer greater than or equal to 0 and less than "+Integer.MAX_VALUE+".", NRPM_LABEL,0,Integer.MAX_VALUE));
+        heuristicParameters.add(new IntegerParameter( MOT_DEFAULT, "Maximum-Optimization-Time. Each lineage stops after the cycle during which the optimization has run for this many seconds. Lineages take turns running cycles, so the time is counted from the start of the optimization for every lineage. 0 sets no limit. Must be an integer greater than or equal to 0 and less than "+Integer.MAX_VALUE+".", MOT_LABEL,0,Integer.MAX_VALUE));
+        heuristicParameters.add(new ScoreParameter( TS_DEFAULT, "Target-Score. Every lineage stops after the cycle during which any lineage finds a network with a score less than or equal to this value. Value must be either false or an integer greater than or equal to 0.", TS_LABEL));
+        heuristicParameters.add(new IntegerParameter( CWI_DEFAULT, "Cycles-Without-Improvement. Each lineage stops after this many consecutive cycles which do not improve its fittest network. 0 sets no limit. Must be an integer greater than or equal to 0 and less than "+Integer.MAX_VALUE+".", CWI_LABEL,0,Integer.MAX_VALUE));
+        heuristicParameters.add(new StringParameter( ENGINE_DEFAULT, "Search run by each lineage. Accepted values are genetic (each cycle, NMPC new mothers and the lineage's network each run GPC generations of NDPG daughters, and a daughter only replaces its mother if it is at least as fit) and annealing (each lineage is an independent simulated-annealing chain which runs GPC generations of NDPG daughters per cycle. The fittest daughter replaces the chain's network if it is at least as fit, or otherwise with a probability which falls as the chain cools, as set by IT, FT, CS and T2F. NMPC, CPM and NRPM are ignored).", ENGINE_LABEL, ENGINE_VALUES));
+        heuristicParameters.add(new DecimalParameter( IT_DEFAULT, "Initial-Temperature of annealing chains. A daughter whose score exceeds the score of the chain's network by this fraction of that score, plus this fraction of 1% of the score the lineage started from, is accepted with probability 1/e. The second term lets chains near a score of 0 still accept less fit daughters. Must be a number greater than or equal to 0.", IT_LABEL, 0, Double.MAX_VALUE));
+        heuristicParameters.add(new DecimalParameter( FT_DEFAULT, "Final-Temperature of annealing chains, reached after CPL cycles. Must be a number greater than or equal to 0.", FT_LABEL, 0, Double.MAX_VALUE));
+        heuristicParameters.add(new StringParameter( CS_DEFAULT, "Cooling-Schedule of annealing chains. Accepted values are geometric (the temperature falls by the same factor each generation) and linear (the temperature falls by the same amount each generation). If either temperature is 0, the temperature falls linearly.", CS_LABEL, CS_VALUES));
+        heuristicParameters.add(new DecimalParameter( T2F_DEFAULT, "Type-2-Fraction. Fraction of the daughters of annealing chains which move a stretch of a domain to another position in it (type 2 mutations). The other daughters swap two bases of a domain (type 3 mutations). Must be a number greater than or equal to 0 and less than or equal to 1.", T2F_LABEL, 0, 1));
+        heuristicParameters.add(new IntegerParameter( CHECKPOINT_INTERVAL_DEFAULT, "Each lineage saves its state to a checkpoint after the cycle during which this many seconds have passed since it last saved it. Checkpoints are written by a background thread. 0 disables checkpoints. Must be an integer greater than or equal to 0 and less than "+Integer.MAX_VALUE+".", CHECKPOINT_INTERVAL_LABEL,0,Integer.MAX_VALUE));
+        heuristicParameters.add(new OutputDirectoryParameter( CHECKPOINT_DIRECTORY_DEFAULT, "Directory where checkpoints are written and from which they are resumed. If false, the output directory is used. Value must be either false or a directory path.", CHECKPOINT_DIRECTORY_LABEL));
+        heuristicParameters.add(new StringParameter( RESUME_DEFAULT, "If true, the optimization continues from the checkpoint written with identical parameters and input files, if one exists. Accepted values are false and true.", RESUME_LABEL, RESUME_VALUES));
+        heuristicParameters.add(new WorkersParameter( WORKERS_DEFAULT, "Addresses of worker processes, each started with SeqEvo --worker <port> [address], written as host:port and separated by commas. The lineages are divided among the workers, and networks migrating between lineages are relayed through this process. Checkpoints are not written when workers are used. Workers do not authenticate coordinators, so they only accept connections on the loopback address unless another address, such as 0.0.0.0 for every address, is given. The lineages of a worker which cannot be reached or is lost report the initial network. If false, every lineage runs in this process.", WORKERS_LABEL));
     }
     
     final static ArrayList<Parameter> availableParameters = new ArrayList<>();
@@ -131,6 +215,12 @@ public class SeqEvo {
         Map<String,String[]> oligomerDomains;
         Map<String,String>  parameters;
         PrintStream streamForUpdates;
+        // set in worker processes, which run a block of the lineages of a coordinator.
+        int firstLineage = 0; // index of the first lineage run by this process among all lineages.
+        int totalLineages = 0; // 0 if this process runs every lineage.
+        LineageExchange exchange = null; // null if this process runs every lineage.
+        // engines cannot be sent to workers, so a request with its own engine must not set WORKERS.
+        LineageEngine engine = null; // null if the lineages run the engine selected by the parameters.
         
         Request(Map<String,String> parameters, Map<String,String> fixedDomains, Map<String,String> initialVariableDomains, Map<String,String[]> oligomerDomains, PrintStream streamForUpdates){
             this.fixedDomains = fixedDomains;
@@ -186,6 +276,15 @@ public class SeqEvo {
         usedParameters.put(INTER_SLC_LABEL,String.valueOf(INTERSLC));
         int INTERSB = Integer.parseInt(parameters.getOrDefault(INTER_SB_LABEL,INTER_SB_DEFAULT));
         usedParameters.put(INTER_SB_LABEL,String.valueOf(INTERSB));
+        String INTERKERNEL = parameters.getOrDefault(INTER_KERNEL_LABEL,INTER_KERNEL_DEFAULT);
+        usedParameters.put(INTER_KERNEL_LABEL,INTERKERNEL);
+        int SCORECACHE = Integer.parseInt(parameters.getOrDefault(SCORE_CACHE_LABEL,SCORE_CACHE_DEFAULT));
+        usedParameters.put(SCORE_CACHE_LABEL,String.valueOf(SCORECACHE));
+        String TOPOLOGYSNAPSHOT = parameters.getOrDefault(TOPOLOGY_SNAPSHOT_LABEL,TOPOLOGY_SNAPSHOT_DEFAULT);
+        usedParameters.put(TOPOLOGY_SNAPSHOT_LABEL,TOPOLOGYSNAPSHOT);
+        final File snapshotDirectory = TOPOLOGYSNAPSHOT.equalsIgnoreCase("false") ? null : new File(TOPOLOGYSNAPSHOT);
+        int TOPOFFENDERS = Integer.parseInt(parameters.getOrDefault(TOP_OFFENDERS_LABEL,TOP_OFFENDERS_DEFAULT));
+        usedParameters.put(TOP_OFFENDERS_LABEL,String.valueOf(TOPOFFENDERS));
         
         // validator stuff
         int MAXAA = Integer.parseInt(parameters.getOrDefault(MAX_AA_LABEL, MAX_AA_DEFAULT));
@@ -202,21 +301,67 @@ public class SeqEvo {
         usedParameters.put(CPL_LABEL,String.valueOf(CPL));
         int GPC = Integer.parseInt(parameters.getOrDefault(GPC_LABEL,GPC_DEFAULT));
         usedParameters.put(GPC_LABEL,String.valueOf(GPC));
-        int NDPG = Integer.parseInt(parameters.getOrDefault(NDPG_LABEL,NDPG_DEFAULT));
+        String ENGINE = (request.engine != null) ? request.engine.getClass().getName() : parameters.getOrDefault(ENGINE_LABEL,ENGINE_DEFAULT);
+        usedParameters.put(ENGINE_LABEL,ENGINE);
+        int NDPG = Integer.parseInt(parameters.getOrDefault(NDPG_LABEL,ENGINE.equals("annealing") ? ANNEALING_NDPG_DEFAULT : NDPG_DEFAULT));
         usedParameters.put(NDPG_LABEL,String.valueOf(NDPG));
+        if (!parameters.containsKey(NDPG_LABEL) && request.streamForUpdates != null){
+            request.streamForUpdates.println(NDPG_LABEL+" not given. Using "+NDPG+" daughters per generation for the "+ENGINE+" engine.");
+        }
         int NMPC = Integer.parseInt(parameters.getOrDefault(NMPC_LABEL,NMPC_DEFAULT));
         usedParameters.put(NMPC_LABEL,String.valueOf(NMPC));
         int NL = Integer.parseInt(parameters.getOrDefault(NL_LABEL,NL_DEFAULT));
         usedParameters.put(NL_LABEL,String.valueOf(NL));
+        int CPM = Integer.parseInt(parameters.getOrDefault(CPM_LABEL,CPM_DEFAULT));
+        usedParameters.put(CPM_LABEL,String.valueOf(CPM));
+        int NRPM = Integer.parseInt(parameters.getOrDefault(NRPM_LABEL,NRPM_DEFAULT));
+        usedParameters.put(NRPM_LABEL,String.valueOf(NRPM));
+        int MOT = Integer.parseInt(parameters.getOrDefault(MOT_LABEL,MOT_DEFAULT));
+        usedParameters.put(MOT_LABEL,String.valueOf(MOT));
+        String TS = parameters.getOrDefault(TS_LABEL,TS_DEFAULT);
+        usedParameters.put(TS_LABEL,TS);
+        final BigInteger targetScore = TS.equalsIgnoreCase("false") ? null : new BigInteger(TS);
+        int CWI = Integer.parseInt(parameters.getOrDefault(CWI_LABEL,CWI_DEFAULT));
+        usedParameters.put(CWI_LABEL,String.valueOf(CWI));
+        double IT = Double.parseDouble(parameters.getOrDefault(IT_LABEL,IT_DEFAULT));
+        usedParameters.put(IT_LABEL,String.valueOf(IT));
+        double FT = Double.parseDouble(parameters.getOrDefault(FT_LABEL,FT_DEFAULT));
+        usedParameters.put(FT_LABEL,String.valueOf(FT));
+        String CS = parameters.getOrDefault(CS_LABEL,CS_DEFAULT);
+        usedParameters.put(CS_LABEL,CS);
+        double T2F = Double.parseDouble(parameters.getOrDefault(T2F_LABEL,T2F_DEFAULT));
+        usedParameters.put(T2F_LABEL,String.valueOf(T2F));
+        final OptimizationSupervisor.AnnealingParameters annealing = ENGINE.equals("annealing") ? new OptimizationSupervisor.AnnealingParameters(IT, FT, CS.equals("geometric"), T2F) : null;
+        
+        // checkpoint stuff. only the parameters above identify a checkpoint, so that these may change between launches.
+        final Map<String,String> checkpointParameters = new TreeMap<>(usedParameters);
+        int CHECKPOINTINTERVAL = Integer.parseInt(parameters.getOrDefault(CHECKPOINT_INTERVAL_LABEL,CHECKPOINT_INTERVAL_DEFAULT));
+        usedParameters.put(CHECKPOINT_INTERVAL_LABEL,String.valueOf(CHECKPOINTINTERVAL));
+        String CHECKPOINTDIRECTORY = parameters.getOrDefault(CHECKPOINT_DIRECTORY_LABEL,CHECKPOINT_DIRECTORY_DEFAULT);
+        usedParameters.put(CHECKPOINT_DIRECTORY_LABEL,CHECKPOINTDIRECTORY);
+        String RESUME = parameters.getOrDefault(RESUME_LABEL,RESUME_DEFAULT);
+        usedParameters.put(RESUME_LABEL,RESUME);
+        String WORKERS = parameters.getOrDefault(WORKERS_LABEL,WORKERS_DEFAULT);
+        usedParameters.put(WORKERS_LABEL,WORKERS);
+        if (request.engine != null && !WORKERS.equalsIgnoreCase("false")){
+            throw new IllegalArgumentException("The engine of the request cannot be sent to workers. Set "+WORKERS_LABEL+" to false to run its lineages in this process.");
+        }
+        final String[] workerAddresses = WORKERS.equalsIgnoreCase("false") ? null : WORKERS.split(",");
+        // workers receive the parameters of this process, but run their own block of lineages without checkpoints.
+        final Map<String,String> workerParameters = new TreeMap<>(usedParameters);
+        workerParameters.put(CHECKPOINT_INTERVAL_LABEL, "0");
+        workerParameters.put(RESUME_LABEL, "false");
+        workerParameters.put(WORKERS_LABEL, "false");
+        final Checkpoint checkpoint = (CHECKPOINTDIRECTORY.equalsIgnoreCase("false") || workerAddresses != null) ? null : new Checkpoint(new File(CHECKPOINTDIRECTORY), "SeqEvo", request.fixedDomains, request.oligomerDomains, request.initialVariableDomains, checkpointParameters);
         
         // coder stuff
         final ICoder coder = new Coder();
         
         // factory stuff
-        final FactoryDomainBasedEncodedNetwork factory = new FactoryDomainBasedEncodedNetwork(coder, request.fixedDomains, request.oligomerDomains, request.initialVariableDomains);
+        final FactoryDomainBasedEncodedNetwork factory = new FactoryDomainBasedEncodedNetwork(coder, request.fixedDomains, request.oligomerDomains, request.initialVariableDomains, snapshotDirectory);
         
         // Scoring stuff
-        final IScorer scorer = new DeltaWScorer(request.fixedDomains, request.oligomerDomains, request.initialVariableDomains, INTRASB, INTRASLC, INTERSB, INTERSLC, SWX, NUMBERTHREADS, 4);
+        final IScorer scorer = new DeltaWScorer(request.fixedDomains, request.oligomerDomains, request.initialVariableDomains, INTRASB, INTRASLC, INTERSB, INTERSLC, SWX, NUMBERTHREADS, 4, INTERKERNEL.equals("packed"), SCORECACHE, snapshotDirectory);
         String scoreLabel = scorer.getScoreLabel();
         String scoreUnits = scorer.getScoreUnits();
         
@@ -227,6 +372,10 @@ public class SeqEvo {
         final MutationSupervisor mutationSupervisor = new MutationSupervisor(NUMBERTHREADS,factory,scorer,validator);
         
         IDomainBasedEncodedNetwork gen0 = factory.getNewNetwork(request.initialVariableDomains);
+        // a coordinator sends its scored initial network, so a worker never replaces it.
+        if (request.exchange != null && !validator.isValidNetwork(gen0)){
+            throw new IllegalArgumentException("Initial network of the job is invalid.");
+        }
         if (!validator.isValidNetwork(gen0)) {
             request.streamForUpdates.println("Initial network invalid. Replacing with random sequences.");
             gen0 = factory.getType1Mutation(gen0,validator);
@@ -238,14 +387,40 @@ public class SeqEvo {
         
         IDomainBasedEncodedScoredNetwork scoredGen0 = scorer.getScored(gen0);
         
+        OptimizationSupervisor os = new OptimizationSupervisor( mutationSupervisor, scorer, NL, CPL, NMPC, GPC, NDPG, CPM, NRPM, MOT, targetScore, CWI, annealing, request.engine, checkpoint, CHECKPOINTINTERVAL, request.firstLineage, (request.totalLineages > 0) ? request.totalLineages : NL, request.exchange, TOPOFFENDERS > 0, request.streamForUpdates);
+        OptimizationSupervisor.SavedOptimization saved = null;
+        if (RESUME.equals("true")){
+            saved = (checkpoint == null) ? null : os.loadCheckpoint(request.initialVariableDomains);
+            if (saved == null){
+                request.streamForUpdates.println("No usable checkpoint found. Starting a new optimization.");
+            } else {
+                request.streamForUpdates.println("Resuming from checkpoint "+checkpoint.getFile()+".");
+                scoredGen0 = saved.initialNetwork;
+            }
+        }
+        
         double optStartTime = System.currentTimeMillis(); // start timer for optimization runtime.
         
         // optimize
-        OptimizationSupervisor os = new OptimizationSupervisor( mutationSupervisor, scorer, NL, CPL, NMPC, GPC, NDPG, request.streamForUpdates);
-        OptimizationSupervisor.OptimizerReport report = os.optimize(scoredGen0);
+        OptimizationSupervisor.OptimizerReport report;
+        String scoringMetrics;
+        if (workerAddresses != null){
+            LineageCoordinator coordinator = new LineageCoordinator(workerAddresses, request, workerParameters, NL, os, request.streamForUpdates);
+            report = coordinator.optimize(scoredGen0);
+            StringBuilder metrics = new StringBuilder(scorer.getMetrics().toString());
+            for(int i = 0; i < coordinator.workerMetrics.length; i++){
+                if (coordinator.workerMetrics[i] == null) continue;
+                metrics.append(System.lineSeparator()).append("Worker ").append(workerAddresses[i]).append(System.lineSeparator()).append(coordinator.workerMetrics[i]);
+            }
+            scoringMetrics = metrics.toString();
+        } else {
+            report = os.optimize(scoredGen0, saved);
+            scoringMetrics = scorer.getMetrics().toString();
+        }
         
         IDomainBasedEncodedScoredNetwork finalGen = report.fittest;
         String[][] lineageFittestScores = report.lineageFittestScores;
+        String[] lineageStopReasons = report.lineageStopReasons;
         
         //calculate runtime.
         double optEndTime   = System.currentTimeMillis(); // record evolutionary cycle endtime
@@ -264,7 +439,8 @@ public class SeqEvo {
         
         mutationSupervisor.close();
         
-        Report r = new Report(usedParameters,scoredGen0,finalGen,startTimeString,optimizationTimeString,totalTimeString,optimizationTimeSeconds,totalTimeSeconds,lineageFittestScores,scoreLabel, scoreUnits);
+        String topOffenders = (TOPOFFENDERS > 0) ? scorer.getDecomposition(finalGen).getTopOffendersString(TOPOFFENDERS) : "";
+        Report r = new Report(usedParameters,scoredGen0,finalGen,startTimeString,optimizationTimeString,totalTimeString,optimizationTimeSeconds,totalTimeSeconds,lineageFittestScores,lineageStopReasons,report.fittestLineageMothers,scoreLabel, scoreUnits, scoringMetrics, topOffenders);
         return r;
     }
     
@@ -279,10 +455,14 @@ public class SeqEvo {
         public final double totalTimeSeconds;
         public final String version = SeqEvo.VERSION;
         public final String[][] lineageFittestScores;
+        public final String[] lineageStopReasons; // why each lineage stopped, indexed like lineageFittestScores.
+        public final IDomainBasedEncodedScoredNetwork[] lineageFittestNetworks; // fittest network of each lineage, indexed like lineageFittestScores.
         public final String scoreLabel;
         public final String scoreUnits;
+        public final String scoringMetrics; // summary of the scorer's counts and timings.
+        public final String topOffenders; // largest contributions to the score of the final network, one per line. empty if not requested.
         
-        Report(Map<String,String> usedParameters, IDomainBasedEncodedScoredNetwork initialNetwork, IDomainBasedEncodedScoredNetwork finalNetwork, String startTime, String optimizationTime, String totalTime, double optimizationTimeSeconds, double totalTimeSeconds, String[][] lineageFittestScores, String scoreLabel, String scoreUnits){
+        Report(Map<String,String> usedParameters, IDomainBasedEncodedScoredNetwork initialNetwork, IDomainBasedEncodedScoredNetwork finalNetwork, String startTime, String optimizationTime, String totalTime, double optimizationTimeSeconds, double totalTimeSeconds, String[][] lineageFittestScores, String[] lineageStopReasons, IDomainBasedEncodedScoredNetwork[] lineageFittestNetworks, String scoreLabel, String scoreUnits, String scoringMetrics, String topOffenders){
             this.usedParameters = usedParameters;
             this.initialNetwork = initialNetwork;
             this.finalNetwork = finalNetwork;
@@ -292,8 +472,69 @@ public class SeqEvo {
             this.optimizationTimeSeconds = optimizationTimeSeconds;
             this.totalTimeSeconds = totalTimeSeconds;
             this.lineageFittestScores = lineageFittestScores;
+            this.lineageStopReasons = lineageStopReasons;
+            this.lineageFittestNetworks = lineageFittestNetworks;
             this.scoreLabel = scoreLabel;
             this.scoreUnits = scoreUnits;
+            this.scoringMetrics = scoringMetrics;
+            this.topOffenders = topOffenders;
+        }
+    }
+    
+    /**
+     * Search run by each lineage. SeqEvo starts and stops the lineages,
+     * reports their progress, migrates their networks, saves them to
+     * checkpoints and reports their fittest networks, while the engine decides
+     * how each cycle searches from the network of a lineage. The engine
+     * parameter selects the genetic or the annealing engine, which are built
+     * on the same contract, and a request may set an engine of its own.
+     */
+    public interface LineageEngine{
+        /**
+         * Returns the cycles of one lineage. Called once for each lineage,
+         * before it starts.
+         * @param lineageIndex index of the lineage among the lineages of this process.
+         * @param context scorer and mutations of the optimization.
+         * @return
+         */
+        LineageStep getLineageStep(int lineageIndex, LineageContext context);
+    }
+    
+    /**
+     * Cycles of one lineage. Cycles of a lineage never run at once, and each
+     * cycle sees the state left by the previous one, so a step may keep state
+     * between cycles. Consecutive cycles may run on different threads.
+     */
+    public interface LineageStep{
+        /**
+         * Runs one cycle of the lineage.
+         * @param network network the cycle starts from.
+         * @param cycleIndex number of cycles the lineage has completed.
+         * @return
+         */
+        LineageCycleReport runCycle(IDomainBasedEncodedScoredNetwork network, int cycleIndex);
+    }
+    
+    /**
+     * Scorer and mutations available to the cycles of a lineage. Mutations
+     * run in the pool of the optimization and return scored daughters. A
+     * mutation which finds no valid daughter returns the given network.
+     */
+    public interface LineageContext{
+        IScorer getScorer();
+        IDomainBasedEncodedScoredNetwork[] getType2Mutations(IDomainBasedEncodedScoredNetwork network, int numberOfMutations);
+        IDomainBasedEncodedScoredNetwork[] getType3Mutations(IDomainBasedEncodedScoredNetwork network, int numberOfMutations);
+    }
+    
+    static public class LineageCycleReport{
+        public final IDomainBasedEncodedScoredNetwork network; // network the next cycle starts from.
+        public final IDomainBasedEncodedScoredNetwork fittest; // fittest network found by the cycle, which may be network.
+        public final Number[] scores; // scores added to the trajectory of the lineage, usually one per generation.
+        
+        public LineageCycleReport(IDomainBasedEncodedScoredNetwork network, IDomainBasedEncodedScoredNetwork fittest, Number[] scores){
+            this.network = network;
+            this.fittest = fittest;
+            this.scores = scores;
         }
     }
     
@@ -369,9 +610,19 @@ public class SeqEvo {
                 System.out.println("If no parameter file path is provided, the default value of "+ PFP_DEFAULT + " will be used.");
                 System.out.println("SeqEvo -h or --help will print this help message.");
                 System.out.println("SeqEvo -ep or --exampleParameters will create an example parameter file.");
+                System.out.println("SeqEvo -w <port> [address] or --worker <port> [address] will run lineages for a coordinator connecting to the port on the address, which is the loopback address if none is given. See the workers parameter.");
                 System.exit(0);
             }
             
+            if ((args[0].equals("-w") || args[0].equals("--worker")) && args.length > 1){
+                try{
+                    serveLineages(Integer.parseInt(args[1]), (args.length > 2) ? InetAddress.getByName(args[2]) : InetAddress.getLoopbackAddress());
+                } catch (UnknownHostException e){
+                    System.out.println("Unknown address "+args[2]+".");
+                    System.exit(1);
+                }
+            }
+            
             if (args[0].equals("-ep") || args[0].equals("--exampleParameters")){
                 try{
                     PrintStream PS = new PrintStream(EXAMPLE_PARAMETERS_FILE_DEFAULT);
@@ -449,7 +700,8 @@ public class SeqEvo {
                     System.out.println("Value "+value+" is not valid for parameter "+ p.getLabel());
                     System.exit(1);
                 }
-            } else {
+            } else if (!p.getLabel().equals(NDPG_LABEL)){
+                // the default of NDPG depends on the engine, so it is chosen by run().
                 usedParameters.put(p.getLabel(),p.getDefault());
             }
         }
@@ -469,6 +721,11 @@ public class SeqEvo {
         System.out.println("Importing oligomers file: "+ OFP);
         final Map<String,String[]> oligomerDomains = util.importListFromTxt(OFP);
         
+        // checkpoints are written to the output directory unless another directory is given.
+        if (usedParameters.get(CHECKPOINT_DIRECTORY_LABEL).equalsIgnoreCase("false")){
+            usedParameters.put(CHECKPOINT_DIRECTORY_LABEL, usedParameters.get(OUTPUT_DIRECTORY_LABEL));
+        }
+        
         Request request = new Request(usedParameters, fixedDomains, initialVariableDomains, oligomerDomains, System.out);
         System.out.println("Beginning search.");
         Report report = s.run(request);
@@ -517,6 +774,31 @@ public class SeqEvo {
         ps.println("Initial network "+report.scoreLabel+" ("+report.scoreUnits+"): " +report.initialNetwork.getScore());
         ps.println("Fittest network "+report.scoreLabel+" ("+report.scoreUnits+"): " +report.finalNetwork.getScore());
         
+        ps.println();
+        ps.println("***************");
+        ps.println("Scoring Metrics");
+        ps.println("***************");
+        ps.println();
+        ps.println(report.scoringMetrics);
+        
+        ps.println();
+        ps.println("********************");
+        ps.println("Lineage Stop Reasons");
+        ps.println("********************");
+        ps.println();
+        for(int i = 0; i < report.lineageStopReasons.length; i++){
+            ps.println("Lineage "+i+": "+report.lineageStopReasons[i]);
+        }
+        
+        if (!report.topOffenders.isEmpty()){
+            ps.println();
+            ps.println("*************");
+            ps.println("Top Offenders");
+            ps.println("*************");
+            ps.println();
+            ps.println(report.topOffenders);
+        }
+        
         // print used parameters.
         ps.println();
         ps.println("***************");
@@ -646,15 +928,24 @@ public class SeqEvo {
                 ps.print(",Lineage "+j+" ("+report.scoreLabel+" - "+report.scoreUnits+")");
             }
             ps.println();
-        for(int i : IntStream.range(0,scores[0].length).toArray()){
+        // lineages which stopped early leave their later cells empty.
+        for(int i : IntStream.range(0,getLongestTrajectory(scores)).toArray()){
             ps.print(i+1);
             for (int j : lineageIndexes){
-                ps.print(","+scores[j][i]);
+                ps.print(","+((i < scores[j].length) ? scores[j][i] : ""));
             }
             ps.println();
         }
     }
     
+    private static int getLongestTrajectory(String[][] scores){
+        int ret = 0;
+        for (String[] lineageScores : scores){
+            ret = Math.max(ret, lineageScores.length);
+        }
+        return ret;
+    }
+    
     private static void printLogScoreTrajectory (PrintStream ps, Report report){
         String[][] scores = report.lineageFittestScores;
         int[] lineageIndexes = IntStream.range(0,scores.length).toArray();
@@ -663,31 +954,59 @@ public class SeqEvo {
                 ps.print(",Lineage "+j+" ("+report.scoreLabel+" - "+report.scoreUnits+")");
             }
             ps.println();
-        for(int i = 1; i < scores[0].length; i = i*2){
+        for(int i = 1; i < getLongestTrajectory(scores); i = i*2){
             ps.print(i);
             for (int j : lineageIndexes){
-                ps.print(","+scores[j][i-1]);
+                ps.print(","+((i <= scores[j].length) ? scores[j][i-1] : ""));
             }
             ps.println();
         }
     }
     
     static private class MutationSupervisor {
-        private final ExecutorService service;
+        // cycles, generations and mutations run in this pool. a thread which
+        // waits for its subtasks runs queued tasks meanwhile, so the pool
+        // stays sized to the processors.
+        final ForkJoinPool pool;
+        // lineages waiting to run their next cycle. lineages are run one cycle
+        // at a time by at most one driver per thread of the pool, in turn, so
+        // that every lineage progresses however many lineages there are.
+        final ConcurrentLinkedQueue<LineageTask> readyLineages = new ConcurrentLinkedQueue<>();
+        final AtomicInteger lineageDrivers = new AtomicInteger(0); // number of drivers running in the pool.
+        // number of threads the pool may add to replace threads which wait for a subtask being run by another thread.
+        static final int SPARE_THREADS_PER_THREAD = 1;
         final FactoryDomainBasedEncodedNetwork factory;
         final IScorer scorer;
         final IValidator validator;
         
         MutationSupervisor(int numberThreads, FactoryDomainBasedEncodedNetwork factory, IScorer scorer, IValidator validator){
-            service = Executors.newFixedThreadPool(numberThreads);            
+            // once the spare threads are used, a waiting thread blocks instead of adding another.
+            pool = new ForkJoinPool(numberThreads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, false, 0, numberThreads*(1+SPARE_THREADS_PER_THREAD), 1, p -> true, 60, TimeUnit.SECONDS);
             this.factory = factory;
             this.scorer = scorer;
             this.validator = validator;
         }
         
+        /**
+         * Queues the task in the pool. A task forked by a thread of the pool
+         * is queued to that thread, which runs it unless another thread steals
+         * it first.
+         * @param <T>
+         * @param task
+         * @return the given task.
+         */
+        <T> ForkJoinTask<T> fork(ForkJoinTask<T> task){
+            if (ForkJoinTask.getPool() == pool){
+                task.fork();
+            } else {
+                pool.execute(task);
+            }
+            return task;
+        }
+        
         public IDomainBasedEncodedScoredNetwork getType1Mutation(IDomainBasedEncodedScoredNetwork network){
             Type1MutationThread toQueue = new Type1MutationThread(network);
-            Future<IDomainBasedEncodedScoredNetwork> result = service.submit(toQueue);
+            Future<IDomainBasedEncodedScoredNetwork> result = fork(ForkJoinTask.adapt(toQueue));
             IDomainBasedEncodedScoredNetwork ret;
             try{
                 ret = result.get();
@@ -700,16 +1019,16 @@ public class SeqEvo {
         }
         
         public IDomainBasedEncodedScoredNetwork[] getType1Mutation(IDomainBasedEncodedScoredNetwork network, int numberOfMutations){
-            Future<IDomainBasedEncodedScoredNetwork>[] results = new Future[numberOfMutations];
+            List<Future<IDomainBasedEncodedScoredNetwork>> results = new ArrayList<>(numberOfMutations);
             for(int i =0; i < numberOfMutations; i++){
                 Type1MutationThread toQueue = new Type1MutationThread(network);
-                results[i] = service.submit(toQueue);
+                results.add(fork(ForkJoinTask.adapt(toQueue)));
             }
             
             IDomainBasedEncodedScoredNetwork[] ret = new IDomainBasedEncodedScoredNetwork[numberOfMutations];
             for(int i =0; i < numberOfMutations; i++){
                 try{
-                    ret[i] = results[i].get();
+                    ret[i] = results.get(i).get();
                 } catch (Exception e){
                     System.out.println("Exception during type 1 mutation.");
                     System.out.println(e.getMessage());
@@ -719,7 +1038,7 @@ public class SeqEvo {
             return ret;
         }
         
-        class Type1MutationThread implements Callable{
+        class Type1MutationThread implements Callable<IDomainBasedEncodedScoredNetwork>{
             final IDomainBasedEncodedScoredNetwork network;
             
             Type1MutationThread(IDomainBasedEncodedScoredNetwork network){
@@ -734,7 +1053,7 @@ public class SeqEvo {
         
         public IDomainBasedEncodedScoredNetwork getType2Mutation(IDomainBasedEncodedScoredNetwork network){
             Type2MutationThread toQueue = new Type2MutationThread(network);
-            Future<IDomainBasedEncodedScoredNetwork> result = service.submit(toQueue);
+            Future<IDomainBasedEncodedScoredNetwork> result = fork(ForkJoinTask.adapt(toQueue));
             IDomainBasedEncodedScoredNetwork ret;
             try{
                 ret = result.get();
@@ -746,28 +1065,87 @@ public class SeqEvo {
             return ret;
         }
         
+        /**
+         * Returns the given number of type 2 mutations of the given network.
+         * The mutations are found in parallel and then scored together, so
+         * that mutations of the same domain are counted in one pass of the
+         * scorer.
+         * @param network
+         * @param numberOfMutations
+         * @return
+         */
         public IDomainBasedEncodedScoredNetwork[] getType2Mutation(IDomainBasedEncodedScoredNetwork network, int numberOfMutations){
-            Future<IDomainBasedEncodedScoredNetwork>[] results = new Future[numberOfMutations];
+            List<Future<IDomainBasedEncodedNetwork>> results = new ArrayList<>(numberOfMutations);
+            int[] domainIndices = new int[numberOfMutations];
             for(int i =0; i < numberOfMutations; i++){
-                Type2MutationThread toQueue = new Type2MutationThread(network);
-                results[i] = service.submit(toQueue);
+                domainIndices[i] = factory.getMutationDomainIndex();
+                Type2CandidateThread toQueue = new Type2CandidateThread(network, domainIndices[i]);
+                results.add(fork(ForkJoinTask.adapt(toQueue)));
             }
             
-            IDomainBasedEncodedScoredNetwork[] ret = new IDomainBasedEncodedScoredNetwork[numberOfMutations];
+            // mutations which failed, or found no valid candidate, keep the network.
+            IDomainBasedEncodedNetwork[] candidates = new IDomainBasedEncodedNetwork[numberOfMutations];
+            int valid = 0;
             for(int i =0; i < numberOfMutations; i++){
                 try{
-                    ret[i] = results[i].get();
+                    candidates[i] = results.get(i).get();
                 } catch (Exception e){
                     System.out.println("Exception during type 2 mutation.");
                     System.out.println(e.toString());
                     e.printStackTrace();
+                    candidates[i] = null;
+                }
+                if (candidates[i] != null) valid++;
+            }
+            IDomainBasedEncodedNetwork[] validCandidates = new IDomainBasedEncodedNetwork[valid];
+            int[] validDomainIndices = new int[valid];
+            valid = 0;
+            for(int i =0; i < numberOfMutations; i++){
+                if (candidates[i] != null){
+                    validCandidates[valid] = candidates[i];
+                    validDomainIndices[valid] = domainIndices[i];
+                    valid++;
+                }
+            }
+            
+            IDomainBasedEncodedScoredNetwork[] scored;
+            try{
+                scored = scorer.getScored(network, validCandidates, validDomainIndices);
+            } catch (Exception e){
+                System.out.println("Exception during type 2 mutation.");
+                System.out.println(e.toString());
+                e.printStackTrace();
+                scored = null;
+            }
+            IDomainBasedEncodedScoredNetwork[] ret = new IDomainBasedEncodedScoredNetwork[numberOfMutations];
+            valid = 0;
+            for(int i =0; i < numberOfMutations; i++){
+                if (candidates[i] == null){
                     ret[i] = network;
+                } else {
+                    ret[i] = (scored == null) ? network : scored[valid];
+                    valid++;
                 }
             }
             return ret;
         }
         
-        class Type2MutationThread implements Callable{
+        class Type2CandidateThread implements Callable<IDomainBasedEncodedNetwork>{
+            final IDomainBasedEncodedScoredNetwork network;
+            final int domainIndex;
+            
+            Type2CandidateThread(IDomainBasedEncodedScoredNetwork network, int domainIndex){
+                this.network = network;
+                this.domainIndex = domainIndex;
+            }
+            
+            @Override
+            public IDomainBasedEncodedNetwork call(){
+                return factory.getType2Mutation(network, domainIndex, validator);
+            }
+        }
+        
+        class Type2MutationThread implements Callable<IDomainBasedEncodedScoredNetwork>{
             final IDomainBasedEncodedScoredNetwork network;
             
             Type2MutationThread(IDomainBasedEncodedScoredNetwork network){
@@ -782,7 +1160,7 @@ public class SeqEvo {
         
         public IDomainBasedEncodedScoredNetwork getType3Mutation(IDomainBasedEncodedScoredNetwork network){
             Type3MutationThread toQueue = new Type3MutationThread(network);
-            Future<IDomainBasedEncodedScoredNetwork> result = service.submit(toQueue);
+            Future<IDomainBasedEncodedScoredNetwork> result = fork(ForkJoinTask.adapt(toQueue));
             IDomainBasedEncodedScoredNetwork ret;
             try{
                 ret = result.get();
@@ -795,16 +1173,16 @@ public class SeqEvo {
         }
         
         public IDomainBasedEncodedScoredNetwork[] getType3Mutation(IDomainBasedEncodedScoredNetwork network, int numberOfMutations){
-            Future<IDomainBasedEncodedScoredNetwork>[] results = new Future[numberOfMutations];
+            List<Future<IDomainBasedEncodedScoredNetwork>> results = new ArrayList<>(numberOfMutations);
             for(int i =0; i < numberOfMutations; i++){
                 Type3MutationThread toQueue = new Type3MutationThread(network);
-                results[i] = service.submit(toQueue);
+                results.add(fork(ForkJoinTask.adapt(toQueue)));
             }
             
             IDomainBasedEncodedScoredNetwork[] ret = new IDomainBasedEncodedScoredNetwork[numberOfMutations];
             for(int i =0; i < numberOfMutations; i++){
                 try{
-                    ret[i] = results[i].get();
+                    ret[i] = results.get(i).get();
                 } catch (Exception e){
                     System.out.println("Exception during type 3 mutation.");
                     System.out.println(e.getMessage());
@@ -814,7 +1192,7 @@ public class SeqEvo {
             return ret;
         }
         
-        class Type3MutationThread implements Callable{
+        class Type3MutationThread implements Callable<IDomainBasedEncodedScoredNetwork>{
             final IDomainBasedEncodedScoredNetwork network;
             
             Type3MutationThread(IDomainBasedEncodedScoredNetwork network){
@@ -827,13 +1205,171 @@ public class SeqEvo {
             }
         }
         
+        /**
+         * Fills every slot with a type 3 mutation of the given network. The
+         * calling thread fills the first slot while the others are queued.
+         * The mutations are then scored together, so that daughters of the
+         * same domain share the work of the scorer.
+         * @param network
+         * @param slots
+         * @return
+         */
+        public IDomainBasedEncodedScoredNetwork[] getType3Mutation(IDomainBasedEncodedScoredNetwork network, Type3Slots slots){
+            slots.network = network;
+            for(int i = 1; i < slots.tasks.length; i++){
+                slots.tasks[i].reinitialize();
+                fork(slots.tasks[i]);
+            }
+            slots.tasks[0].fill();
+            // the most recently forked slots are joined first, as they are the most likely to still be queued to this thread.
+            for(int i = slots.tasks.length-1; i > 0; i--){
+                slots.tasks[i].join();
+            }
+            slots.score();
+            return slots.daughters;
+        }
+        
+        // daughters of one lineage, reused for each of its generations.
+        class Type3Slots{
+            final IDomainBasedEncodedScoredNetwork[] daughters;
+            final IDomainBasedEncodedNetwork[] candidates; // unscored mutations. null if no valid mutation was found.
+            final int[] domainIndices; // index of the mutated domain of each candidate.
+            final Type3SlotTask[] tasks;
+            IDomainBasedEncodedScoredNetwork network;
+            BigInteger boundScore; // daughters scoring more are rejected. null if daughters less fit than the network are rejected.
+            double type2Fraction; // probability that a slot holds a type 2 mutation instead of a type 3 mutation.
+            
+            Type3Slots(int numberOfMutations){
+                daughters = new IDomainBasedEncodedScoredNetwork[numberOfMutations];
+                candidates = new IDomainBasedEncodedNetwork[numberOfMutations];
+                domainIndices = new int[numberOfMutations];
+                tasks = new Type3SlotTask[numberOfMutations];
+                for(int i =0; i < numberOfMutations; i++){
+                    tasks[i] = new Type3SlotTask(this, i);
+                }
+            }
+            
+            // scores the valid candidates in one batch. slots without a valid
+            // candidate, or whose candidate is rejected by the bound, keep the network.
+            void score(){
+                int valid = 0;
+                for(int i =0; i < candidates.length; i++){
+                    if (candidates[i] != null) valid++;
+                }
+                IDomainBasedEncodedNetwork[] validCandidates = candidates;
+                int[] validDomainIndices = domainIndices;
+                if (valid < candidates.length){
+                    validCandidates = new IDomainBasedEncodedNetwork[valid];
+                    validDomainIndices = new int[valid];
+                    valid = 0;
+                    for(int i =0; i < candidates.length; i++){
+                        if (candidates[i] != null){
+                            validCandidates[valid] = candidates[i];
+                            validDomainIndices[valid] = domainIndices[i];
+                            valid++;
+                        }
+                    }
+                }
+                
+                IDomainBasedEncodedScoredNetwork[] scored;
+                try{
+                    scored = (boundScore == null) ? scorer.getScored(network, validCandidates, validDomainIndices, network) : scorer.getScored(network, validCandidates, validDomainIndices, boundScore);
+                } catch (Exception e){
+                    System.out.println("Exception during type 3 mutation.");
+                    System.out.println(e.getMessage());
+                    scored = null;
+                }
+                valid = 0;
+                for(int i =0; i < candidates.length; i++){
+                    if (candidates[i] == null){
+                        daughters[i] = network;
+                    } else {
+                        daughters[i] = (scored == null || scored[valid] == null) ? network : scored[valid];
+                        valid++;
+                    }
+                    candidates[i] = null;
+                }
+            }
+        }
+        
+        @SuppressWarnings("serial")
+        class Type3SlotTask extends RecursiveAction{
+            final Type3Slots slots;
+            final int index;
+            
+            Type3SlotTask(Type3Slots slots, int index){
+                this.slots = slots;
+                this.index = index;
+            }
+            
+            @Override
+            protected void compute(){
+                fill();
+            }
+            
+            // fills the slot with an unscored mutation of a random domain, or with null if no valid mutation was found.
+            void fill(){
+                try{
+                    int domainIndex = factory.getMutationDomainIndex();
+                    slots.domainIndices[index] = domainIndex;
+                    slots.candidates[index] = (slots.type2Fraction > 0 && ThreadLocalRandom.current().nextDouble() < slots.type2Fraction) ? factory.getType2Mutation(slots.network, domainIndex, validator) : factory.getType3Mutation(slots.network, domainIndex, validator);
+                } catch (Exception e){
+                    System.out.println("Exception during type 3 mutation.");
+                    System.out.println(e.getMessage());
+                    slots.candidates[index] = null;
+                }
+            }
+        }
+        
+        /**
+         * A lineage which is run one cycle at a time.
+         */
+        interface LineageTask{
+            /**
+             * Runs the next cycle of the lineage.
+             * @return false once the lineage has stopped.
+             */
+            boolean runCycle();
+        }
+        
+        /**
+         * Queues the lineage behind the lineages which already wait for their
+         * next cycle, and adds a driver to the pool unless every thread of the
+         * pool already runs one.
+         * @param lineage
+         */
+        void startLineage(LineageTask lineage){
+            readyLineages.offer(lineage);
+            if (tryAddLineageDriver()) fork(ForkJoinTask.adapt(this::driveLineages));
+        }
+        
+        private boolean tryAddLineageDriver(){
+            while (true){
+                int drivers = lineageDrivers.get();
+                if (drivers >= pool.getParallelism()) return false;
+                if (lineageDrivers.compareAndSet(drivers, drivers+1)) return true;
+            }
+        }
+        
+        // runs one cycle of each waiting lineage in turn until no lineage waits.
+        // a lineage queued while the driver stops is picked up again, since
+        // the lineage was queued before its caller found no free driver.
+        private void driveLineages(){
+            do{
+                LineageTask lineage;
+                while ((lineage = readyLineages.poll()) != null){
+                    if (lineage.runCycle()) readyLineages.offer(lineage);
+                }
+                lineageDrivers.decrementAndGet();
+            } while (!readyLineages.isEmpty() && tryAddLineageDriver());
+        }
+        
         public void close(){
-            service.shutdownNow();
+            pool.shutdownNow();
         }
     }
     
     static private class OptimizationSupervisor{
-        final ExecutorService es;
         final MutationSupervisor mutationSupervisor;
         final IScorer scorer;
         final PrintStream out;
@@ -846,9 +1382,21 @@ public class SeqEvo {
         final int NMPC;
         final int GPC;
         final int NDPG;
-        
-        OptimizationSupervisor ( MutationSupervisor mutationSupervisor, IScorer scorer, int NL, int CPL,int NMPC,int GPC,int NDPG, PrintStream streamForUpdates){
-            this.es = Executors.newCachedThreadPool();
+        final int CPM; // 0 if lineages never migrate.
+        final int NRPM;
+        final long MOTMillis; // 0 if the optimization time is not limited.
+        final BigInteger targetScore; // null if there is no target score.
+        final int CWI; // 0 if lineages never stop for lack of improvement.
+        final AnnealingParameters annealing; // null if lineages run the genetic engine.
+        final LineageEngine engine; // null if lineages run the genetic or the annealing engine.
+        final Checkpoint checkpoint; // null if the state of the optimization is never saved or loaded.
+        final long checkpointIntervalMillis; // 0 if the state of the optimization is never saved.
+        final int firstLineage; // index of the first lineage of this process among the lineages of every process.
+        final int totalLineages; // number of lineages of every process.
+        final LineageExchange exchange; // null if every lineage runs in this process.
+        final boolean trackDecomposition; // if true, the score decomposition of each accepted network is requested.
+        
+        OptimizationSupervisor ( MutationSupervisor mutationSupervisor, IScorer scorer, int NL, int CPL,int NMPC,int GPC,int NDPG, int CPM, int NRPM, int MOT, BigInteger targetScore, int CWI, AnnealingParameters annealing, LineageEngine engine, Checkpoint checkpoint, int checkpointInterval, int firstLineage, int totalLineages, LineageExchange exchange, boolean trackDecomposition, PrintStream streamForUpdates){
             this.mutationSupervisor=mutationSupervisor;
             this.scorer = scorer;
             this.out = streamForUpdates;
@@ -857,37 +1405,103 @@ public class SeqEvo {
             this.NMPC = NMPC;
             this.GPC = GPC;
             this.NDPG = NDPG;
+            this.CPM = CPM;
+            this.NRPM = NRPM;
+            this.MOTMillis = 1000L*MOT;
+            this.targetScore = targetScore;
+            this.CWI = CWI;
+            this.annealing = annealing;
+            this.engine = engine;
+            this.checkpoint = checkpoint;
+            this.checkpointIntervalMillis = 1000L*checkpointInterval;
+            this.firstLineage = firstLineage;
+            this.totalLineages = totalLineages;
+            this.exchange = exchange;
+            this.trackDecomposition = trackDecomposition;
             this.totalCycles = CPL*NL;
             this.cyclesPerUpdate = Math.max(this.totalCycles/100,1);
         }
         
-        public OptimizerReport optimize(IDomainBasedEncodedScoredNetwork initialNetwork){
+        /**
+         * Optimizes the network. Lineages take turns running one cycle at a
+         * time in the pool of the mutation supervisor. Cycles and generations
+         * run in the same pool and wait for the tasks they forked before they
+         * return.
+         * @param initialNetwork
+         * @param saved state of an earlier optimization to continue from. null to start a new optimization.
+         * @return
+         */
+        public OptimizerReport optimize(IDomainBasedEncodedScoredNetwork initialNetwork, SavedOptimization saved){
             final AtomicInteger completedCycles = new AtomicInteger(0);
-            double startTime = System.currentTimeMillis();
+            // a resumed optimization continues the clock of the saved one, so that MOT and the progress estimate include the time before it was interrupted.
+            double startTime = System.currentTimeMillis() - ((saved == null) ? 0 : saved.elapsedMillis);
             final String[][] fittestScores = new String[NL][];
-            Cycle2Request[] subCycleRequests = new Cycle2Request[NL];
-            subCycleRequests[0] = new Cycle2Request(initialNetwork,completedCycles,startTime);
-            Future<Type2CycleReport>[] futures = new Future[NL];
-            futures[0] = es.submit(subCycleRequests[0]);
-            
-            //generate mutated networks.
-            IDomainBasedEncodedScoredNetwork[] newLineageMothers = mutationSupervisor.getType1Mutation(initialNetwork,NL-1);
+            // each lineage posts its fittest network to its own slot, so that migration needs no locks.
+            // slots are indexed among the lineages of every process.
+            final AtomicReferenceArray<IDomainBasedEncodedScoredNetwork> mailbox = (CPM > 0 && annealing == null && engine == null) ? new AtomicReferenceArray<>(totalLineages) : null;
+            // set by the first lineage to reach the target score, so that the others stop too.
+            final AtomicBoolean targetReached = new AtomicBoolean(saved != null && saved.targetReached);
+            if (exchange != null) exchange.attach(this, mailbox, targetReached);
+            final CheckpointWriter checkpointWriter = (checkpoint != null && checkpointIntervalMillis > 0) ? new CheckpointWriter(initialNetwork, startTime, targetReached) : null;
+            final LineageState[] initialStates = (saved == null) ? new LineageState[NL] : saved.lineages;
+            final OptimizationRun run = new OptimizationRun(mailbox, targetReached, checkpointWriter, completedCycles, startTime);
+            LineageRequest[] subCycleRequests = new LineageRequest[NL];
+            List<Future<Type2CycleReport>> futures = new ArrayList<>(Collections.nCopies(NL, (Future<Type2CycleReport>) null));
+            Type2CycleReport[] reports = new Type2CycleReport[NL];
             
-            for(int i = 1; i < NL; i++){
-                subCycleRequests[i] = new Cycle2Request(newLineageMothers[i-1],completedCycles,startTime);
-                futures[i] = es.submit(subCycleRequests[i]);
+            if (saved == null){
+                // only the first lineage of all processes starts from the initial network.
+                int firstMutatedLineage = (firstLineage == 0) ? 1 : 0;
+                if (firstMutatedLineage == 1){
+                    initialStates[0] = new LineageState(initialNetwork);
+                    if (checkpointWriter != null) checkpointWriter.lineages.set(0, initialStates[0]);
+                    subCycleRequests[0] = new LineageRequest(initialStates[0],0,run);
+                    mutationSupervisor.startLineage(subCycleRequests[0]);
+                    futures.set(0, subCycleRequests[0].report);
+                }
+
+                //generate mutated networks.
+                IDomainBasedEncodedScoredNetwork[] newLineageMothers = mutationSupervisor.getType1Mutation(initialNetwork,NL-firstMutatedLineage);
+
+                for(int i = firstMutatedLineage; i < NL; i++){
+                    initialStates[i] = new LineageState(newLineageMothers[i-firstMutatedLineage]);
+                    if (checkpointWriter != null) checkpointWriter.lineages.set(i, initialStates[i]);
+                    subCycleRequests[i] = new LineageRequest(initialStates[i],i,run);
+                    mutationSupervisor.startLineage(subCycleRequests[i]);
+                    futures.set(i, subCycleRequests[i].report);
+                }
+            } else {
+                for(int i = 0; i < NL; i++){
+                    LineageState state = initialStates[i];
+                    if (checkpointWriter != null) checkpointWriter.lineages.set(i, state);
+                    if (mailbox != null) mailbox.set(firstLineage+i, state.fittest);
+                    // lineages which had stopped are not continued.
+                    if (state.stopReason != null){
+                        completedCycles.addAndGet(CPL);
+                        reports[i] = new Type2CycleReport(state.fittest, state.fittestScores, state.stopReason);
+                    } else {
+                        completedCycles.addAndGet(state.cycleIndex);
+                    }
+                }
+                for(int i = 0; i < NL; i++){
+                    if (reports[i] != null) continue;
+                    subCycleRequests[i] = new LineageRequest(initialStates[i],i,run);
+                    mutationSupervisor.startLineage(subCycleRequests[i]);
+                    futures.set(i, subCycleRequests[i].report);
+                }
             }
             
-            Type2CycleReport[] reports = new Type2CycleReport[NL];
             IDomainBasedEncodedScoredNetwork[] fittestLineageMothers = new IDomainBasedEncodedScoredNetwork[NL];
             
             try{
                 for(int i = 0; i < NL; i++){
-                    reports[i] = futures[i].get();
+                    if (futures.get(i) != null) reports[i] = futures.get(i).get();
                     fittestLineageMothers[i] = reports[i].fittest;
                 }
             } catch(Exception e){System.out.print(e.getMessage());}
             
+            if (checkpointWriter != null) checkpointWriter.close();
+            
             IDomainBasedEncodedScoredNetwork fittest = fittestLineageMothers[0];
             for(int i = 1; i < NL; i++){
                 if(scorer.compareFitness(fittestLineageMothers[i],fittest) >= 0){
@@ -895,98 +1509,379 @@ public class SeqEvo {
                 }
             }
             
-            ArrayList<String>[] s = new ArrayList[NL];
-            s[0] = new ArrayList<String>(Arrays.asList(reports[0].fittestScores));
-            s[0].add(0,initialNetwork.getScore());
-            fittestScores[0] = s[0].toArray(new String[0]);
-            for(int i = 1; i < NL; i++){
-                s[i] = new ArrayList<String>(Arrays.asList(reports[i].fittestScores));
-                s[i].add(0,newLineageMothers[i-1].getScore());
-                fittestScores[i] = s[i].toArray(new String[0]);
+            // scores are only converted to text once the optimization is complete.
+            for(int i = 0; i < NL; i++){
+                fittestScores[i] = getScoreStrings(initialStates[i].initialScore, reports[i].fittestScores);
             }
             
-            es.shutdownNow();
+            String[] stopReasons = new String[NL];
+            for(int i = 0; i < NL; i++){
+                stopReasons[i] = reports[i].stopReason;
+            }
             
-            OptimizerReport ret = new OptimizerReport(fittest,fittestScores,fittestLineageMothers);
+            OptimizerReport ret = new OptimizerReport(fittest,fittestScores,stopReasons,fittestLineageMothers);
+            return ret;
+        }
+        
+        private static Number getScoreNumber(IDomainBasedEncodedScoredNetwork network){
+            if (network.isLongScore()) return network.getLongScore();
+            return network.getBigIntegerScore();
+        }
+        
+        private static String[] getScoreStrings(Number initialScore, Number[] scores){
+            String[] ret = new String[scores.length+1];
+            ret[0] = initialScore.toString();
+            for(int i = 0; i < scores.length; i++){
+                ret[i+1] = scores[i].toString();
+            }
             return ret;
         }
         
+        /**
+         * Returns the state of the optimization saved in the checkpoint, or
+         * null if there is no checkpoint for these parameters and inputs, or
+         * if the checkpoint is corrupt.
+         * @param initialVariableDomains variable domains of the optimization, which every saved network must match.
+         * @return
+         */
+        SavedOptimization loadCheckpoint(Map<String,String> initialVariableDomains){
+            ByteBuffer in = checkpoint.load();
+            if (in == null) return null;
+            // the digest only identifies the inputs, so a truncated or damaged checkpoint is only found while it is read.
+            try{
+                return readSavedOptimization(in, initialVariableDomains);
+            } catch (BufferUnderflowException | NegativeArraySizeException | IllegalArgumentException e){
+                System.out.println("Ignoring corrupt checkpoint "+checkpoint.getFile()+": "+e);
+                return null;
+            }
+        }
+        
+        private SavedOptimization readSavedOptimization(ByteBuffer in, Map<String,String> initialVariableDomains){
+            IDomainBasedEncodedScoredNetwork initialNetwork = readNetwork(in, initialVariableDomains);
+            long elapsedMillis = in.getLong();
+            boolean targetReached = in.get() != 0;
+            LineageState[] lineages = new LineageState[BinaryFormat.readCount(in)];
+            if (lineages.length != NL) throw new IllegalArgumentException("Saved "+lineages.length+" lineages instead of "+NL+".");
+            for(int i = 0; i < lineages.length; i++){
+                Number initialScore = DigestFile.readBigInteger(in);
+                int cycleIndex = in.getInt();
+                int cyclesWithoutImprovement = in.getInt();
+                String stopReason = (in.get() != 0) ? BinaryFormat.readString(in) : null;
+                IDomainBasedEncodedScoredNetwork fittest = readNetwork(in, initialVariableDomains);
+                IDomainBasedEncodedScoredNetwork lineageFittest = readNetwork(in, initialVariableDomains);
+                Number[] scores = new Number[BinaryFormat.readCount(in)];
+                for(int j = 0; j < scores.length; j++){
+                    scores[j] = DigestFile.readBigInteger(in);
+                }
+                lineages[i] = new LineageState(initialScore, cycleIndex, fittest, lineageFittest, cyclesWithoutImprovement, scores, stopReason);
+            }
+            return new SavedOptimization(initialNetwork, elapsedMillis, targetReached, lineages);
+        }
+        
+        // networks are stored as the sequences of their variable domains and scored again when they are loaded.
+        private static void writeNetwork(DataOutputStream out, IDomainBasedEncodedNetwork network) throws IOException{
+            String[] names = network.getVariableDomainNames();
+            String[] sequences = network.getVariableDomainSequences();
+            out.writeInt(names.length);
+            for(int i = 0; i < names.length; i++){
+                BinaryFormat.writeString(out, names[i]);
+                BinaryFormat.writeString(out, sequences[i]);
+            }
+        }
+        
+        // throws IllegalArgumentException if the network does not match the given variable domains, since the factory cannot encode it.
+        private IDomainBasedEncodedScoredNetwork readNetwork(ByteBuffer in, Map<String,String> initialVariableDomains){
+            Map<String,String> variableDomains = new HashMap<>();
+            int count = BinaryFormat.readCount(in);
+            for(int i = 0; i < count; i++){
+                String name = BinaryFormat.readString(in);
+                variableDomains.put(name, BinaryFormat.readString(in));
+            }
+            String problem = getVariableDomainsProblem(initialVariableDomains, variableDomains);
+            if (problem != null) throw new IllegalArgumentException(problem);
+            return getScoredNetwork(variableDomains);
+        }
+        
+        /**
+         * Returns the scored network with the given variable domain sequences.
+         * @param variableDomains
+         * @return
+         */
+        IDomainBasedEncodedScoredNetwork getScoredNetwork(Map<String,String> variableDomains){
+            return scorer.getScored(mutationSupervisor.factory.getNewNetwork(variableDomains));
+        }
+        
+        /**
+         * Returns the variable domain sequences of the network, keyed by domain name.
+         * @param network
+         * @return
+         */
+        static Map<String,String> getVariableDomains(IDomainBasedEncodedNetwork network){
+            Map<String,String> variableDomains = new TreeMap<>();
+            String[] names = network.getVariableDomainNames();
+            String[] sequences = network.getVariableDomainSequences();
+            for(int i = 0; i < names.length; i++){
+                variableDomains.put(names[i], sequences[i]);
+            }
+            return variableDomains;
+        }
+        
+        private static BigInteger toBigInteger(Number score){
+            if (score instanceof BigInteger) return (BigInteger) score;
+            return BigInteger.valueOf(score.longValue());
+        }
+        
+        // state of a lineage at the end of a cycle.
+        static class LineageState{
+            final Number initialScore; // score of the network the lineage started from.
+            final int cycleIndex; // number of completed cycles.
+            final IDomainBasedEncodedScoredNetwork fittest; // network the next cycle starts from, or the network reported by a stopped lineage.
+            final IDomainBasedEncodedScoredNetwork lineageFittest; // fittest network of any cycle.
+            final int cyclesWithoutImprovement;
+            final Number[] fittestScores;
+            final String stopReason; // null if the lineage has not stopped.
+            
+            LineageState(IDomainBasedEncodedScoredNetwork mother){
+                this(getScoreNumber(mother), 0, mother, mother, 0, new Number[0], null);
+            }
+            
+            LineageState(Number initialScore, int cycleIndex, IDomainBasedEncodedScoredNetwork fittest, IDomainBasedEncodedScoredNetwork lineageFittest, int cyclesWithoutImprovement, Number[] fittestScores, String stopReason){
+                this.initialScore = initialScore;
+                this.cycleIndex = cycleIndex;
+                this.fittest = fittest;
+                this.lineageFittest = lineageFittest;
+                this.cyclesWithoutImprovement = cyclesWithoutImprovement;
+                this.fittestScores = fittestScores;
+                this.stopReason = stopReason;
+            }
+        }
+        
+        static class SavedOptimization{
+            final IDomainBasedEncodedScoredNetwork initialNetwork;
+            final long elapsedMillis; // optimization time before the checkpoint was written.
+            final boolean targetReached;
+            final LineageState[] lineages;
+            
+            SavedOptimization(IDomainBasedEncodedScoredNetwork initialNetwork, long elapsedMillis, boolean targetReached, LineageState[] lineages){
+                this.initialNetwork = initialNetwork;
+                this.elapsedMillis = elapsedMillis;
+                this.targetReached = targetReached;
+                this.lineages = lineages;
+            }
+        }
+        
+        // holds the latest state published by each lineage and saves them to the checkpoint from a single background thread,
+        // so that lineages never wait for the file to be written.
+        private class CheckpointWriter{
+            final IDomainBasedEncodedScoredNetwork initialNetwork;
+            final double startTime;
+            final AtomicBoolean targetReached;
+            final AtomicReferenceArray<LineageState> lineages = new AtomicReferenceArray<>(NL);
+            final AtomicBoolean pending = new AtomicBoolean(false); // true while a save is queued but has not started.
+            final ExecutorService es = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "SeqEvo-checkpoint");
+                t.setDaemon(true);
+                return t;
+            });
+            
+            CheckpointWriter(IDomainBasedEncodedScoredNetwork initialNetwork, double startTime, AtomicBoolean targetReached){
+                this.initialNetwork = initialNetwork;
+                this.startTime = startTime;
+                this.targetReached = targetReached;
+            }
+            
+            // a state published while a save is queued is included in that save.
+            void publish(int lineageIndex, LineageState state){
+                lineages.set(lineageIndex, state);
+                if (pending.compareAndSet(false, true)){
+                    es.execute(() -> {
+                        pending.set(false);
+                        save();
+                    });
+                }
+            }
+            
+            private void save(){
+                final LineageState[] states = new LineageState[NL];
+                for(int i = 0; i < NL; i++){
+                    states[i] = lineages.get(i);
+                    if (states[i] == null) return; // lineage mothers are still being generated.
+                }
+                final long elapsedMillis = (long)(System.currentTimeMillis()-startTime);
+                checkpoint.save(out -> {
+                    writeNetwork(out, initialNetwork);
+                    out.writeLong(elapsedMillis);
+                    out.writeBoolean(targetReached.get());
+                    out.writeInt(NL);
+                    for(LineageState state : states){
+                        DigestFile.writeBigInteger(out, toBigInteger(state.initialScore));
+                        out.writeInt(state.cycleIndex);
+                        out.writeInt(state.cyclesWithoutImprovement);
+                        out.writeBoolean(state.stopReason != null);
+                        if (state.stopReason != null) BinaryFormat.writeString(out, state.stopReason);
+                        writeNetwork(out, state.fittest);
+                        writeNetwork(out, state.lineageFittest);
+                        out.writeInt(state.fittestScores.length);
+                        for(Number score : state.fittestScores){
+                            DigestFile.writeBigInteger(out, toBigInteger(score));
+                        }
+                    }
+                });
+            }
+            
+            // waits for the last save, so that the checkpoint holds the final state of every lineage.
+            void close(){
+                es.shutdown();
+                try{
+                    es.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e){
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        
         static public class OptimizerReport{
             IDomainBasedEncodedScoredNetwork fittest;
             IDomainBasedEncodedScoredNetwork[] fittestLineageMothers;
             String[][] lineageFittestScores;
-            OptimizerReport(IDomainBasedEncodedScoredNetwork fittest, String[][] lineageFittestScores, IDomainBasedEncodedScoredNetwork[] fittestLineageMothers){
+            String[] lineageStopReasons;
+            OptimizerReport(IDomainBasedEncodedScoredNetwork fittest, String[][] lineageFittestScores, String[] lineageStopReasons, IDomainBasedEncodedScoredNetwork[] fittestLineageMothers){
                 this.fittest = fittest;
                 this.lineageFittestScores = lineageFittestScores;
+                this.lineageStopReasons = lineageStopReasons;
                 this.fittestLineageMothers = fittestLineageMothers;
             }
         }
-        private class Cycle2Request implements Callable<Type2CycleReport>{
-            final IDomainBasedEncodedScoredNetwork initialNetwork;
-            final double startTime;
+        
+        // returns the cycles of one lineage, run by the engine of the request or by the engine selected by the parameters.
+        private LineageStep getLineageStep(int lineageIndex, LineageState initialState, OptimizationRun run){
+            if (engine != null) return engine.getLineageStep(lineageIndex, run);
+            if (annealing != null) return new AnnealingRequest(toBigInteger(initialState.initialScore));
+            return new Cycle2Request(lineageIndex, run);
+        }
+
+        // state shared by the lineages of one optimization.
+        class OptimizationRun implements LineageContext{
+            final AtomicReferenceArray<IDomainBasedEncodedScoredNetwork> mailbox; // fittest network posted by each lineage. null if lineages never migrate.
+            final AtomicBoolean targetReached;
+            final CheckpointWriter checkpointWriter; // null if the lineages never save their state.
             final AtomicInteger completedCycles;
+            final double startTime;
 
-            Cycle2Request ( IDomainBasedEncodedScoredNetwork initialNetwork, AtomicInteger completedCycles, double startTime){
-                this.initialNetwork = initialNetwork;
-                this.startTime = startTime;
+            OptimizationRun(AtomicReferenceArray<IDomainBasedEncodedScoredNetwork> mailbox, AtomicBoolean targetReached, CheckpointWriter checkpointWriter, AtomicInteger completedCycles, double startTime){
+                this.mailbox = mailbox;
+                this.targetReached = targetReached;
+                this.checkpointWriter = checkpointWriter;
                 this.completedCycles = completedCycles;
+                this.startTime = startTime;
             }
 
             @Override
-            public Type2CycleReport call(){
-                ArrayList<String> fittestScores = new ArrayList<>();
-                int cycleIndex=0;
-                IDomainBasedEncodedScoredNetwork currentFittest = initialNetwork;
-                IDomainBasedEncodedScoredNetwork[] subCycleMothers = new IDomainBasedEncodedScoredNetwork[NMPC+1];
-                Type3CycleRequest[] subCycleRequests = new Type3CycleRequest[NMPC+1];
-                subCycleRequests[0] = new Type3CycleRequest(initialNetwork);
-                for(int i = 0; i < NMPC; i++){
-                    subCycleRequests[i+1] = new Type3CycleRequest(initialNetwork);
-                }
-                Future<Type3CycleReport>[] futures = new Future[NMPC+1];
-                IDomainBasedEncodedScoredNetwork[] subCycleFittest = new IDomainBasedEncodedScoredNetwork[NMPC+1];
-                String[] fittestSubScores;
-                int fittestIndex;
+            public IScorer getScorer(){
+                return scorer;
+            }
 
-                do{
-                    IDomainBasedEncodedScoredNetwork[] newCycleMothers = mutationSupervisor.getType2Mutation(currentFittest,NMPC);
+            @Override
+            public IDomainBasedEncodedScoredNetwork[] getType2Mutations(IDomainBasedEncodedScoredNetwork network, int numberOfMutations){
+                return mutationSupervisor.getType2Mutation(network, numberOfMutations);
+            }
 
-                    subCycleMothers[0] = currentFittest;
-                    for(int i = 1; i < NMPC+1; i++){
-                        subCycleMothers[i] = newCycleMothers[i-1];
-                    }
+            @Override
+            public IDomainBasedEncodedScoredNetwork[] getType3Mutations(IDomainBasedEncodedScoredNetwork network, int numberOfMutations){
+                return mutationSupervisor.getType3Mutation(network, numberOfMutations);
+            }
+        }
 
-                    for(int i = 0; i < NMPC+1; i++){
-                        subCycleRequests[i].updateState(subCycleMothers[i]);
-                        futures[i] = es.submit(subCycleRequests[i]);
-                    }
+        // parameters of the annealing chains. temperatures are fractions of the score of a chain's network.
+        static class AnnealingParameters{
+            final double initialTemperature;
+            final double finalTemperature;
+            final boolean geometric; // if false, the temperature falls linearly.
+            final double type2Fraction; // fraction of the daughters which are type 2 mutations.
+            // fraction of the initial score of a lineage which is added to the score the temperature is a fraction of,
+            // so that chains whose score approaches 0 still accept less fit daughters.
+            static final double INITIAL_SCORE_FRACTION = 0.01;
 
-                    try{
-                        for(int i=0; i < NMPC+1; i++){
-                            subCycleFittest[i] = futures[i].get().fittest;
-                        }
-                    } catch (Exception e){System.out.println(e.getMessage());}
+            AnnealingParameters(double initialTemperature, double finalTemperature, boolean geometric, double type2Fraction){
+                this.initialTemperature = initialTemperature;
+                this.finalTemperature = finalTemperature;
+                this.geometric = geometric && initialTemperature > 0 && finalTemperature > 0;
+                this.type2Fraction = type2Fraction;
+            }
 
-                    fittestIndex =0;
-                    for(int i =0; i < NMPC+1;i++){
-                        if (scorer.compareFitness(subCycleFittest[i], subCycleFittest[fittestIndex])>=0){
-                            fittestIndex = i;
-                        }
-                    }
+            // returns the temperature once the given fraction of a chain's generations have run.
+            double getTemperature(double fraction){
+                if (geometric) return initialTemperature*Math.pow(finalTemperature/initialTemperature, fraction);
+                return initialTemperature+(finalTemperature-initialTemperature)*fraction;
+            }
+        }
+
+        // runs one lineage from its initial state until it stops. the state of the lineage is only used by the driver running its cycle.
+        private class LineageRequest implements MutationSupervisor.LineageTask{
+            final LineageState initialState;
+            final int lineageIndex;
+            final OptimizationRun run;
+            final LineageStep step;
+            final ArrayList<Number> fittestScores;
+            final CompletableFuture<Type2CycleReport> report = new CompletableFuture<>(); // completed once the lineage stops.
+            double lastCheckpointTime = System.currentTimeMillis();
+            int cycleIndex;
+            IDomainBasedEncodedScoredNetwork currentFittest; // network the next cycle starts from.
+            IDomainBasedEncodedScoredNetwork lineageFittest; // fittest network of any cycle.
+            int cyclesWithoutImprovement;
+
+            LineageRequest(LineageState initialState, int lineageIndex, OptimizationRun run){
+                this.initialState = initialState;
+                this.lineageIndex = lineageIndex;
+                this.run = run;
+                this.fittestScores = new ArrayList<>(Arrays.asList(initialState.fittestScores));
+                this.cycleIndex = initialState.cycleIndex;
+                this.currentFittest = initialState.fittest;
+                this.lineageFittest = initialState.lineageFittest;
+                this.cyclesWithoutImprovement = initialState.cyclesWithoutImprovement;
+                this.step = getLineageStep(lineageIndex, initialState, run);
+            }
+
+            // returns the network reported by the lineage once it stops. this is the network the next cycle would start
+            // from, unless a cycle found a fitter network.
+            private IDomainBasedEncodedScoredNetwork getReportedNetwork(){
+                return (scorer.compareFitness(currentFittest, lineageFittest) >= 0) ? currentFittest : lineageFittest;
+            }
+
+            // returns why the lineage should stop after the given number of cycles, or null if it should continue.
+            private String getStopReason(int cycleIndex, int cyclesWithoutImprovement, IDomainBasedEncodedScoredNetwork fittest){
+                if (targetScore != null && fittest.getBigIntegerScore().compareTo(targetScore) <= 0){
+                    if (!run.targetReached.getAndSet(true) && exchange != null) exchange.reachedTarget();
+                    return "Reached the target score after "+cycleIndex+" cycles.";
+                }
+                if (run.targetReached.get()){
+                    return "Another lineage reached the target score after "+cycleIndex+" cycles.";
+                }
+                if (CWI > 0 && cyclesWithoutImprovement >= CWI){
+                    return "No improvement for "+cyclesWithoutImprovement+" cycles after "+cycleIndex+" cycles.";
+                }
+                if (MOTMillis > 0 && System.currentTimeMillis()-run.startTime >= MOTMillis){
+                    return "Reached the maximum optimization time after "+cycleIndex+" cycles.";
+                }
+                if (cycleIndex >= CPL){
+                    return "Completed "+cycleIndex+" cycles.";
+                }
+                return null;
+            }
+
+            @Override
+            public boolean runCycle(){
+                try{
+                    IDomainBasedEncodedScoredNetwork previousLineageFittest = lineageFittest;
+                    LineageCycleReport cycle = step.runCycle(currentFittest, cycleIndex);
+                    currentFittest = cycle.network;
+                    if (scorer.compareFitness(cycle.fittest, lineageFittest) > 0) lineageFittest = cycle.fittest;
+                    fittestScores.addAll(Arrays.asList(cycle.scores));
+
+                    int finishedCycles = run.completedCycles.incrementAndGet();
 
-                    currentFittest = subCycleFittest[fittestIndex];
-                    try{
-                        fittestScores.add(subCycleMothers[fittestIndex].getScore());
-                        fittestSubScores = futures[fittestIndex].get().fittestScores;
-                        for(String score: fittestSubScores){
-                            fittestScores.add(score);
-                        }
-                    } catch (Exception e){System.out.println(e.getMessage());}
-                    
-                    int finishedCycles = completedCycles.incrementAndGet();
-                    
                     if (out != null && finishedCycles%cyclesPerUpdate==0){
-                        double elapsedTime = System.currentTimeMillis()-startTime;
+                        double elapsedTime = System.currentTimeMillis()-run.startTime;
                         double fractionComplete = (((double)finishedCycles)/((double)totalCycles));
                         int percentComplete = (int) (fractionComplete*100);
                         double remainingTime = ((elapsedTime/fractionComplete)*(1-fractionComplete));
@@ -996,29 +1891,190 @@ public class SeqEvo {
                         out.println(percentComplete + "% completed; " + "Estimated time remaining: "+ h + " h " + m + " m " + s + " s ");
                     }
                     cycleIndex++;
-                } while (cycleIndex < CPL);
-                
-                
 
-                Type2CycleReport ret = new Type2CycleReport(currentFittest, fittestScores.toArray(new String[0]));
-                return ret;
+                    if (scorer.compareFitness(currentFittest, lineageFittest) > 0){
+                        lineageFittest = currentFittest;
+                    }
+                    if (lineageFittest != previousLineageFittest){
+                        cyclesWithoutImprovement = 0;
+                    } else {
+                        cyclesWithoutImprovement++;
+                    }
+                    String stopReason = getStopReason(cycleIndex, cyclesWithoutImprovement, lineageFittest);
+
+                    // the final state is always saved, so that a resumed optimization does not repeat a stopped lineage.
+                    if (run.checkpointWriter != null && (stopReason != null || System.currentTimeMillis()-lastCheckpointTime >= checkpointIntervalMillis)){
+                        lastCheckpointTime = System.currentTimeMillis();
+                        IDomainBasedEncodedScoredNetwork savedNetwork = (stopReason == null) ? currentFittest : getReportedNetwork();
+                        run.checkpointWriter.publish(lineageIndex, new LineageState(initialState.initialScore, cycleIndex, savedNetwork, lineageFittest, cyclesWithoutImprovement, fittestScores.toArray(new Number[0]), stopReason));
+                    }
+                    if (stopReason == null) return true;
+
+                    // cycles skipped by stopping early count as completed, so that the estimated time remaining stays accurate.
+                    if (cycleIndex < CPL) run.completedCycles.addAndGet(CPL-cycleIndex);
+
+                    report.complete(new Type2CycleReport(getReportedNetwork(), fittestScores.toArray(new Number[0]), stopReason));
+                } catch (RuntimeException e){
+                    report.completeExceptionally(e);
+                }
+                return false;
             }
         }
-        
+
+        // runs the cycles of one lineage of the genetic engine.
+        private class Cycle2Request implements LineageStep{
+            final int lineageIndex;
+            final OptimizationRun run;
+            final IDomainBasedEncodedScoredNetwork[] subCycleMothers = new IDomainBasedEncodedScoredNetwork[NMPC+1];
+            final Type3CycleRequest[] subCycleRequests = new Type3CycleRequest[NMPC+1];
+            final List<Future<Type3CycleReport>> futures = new ArrayList<>(Collections.nCopies(NMPC+1, (Future<Type3CycleReport>) null));
+            final Type3CycleReport[] subCycleReports = new Type3CycleReport[NMPC+1];
+            final IDomainBasedEncodedScoredNetwork[] subCycleFittest = new IDomainBasedEncodedScoredNetwork[NMPC+1];
+
+            Cycle2Request ( int lineageIndex, OptimizationRun run){
+                this.lineageIndex = lineageIndex;
+                this.run = run;
+                for(int i = 0; i < NMPC+1; i++){
+                    subCycleRequests[i] = new Type3CycleRequest(null);
+                }
+            }
+
+            // posts the lineage's fittest network. returns the fittest posted network if the lineage's fittest network
+            // is among the NRPM least fit posted networks, or the lineage's fittest network otherwise.
+            // lineages do not wait for each other, so each compares against the latest network posted by every other lineage.
+            private IDomainBasedEncodedScoredNetwork migrate(IDomainBasedEncodedScoredNetwork fittest){
+                int slot = firstLineage+lineageIndex;
+                run.mailbox.set(slot, fittest);
+                if (exchange != null) exchange.posted(slot, fittest);
+                IDomainBasedEncodedScoredNetwork fittestPosted = fittest;
+                int posted = 1;
+                int fitter = 0;
+                for(int i = 0; i < run.mailbox.length(); i++){
+                    IDomainBasedEncodedScoredNetwork network = run.mailbox.get(i);
+                    if (i == slot || network == null) continue;
+                    posted++;
+                    if (scorer.compareFitness(network, fittest) > 0) fitter++;
+                    if (scorer.compareFitness(network, fittestPosted) > 0) fittestPosted = network;
+                }
+                if (fitter > 0 && fitter >= posted - NRPM){
+                    return fittestPosted;
+                }
+                return fittest;
+            }
+
+            @Override
+            public LineageCycleReport runCycle(IDomainBasedEncodedScoredNetwork network, int cycleIndex){
+                IDomainBasedEncodedScoredNetwork[] newCycleMothers = mutationSupervisor.getType2Mutation(network,NMPC);
+
+                subCycleMothers[0] = network;
+                for(int i = 1; i < NMPC+1; i++){
+                    subCycleMothers[i] = newCycleMothers[i-1];
+                }
+
+                // the calling thread runs the first sub-cycle while the others are queued.
+                for(int i = 0; i < NMPC+1; i++){
+                    subCycleRequests[i].updateState(subCycleMothers[i]);
+                    futures.set(i, (i == 0) ? null : mutationSupervisor.fork(ForkJoinTask.adapt(subCycleRequests[i])));
+                }
+                subCycleReports[0] = subCycleRequests[0].call();
+
+                try{
+                    for(int i=NMPC; i > 0; i--){
+                        subCycleReports[i] = futures.get(i).get();
+                    }
+                } catch (Exception e){System.out.println(e.getMessage());}
+                for(int i=0; i < NMPC+1; i++){
+                    subCycleFittest[i] = subCycleReports[i].fittest;
+                }
+
+                int fittestIndex =0;
+                for(int i =0; i < NMPC+1;i++){
+                    if (scorer.compareFitness(subCycleFittest[i], subCycleFittest[fittestIndex])>=0){
+                        fittestIndex = i;
+                    }
+                }
+
+                IDomainBasedEncodedScoredNetwork fittest = subCycleFittest[fittestIndex];
+                Number[] scores = new Number[subCycleReports[fittestIndex].fittestScores.length+1];
+                scores[0] = getScoreNumber(subCycleMothers[fittestIndex]);
+                System.arraycopy(subCycleReports[fittestIndex].fittestScores, 0, scores, 1, scores.length-1);
+
+                // lineages migrate after every CPM cycles, except the last.
+                int completedCycles = cycleIndex+1;
+                if (run.mailbox != null && completedCycles%CPM == 0 && completedCycles < CPL){
+                    fittest = migrate(fittest);
+                }
+                return new LineageCycleReport(fittest, fittest, scores);
+            }
+        }
+
+        // runs one lineage of the annealing engine as an independent simulated-annealing chain. each generation, the fittest
+        // daughter replaces the chain's network if its score is at most the network's score times 1-T*ln(u), where T is the
+        // temperature and u is uniform in (0,1], so that a daughter scoring more by a fraction f is accepted with probability
+        // exp(-f/T). the limit is drawn before the daughters are scored and bounds their scoring, so that rejected daughters
+        // cost no more than in the genetic engine.
+        private class AnnealingRequest implements LineageStep{
+            final MutationSupervisor.Type3Slots daughterSlots = mutationSupervisor.new Type3Slots(NDPG);
+            final BigDecimal initialScoreTerm; // part of the score the temperature is a fraction of which does not change with the chain's score.
+
+            AnnealingRequest (BigInteger initialScore){
+                daughterSlots.type2Fraction = annealing.type2Fraction;
+                initialScoreTerm = new BigDecimal(initialScore).multiply(BigDecimal.valueOf(AnnealingParameters.INITIAL_SCORE_FRACTION));
+            }
+
+            @Override
+            public LineageCycleReport runCycle(IDomainBasedEncodedScoredNetwork network, int cycleIndex){
+                // the chain's network may become less fit than the fittest network of the cycle.
+                IDomainBasedEncodedScoredNetwork currentFittest = network;
+                IDomainBasedEncodedScoredNetwork fittest = network;
+                Number[] scores = new Number[GPC];
+                if (trackDecomposition) scorer.getDecomposition(currentFittest);
+                double totalGenerations = (double)CPL*GPC;
+                for(int generationIndex = 0; generationIndex < GPC; generationIndex++){
+                    double temperature = annealing.getTemperature((((double)cycleIndex)*GPC+generationIndex)/totalGenerations);
+                    // a daughter is accepted if its score exceeds the chain's by at most the margin times the chain's score plus the initial score term.
+                    double margin = -temperature*Math.log(1-ThreadLocalRandom.current().nextDouble());
+                    BigDecimal score = new BigDecimal(currentFittest.getBigIntegerScore());
+                    BigInteger boundScore = score.add(score.add(initialScoreTerm).multiply(BigDecimal.valueOf(margin))).toBigInteger();
+                    daughterSlots.boundScore = boundScore;
+                    IDomainBasedEncodedScoredNetwork[] newDaughters = mutationSupervisor.getType3Mutation(currentFittest,daughterSlots);
+
+                    // slots without a valid daughter, or whose daughter was rejected, hold the chain's network.
+                    IDomainBasedEncodedScoredNetwork accepted = null;
+                    for(IDomainBasedEncodedScoredNetwork daughter : newDaughters){
+                        if (daughter == currentFittest || daughter.getBigIntegerScore().compareTo(boundScore) > 0) continue;
+                        if (accepted == null || scorer.compareFitness(daughter, accepted) > 0) accepted = daughter;
+                    }
+                    if (accepted != null){
+                        currentFittest = accepted;
+                        // the decomposition of an accepted daughter is updated from its mother's.
+                        if (trackDecomposition) scorer.getDecomposition(currentFittest);
+                        if (scorer.compareFitness(currentFittest, fittest) > 0) fittest = currentFittest;
+                    }
+                    scores[generationIndex] = getScoreNumber(currentFittest);
+                }
+                return new LineageCycleReport(currentFittest, fittest, scores);
+            }
+        }
+
         static public class Type2CycleReport{
             IDomainBasedEncodedScoredNetwork fittest;
-            String[] fittestScores;
-            Type2CycleReport(IDomainBasedEncodedScoredNetwork fittest, String[] fittestScores){
+            Number[] fittestScores;
+            String stopReason;
+            Type2CycleReport(IDomainBasedEncodedScoredNetwork fittest, Number[] fittestScores, String stopReason){
                 this.fittest = fittest;
                 this.fittestScores = fittestScores;
+                this.stopReason = stopReason;
             }
         }
         
-        private class Type3CycleRequest implements Callable{
+        private class Type3CycleRequest implements Callable<Type3CycleReport>{
             IDomainBasedEncodedScoredNetwork initialNetwork;
+            final MutationSupervisor.Type3Slots daughterSlots;
 
             Type3CycleRequest ( IDomainBasedEncodedScoredNetwork initialNetwork){
                 this.initialNetwork = initialNetwork;
+                this.daughterSlots = mutationSupervisor.new Type3Slots(NDPG);
             }
 
             public void updateState(IDomainBasedEncodedScoredNetwork initialNetwork){
@@ -1027,19 +2083,23 @@ public class SeqEvo {
 
             @Override
             public Type3CycleReport call(){
-                String[] fittestScores = new String[GPC];
+                Number[] fittestScores = new Number[GPC];
                 int generationIndex = 0;
                 IDomainBasedEncodedScoredNetwork currentFittest = initialNetwork;
+                if (trackDecomposition) scorer.getDecomposition(currentFittest);
 
                 do{
-                    IDomainBasedEncodedScoredNetwork[] newDaughters = mutationSupervisor.getType3Mutation(currentFittest,NDPG);
+                    IDomainBasedEncodedScoredNetwork[] newDaughters = mutationSupervisor.getType3Mutation(currentFittest,daughterSlots);
 
+                    IDomainBasedEncodedScoredNetwork previousFittest = currentFittest;
                     for(int i =0; i < NDPG;i++){
                         if (scorer.compareFitness(newDaughters[i], currentFittest)>=0){
                             currentFittest = newDaughters[i];
                         }
                     }
-                    fittestScores[generationIndex] = currentFittest.getScore();
+                    // the decomposition of an accepted daughter is updated from its mother's.
+                    if (trackDecomposition && currentFittest != previousFittest) scorer.getDecomposition(currentFittest);
+                    fittestScores[generationIndex] = getScoreNumber(currentFittest);
 
                     generationIndex++;
                 } while (generationIndex < GPC);
@@ -1052,14 +2112,513 @@ public class SeqEvo {
 
         static public class Type3CycleReport{
             IDomainBasedEncodedScoredNetwork fittest;
-            String[] fittestScores;
-            Type3CycleReport(IDomainBasedEncodedScoredNetwork fittest, String[] fittestScores){
+            Number[] fittestScores;
+            Type3CycleReport(IDomainBasedEncodedScoredNetwork fittest, Number[] fittestScores){
                 this.fittest = fittest;
                 this.fittestScores = fittestScores;
             }
         }
     }
     
+    // connects the lineages run by this process to the lineages run by other processes.
+    private interface LineageExchange{
+        // called before the lineages start. networks posted and targets reached by lineages of other processes are applied
+        // to the given mailbox, which is null if lineages never migrate, and flag.
+        void attach(OptimizationSupervisor os, AtomicReferenceArray<IDomainBasedEncodedScoredNetwork> mailbox, AtomicBoolean targetReached);
+        void posted(int lineageIndex, IDomainBasedEncodedScoredNetwork network);
+        void reachedTarget();
+    }
+    
+    /**
+     * Runs the lineages of each coordinator which connects to the given port,
+     * one coordinator at a time, until the process is stopped. A job which
+     * cannot be run or fails is reported to the coordinator with an ERROR
+     * message, and the worker then waits for the next coordinator.
+     * @param port port to listen on. 0 selects a free port, which is printed.
+     * @param bindAddress address on which connections are accepted.
+     */
+    static void serveLineages(int port, InetAddress bindAddress){
+        try (ServerSocket server = new ServerSocket(port, 50, bindAddress)){
+            System.out.println("SeqEvo worker listening on "+bindAddress.getHostAddress()+" port "+server.getLocalPort()+".");
+            while(true){
+                try (Socket socket = server.accept()){
+                    socket.setTcpNoDelay(true);
+                    socket.setSoTimeout(LineageProtocol.READ_TIMEOUT_MILLIS);
+                    DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                    if (in.readByte() != LineageProtocol.JOB || in.readInt() != LineageProtocol.MAGIC || in.readInt() != LineageProtocol.VERSION){
+                        System.out.println("Ignoring connection from "+socket.getRemoteSocketAddress()+" which did not send a SeqEvo job.");
+                        continue;
+                    }
+                    Map<String,String> parameters = getJobParameters(BinaryFormat.readMap(in));
+                    Map<String,String> fixedDomains = BinaryFormat.readMap(in);
+                    Map<String,String> initialVariableDomains = BinaryFormat.readMap(in);
+                    Map<String,String[]> oligomerDomains = BinaryFormat.readListMap(in);
+                    int totalLineages = in.readInt();
+                    int firstLineage = in.readInt();
+                    // the factory and scorer end the process on domains they cannot encode, so those are rejected first.
+                    String problem = (parameters == null) ? "Invalid parameters." : getJobDomainsProblem(fixedDomains, initialVariableDomains, oligomerDomains);
+                    if (problem != null){
+                        System.out.println("Rejecting job from "+socket.getRemoteSocketAddress()+": "+problem);
+                        sendError(out, problem);
+                        continue;
+                    }
+                    
+                    Request request = new Request(parameters, fixedDomains, initialVariableDomains, oligomerDomains, System.out);
+                    WorkerExchange exchange = new WorkerExchange(in, out, initialVariableDomains);
+                    request.firstLineage = firstLineage;
+                    request.totalLineages = totalLineages;
+                    request.exchange = exchange;
+                    System.out.println("Running lineages "+firstLineage+" to "+(firstLineage+Integer.parseInt(parameters.get(NL_LABEL))-1)+" of "+totalLineages+" for "+socket.getRemoteSocketAddress()+".");
+                    Report report;
+                    try{
+                        report = new SeqEvo().run(request);
+                    } catch (RuntimeException e){
+                        exchange.finished = true;
+                        synchronized(out){
+                            sendError(out, String.valueOf(e.getMessage()));
+                        }
+                        throw e;
+                    } finally {
+                        exchange.finished = true;
+                    }
+                    exchange.sendResult(report);
+                    System.out.println("Lineages completed. Fittest "+report.scoreLabel+" ("+report.scoreUnits+"): "+report.finalNetwork.getScore());
+                } catch (IOException | RuntimeException e){
+                    System.out.println("Job from coordinator failed: "+e);
+                }
+            }
+        } catch (IOException e){
+            System.out.println("Could not listen on port "+port+": "+e.getMessage());
+            System.exit(1);
+        }
+    }
+    
+    // sends an ERROR message holding the reason a job was not run.
+    private static void sendError(DataOutputStream out, String reason) throws IOException{
+        out.writeByte(LineageProtocol.ERROR);
+        BinaryFormat.writeString(out, reason);
+        out.flush();
+    }
+    
+    // returns why the domains and oligomers of a job cannot be encoded, or null if they can.
+    private static String getJobDomainsProblem(Map<String,String> fixedDomains, Map<String,String> variableDomains, Map<String,String[]> oligomerDomains){
+        if (variableDomains.isEmpty()) return "The job has no variable domains.";
+        if (oligomerDomains.isEmpty()) return "The job has no oligomers.";
+        for (Map.Entry<String,String> entry : fixedDomains.entrySet()){
+            if (variableDomains.containsKey(entry.getKey())) return "Domain "+entry.getKey()+" is both fixed and variable.";
+        }
+        List<Map.Entry<String,String>> domains = new ArrayList<>(fixedDomains.entrySet());
+        domains.addAll(variableDomains.entrySet());
+        for (Map.Entry<String,String> entry : domains){
+            String problem = getSequenceProblem(entry.getKey(), entry.getValue());
+            if (problem != null) return problem;
+        }
+        for (Map.Entry<String,String[]> entry : oligomerDomains.entrySet()){
+            if (entry.getValue().length == 0) return "Oligomer "+entry.getKey()+" has no domains.";
+            for (String domain : entry.getValue()){
+                String name = domain.startsWith("c.") ? domain.substring(2) : domain;
+                if (!fixedDomains.containsKey(name) && !variableDomains.containsKey(name)) return "Oligomer "+entry.getKey()+" holds the unknown domain "+domain+".";
+            }
+        }
+        return null;
+    }
+    
+    // returns why the variable domains of a posted, returned or saved network cannot replace those of the job, or null if they can.
+    private static String getVariableDomainsProblem(Map<String,String> jobDomains, Map<String,String> domains){
+        if (!domains.keySet().equals(jobDomains.keySet())) return "The variable domains differ from those of the job.";
+        for (Map.Entry<String,String> entry : domains.entrySet()){
+            if (entry.getValue().length() != jobDomains.get(entry.getKey()).trim().length()) return "Domain "+entry.getKey()+" changed its length.";
+            String problem = getSequenceProblem(entry.getKey(), entry.getValue());
+            if (problem != null) return problem;
+        }
+        return null;
+    }
+    
+    // returns why the sequence of a domain cannot be encoded, or null if it can.
+    private static String getSequenceProblem(String name, String sequence){
+        if (sequence.isEmpty()) return "Domain "+name+" is empty.";
+        for (int i = 0; i < sequence.length(); i++){
+            if ("ACGTacgt".indexOf(sequence.charAt(i)) < 0) return "Domain "+name+" holds the unknown base \""+sequence.charAt(i)+"\".";
+        }
+        return null;
+    }
+    
+    // returns the parameters of a job, or null if any of them is not valid. workers do not authenticate coordinators, so
+    // they never read or write files, or connect to other workers, where a coordinator tells them to.
+    private static Map<String,String> getJobParameters(Map<String,String> jobParameters){
+        Map<String,String> parameters = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        parameters.putAll(jobParameters);
+        parameters.put(TOPOLOGY_SNAPSHOT_LABEL, TOPOLOGY_SNAPSHOT_DEFAULT);
+        parameters.put(CHECKPOINT_DIRECTORY_LABEL, CHECKPOINT_DIRECTORY_DEFAULT);
+        parameters.put(CHECKPOINT_INTERVAL_LABEL, "0");
+        parameters.put(RESUME_LABEL, "false");
+        parameters.put(WORKERS_LABEL, "false");
+        if (!parameters.containsKey(NL_LABEL)) return null;
+        for (Map.Entry<String,String> entry : parameters.entrySet()){
+            Parameter p = labelToParameterMap.get(entry.getKey());
+            if (p != null && !p.isValid(entry.getValue())) return null;
+        }
+        return parameters;
+    }
+    
+    // sends the networks posted and targets reached by the lineages of a worker process to its coordinator, and applies those it relays.
+    static private class WorkerExchange implements LineageExchange{
+        final DataInputStream in;
+        final DataOutputStream out; // written by every lineage and by the heartbeat, so writes are synchronized on it.
+        final Map<String,String> jobDomains; // variable domains of the job, which posted networks must match.
+        volatile boolean finished = false; // true once the lineages have stopped.
+        
+        // the heartbeat starts at once, so that the coordinator keeps waiting while the initial network is scored.
+        WorkerExchange(DataInputStream in, DataOutputStream out, Map<String,String> jobDomains){
+            this.in = in;
+            this.out = out;
+            this.jobDomains = jobDomains;
+            LineageProtocol.startHeartbeat(out, () -> finished, "SeqEvo-worker-heartbeat");
+        }
+        
+        @Override
+        public void attach(OptimizationSupervisor os, AtomicReferenceArray<IDomainBasedEncodedScoredNetwork> mailbox, AtomicBoolean targetReached){
+            Thread reader = new Thread(() -> {
+                try{
+                    while(true){
+                        byte type = in.readByte();
+                        if (type == LineageProtocol.POST){
+                            int lineageIndex = in.readInt();
+                            Map<String,String> variableDomains = BinaryFormat.readMap(in);
+                            String problem = getVariableDomainsProblem(jobDomains, variableDomains);
+                            if (problem != null) throw new IOException("Received a network which does not fit the job. "+problem);
+                            if (mailbox != null && lineageIndex >= 0 && lineageIndex < mailbox.length()) mailbox.set(lineageIndex, os.getScoredNetwork(variableDomains));
+                        } else if (type == LineageProtocol.TARGET){
+                            targetReached.set(true);
+                        } else if (type != LineageProtocol.HEARTBEAT){
+                            throw new IOException("Unknown message type "+type+".");
+                        }
+                    }
+                } catch (IOException | RuntimeException e){
+                    // the connection is closed once the results are sent. until then, the lineages stop as their results cannot be returned.
+                    if (!finished){
+                        System.out.println("Lost connection to coordinator: "+e+". Stopping lineages.");
+                        targetReached.set(true);
+                    }
+                }
+            }, "SeqEvo-worker-exchange");
+            reader.setDaemon(true);
+            reader.start();
+        }
+        
+        @Override
+        public void posted(int lineageIndex, IDomainBasedEncodedScoredNetwork network){
+            Map<String,String> variableDomains = OptimizationSupervisor.getVariableDomains(network);
+            synchronized(out){
+                try{
+                    out.writeByte(LineageProtocol.POST);
+                    out.writeInt(lineageIndex);
+                    BinaryFormat.writeMap(out, variableDomains);
+                    out.flush();
+                } catch (IOException e){
+                    System.out.println("Could not post network to coordinator: "+e.getMessage());
+                }
+            }
+        }
+        
+        @Override
+        public void reachedTarget(){
+            synchronized(out){
+                try{
+                    out.writeByte(LineageProtocol.TARGET);
+                    out.flush();
+                } catch (IOException e){
+                    System.out.println("Could not notify coordinator: "+e.getMessage());
+                }
+            }
+        }
+        
+        void sendResult(Report report) throws IOException{
+            synchronized(out){
+                out.writeByte(LineageProtocol.RESULT);
+                out.writeInt(report.lineageFittestNetworks.length);
+                for(int i = 0; i < report.lineageFittestNetworks.length; i++){
+                    BinaryFormat.writeMap(out, OptimizationSupervisor.getVariableDomains(report.lineageFittestNetworks[i]));
+                    BinaryFormat.writeStrings(out, report.lineageFittestScores[i]);
+                    BinaryFormat.writeString(out, report.lineageStopReasons[i]);
+                }
+                BinaryFormat.writeString(out, report.scoringMetrics);
+                out.flush();
+            }
+        }
+    }
+    
+    // divides the lineages among worker processes, relays the messages between them and merges their results.
+    static private class LineageCoordinator{
+        final String[] addresses;
+        final Request request;
+        final Map<String,String> parameters; // parameters of every worker. NL is set for each worker.
+        final int NL;
+        final OptimizationSupervisor os; // scores the networks returned by the workers.
+        final PrintStream streamForUpdates;
+        String[] workerMetrics; // scoring metrics of each worker. null for workers which returned no results.
+        
+        LineageCoordinator(String[] addresses, Request request, Map<String,String> parameters, int NL, OptimizationSupervisor os, PrintStream streamForUpdates){
+            this.addresses = addresses;
+            this.request = request;
+            this.parameters = parameters;
+            this.NL = NL;
+            this.os = os;
+            this.streamForUpdates = streamForUpdates;
+        }
+        
+        // the lineages of a worker which cannot be reached, or which is lost before it returns its results, report the
+        // initial network, so that the results of the other workers are still merged.
+        OptimizationSupervisor.OptimizerReport optimize(IDomainBasedEncodedScoredNetwork initialNetwork){
+            // workers beyond the number of lineages are not used.
+            int numberWorkers = Math.min(addresses.length, NL);
+            Connection[] connections = new Connection[numberWorkers];
+            Map<String,String> initialVariableDomains = OptimizationSupervisor.getVariableDomains(initialNetwork);
+            for(int i = 0; i < numberWorkers; i++){
+                int firstLineage = (int)((long)i*NL/numberWorkers);
+                int lineages = (int)((long)(i+1)*NL/numberWorkers) - firstLineage;
+                connections[i] = new Connection(addresses[i].trim(), firstLineage, lineages, connections);
+                try{
+                    connections[i].connect();
+                    connections[i].sendJob(initialVariableDomains);
+                    streamForUpdates.println("Lineages "+firstLineage+" to "+(firstLineage+lineages-1)+" sent to worker "+addresses[i]+".");
+                } catch (IOException e){
+                    System.out.println("Could not start lineages "+firstLineage+" to "+(firstLineage+lineages-1)+" on worker "+addresses[i]+": "+e.getMessage());
+                    connections[i].close();
+                }
+            }
+            for(Connection c : connections){
+                if (!c.finished) c.start();
+            }
+            try{
+                for(Connection c : connections){
+                    if (c.reader != null) c.reader.join();
+                }
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+            
+            IDomainBasedEncodedScoredNetwork[] fittestLineageNetworks = new IDomainBasedEncodedScoredNetwork[NL];
+            String[][] lineageFittestScores = new String[NL][];
+            String[] lineageStopReasons = new String[NL];
+            workerMetrics = new String[addresses.length];
+            for(int i = 0; i < numberWorkers; i++){
+                Connection c = connections[i];
+                if (c.scoringMetrics == null){
+                    System.out.println("Worker "+c.address+" did not return the results of lineages "+c.firstLineage+" to "+(c.firstLineage+c.lineages-1)+". They report the initial network.");
+                    for(int j = 0; j < c.lineages; j++){
+                        fittestLineageNetworks[c.firstLineage+j] = initialNetwork;
+                        lineageFittestScores[c.firstLineage+j] = new String[] {String.valueOf(initialNetwork.getScore())};
+                        lineageStopReasons[c.firstLineage+j] = "Lost worker "+c.address+".";
+                    }
+                    continue;
+                }
+                for(int j = 0; j < c.lineages; j++){
+                    fittestLineageNetworks[c.firstLineage+j] = os.getScoredNetwork(c.fittestVariableDomains.get(j));
+                    lineageFittestScores[c.firstLineage+j] = c.fittestScores[j];
+                    lineageStopReasons[c.firstLineage+j] = c.stopReasons[j];
+                }
+                workerMetrics[i] = c.scoringMetrics;
+            }
+            
+            IDomainBasedEncodedScoredNetwork fittest = fittestLineageNetworks[0];
+            for(int i = 1; i < NL; i++){
+                if(os.scorer.compareFitness(fittestLineageNetworks[i],fittest) >= 0){
+                    fittest = fittestLineageNetworks[i];
+                }
+            }
+            return new OptimizationSupervisor.OptimizerReport(fittest, lineageFittestScores, lineageStopReasons, fittestLineageNetworks);
+        }
+        
+        // connection to one worker. its reader thread relays messages to the other workers until the worker returns its results.
+        private class Connection{
+            final String address;
+            final int firstLineage;
+            final int lineages;
+            final Connection[] connections;
+            final Socket socket = new Socket();
+            DataInputStream in;
+            DataOutputStream out; // written by the readers of every connection and by the heartbeat, so writes are synchronized on it.
+            Thread reader; // null until the job is sent.
+            volatile boolean finished = false; // true once the worker has returned its results or is lost.
+            List<Map<String,String>> fittestVariableDomains;
+            String[][] fittestScores;
+            String[] stopReasons;
+            String scoringMetrics; // null until the results are received.
+            
+            Connection(String address, int firstLineage, int lineages, Connection[] connections){
+                this.address = address;
+                this.firstLineage = firstLineage;
+                this.lineages = lineages;
+                this.connections = connections;
+            }
+            
+            void connect() throws IOException{
+                int separator = address.lastIndexOf(':');
+                socket.connect(new InetSocketAddress(address.substring(0, separator), Integer.parseInt(address.substring(separator+1))), LineageProtocol.CONNECT_TIMEOUT_MILLIS);
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(LineageProtocol.READ_TIMEOUT_MILLIS);
+                this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            }
+            
+            void sendJob(Map<String,String> initialVariableDomains) throws IOException{
+                Map<String,String> jobParameters = new TreeMap<>(parameters);
+                jobParameters.put(NL_LABEL, String.valueOf(lineages));
+                out.writeByte(LineageProtocol.JOB);
+                out.writeInt(LineageProtocol.MAGIC);
+                out.writeInt(LineageProtocol.VERSION);
+                BinaryFormat.writeMap(out, jobParameters);
+                BinaryFormat.writeMap(out, request.fixedDomains);
+                BinaryFormat.writeMap(out, initialVariableDomains);
+                BinaryFormat.writeListMap(out, request.oligomerDomains);
+                out.writeInt(NL);
+                out.writeInt(firstLineage);
+                out.flush();
+            }
+            
+            // starts relaying the messages of the worker and sending heartbeats to it.
+            void start(){
+                reader = new Thread(this::read, "SeqEvo-coordinator-"+address);
+                reader.start();
+                LineageProtocol.startHeartbeat(out, () -> finished, "SeqEvo-coordinator-heartbeat-"+address);
+            }
+            
+            private void read(){
+                try{
+                    while(true){
+                        byte type = in.readByte();
+                        if (type == LineageProtocol.POST){
+                            int lineageIndex = in.readInt();
+                            Map<String,String> variableDomains = BinaryFormat.readMap(in);
+                            for(Connection c : connections){
+                                if (c != this) c.sendPost(lineageIndex, variableDomains);
+                            }
+                        } else if (type == LineageProtocol.TARGET){
+                            for(Connection c : connections){
+                                if (c != this) c.sendTarget();
+                            }
+                        } else if (type == LineageProtocol.RESULT){
+                            readResult();
+                            break;
+                        } else if (type == LineageProtocol.ERROR){
+                            System.out.println("Worker "+address+" could not run lineages "+firstLineage+" to "+(firstLineage+lineages-1)+": "+BinaryFormat.readString(in));
+                            break;
+                        } else if (type != LineageProtocol.HEARTBEAT){
+                            throw new IOException("Unknown message type "+type+".");
+                        }
+                    }
+                } catch (IOException e){
+                    System.out.println("Lost connection to worker "+address+": "+e);
+                }
+                close();
+            }
+            
+            private void readResult() throws IOException{
+                int count = in.readInt();
+                if (count != lineages) throw new IOException("Received the results of "+count+" lineages instead of "+lineages+".");
+                List<Map<String,String>> variableDomains = new ArrayList<>(count);
+                String[][] scores = new String[count][];
+                String[] reasons = new String[count];
+                for(int i = 0; i < count; i++){
+                    variableDomains.add(BinaryFormat.readMap(in));
+                    String problem = getVariableDomainsProblem(request.initialVariableDomains, variableDomains.get(i));
+                    if (problem != null) throw new IOException("Received a network which does not fit the job. "+problem);
+                    scores[i] = BinaryFormat.readStrings(in);
+                    reasons[i] = BinaryFormat.readString(in);
+                }
+                String metrics = BinaryFormat.readString(in);
+                // the results are only kept once all of them are received.
+                fittestVariableDomains = variableDomains;
+                fittestScores = scores;
+                stopReasons = reasons;
+                scoringMetrics = metrics;
+                streamForUpdates.println("Worker "+address+" completed lineages "+firstLineage+" to "+(firstLineage+lineages-1)+".");
+            }
+            
+            // stops messages to the worker and closes the connection.
+            void close(){
+                finished = true;
+                try{
+                    socket.close();
+                } catch (IOException e){}
+            }
+            
+            // messages to workers which have already returned their results, or are lost, are dropped.
+            void sendPost(int lineageIndex, Map<String,String> variableDomains){
+                if (finished) return;
+                synchronized(out){
+                    if (finished) return;
+                    try{
+                        out.writeByte(LineageProtocol.POST);
+                        out.writeInt(lineageIndex);
+                        BinaryFormat.writeMap(out, variableDomains);
+                        out.flush();
+                    } catch (IOException e){
+                        // the worker is sending its results.
+                    }
+                }
+            }
+            
+            void sendTarget(){
+                if (finished) return;
+                synchronized(out){
+                    if (finished) return;
+                    try{
+                        out.writeByte(LineageProtocol.TARGET);
+                        out.flush();
+                    } catch (IOException e){
+                        // the worker is sending its results.
+                    }
+                }
+            }
+        }
+    }
+    
+    private static class WorkersParameter implements Parameter{
+        String description;
+        String defaultValue;
+        String label;
+        
+        WorkersParameter ( String defaultValue, String description, String label){
+            this.label = label;
+            this.description = description;
+            this.defaultValue = defaultValue;
+        }
+        
+        @Override
+        public String getDefault(){
+            return defaultValue;
+        }
+        
+        @Override
+        public String getDescription(){
+            return description;
+        }
+        
+        @Override
+        public String getLabel(){
+            return label;
+        }
+        
+        @Override
+        public boolean isValid(String value){
+            if (value.equalsIgnoreCase("false")) return true;
+            for(String address : value.split(",")){
+                int separator = address.lastIndexOf(':');
+                if (separator <= 0) return false;
+                try{
+                    int port = Integer.parseInt(address.substring(separator+1).trim());
+                    if (port < 1 || port > 65535) return false;
+                } catch (NumberFormatException e){
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
     private interface Parameter{
         public String getDefault();
         public String getDescription();
@@ -1106,6 +2665,84 @@ public class SeqEvo {
         }
     }
     
+    private static class ScoreParameter implements Parameter{
+        String description;
+        String defaultValue;
+        String label;
+        
+        ScoreParameter ( String defaultValue, String description, String label){
+            this.label = label;
+            this.description = description;
+            this.defaultValue = defaultValue;
+        }
+        
+        @Override
+        public String getDefault(){
+            return defaultValue;
+        }
+        
+        @Override
+        public String getDescription(){
+            return description;
+        }
+        
+        @Override
+        public String getLabel(){
+            return label;
+        }
+        
+        @Override
+        public boolean isValid(String value){
+            if (value.equalsIgnoreCase("false")) return true;
+            try{
+                return new BigInteger(value).signum() >= 0;
+            } catch (NumberFormatException e){
+                return false;
+            }
+        }
+    }
+    
+    private static class DecimalParameter implements Parameter{
+        String description;
+        String defaultValue;
+        String label;
+        double minValue;
+        double maxValue;
+        
+        DecimalParameter ( String defaultValue, String description, String label, double minValue, double maxValue){
+            this.label = label;
+            this.description = description;
+            this.defaultValue = defaultValue;
+            this.minValue = minValue;
+            this.maxValue = maxValue;
+        }
+        
+        @Override
+        public String getDefault(){
+            return defaultValue;
+        }
+        
+        @Override
+        public String getDescription(){
+            return description;
+        }
+        
+        @Override
+        public String getLabel(){
+            return label;
+        }
+        
+        @Override
+        public boolean isValid(String value){
+            try{
+                double v = Double.parseDouble(value);
+                return v >= minValue && v <= maxValue;
+            } catch (NumberFormatException e){
+                return false;
+            }
+        }
+    }
+    
     private static class StringParameter implements Parameter{
         String[] validValues;
         String defaultValue;
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2019 Boise State University
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package edu.boisestate.osp;
+
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stores structures derived from a network topology in a file, so that later
+ * launches on the same topology can skip calculating them.
+ *
+ * A snapshot is identified by a digest of the fixed domains, the names and
+ * lengths of the variable domains, the domains of each oligomer and any
+ * parameters the structures depend on. Domains and oligomers are digested in
+ * the order of their names, so the digest does not depend on the iteration
+ * order of the given maps. Contents which refer to domains or oligomers must
+ * refer to them by name order too, since the indices of the caller follow the
+ * iteration order of its maps. The sequences of the variable domains are not
+ * part of the digest, so one snapshot serves every set of initial sequences.
+ *
+ * @author mtobi
+ */
+public final class TopologySnapshot extends DigestFile {
+    static final int MAGIC = 0x4F535053; // first four bytes of every snapshot file.
+    static final int VERSION = 2; // incremented whenever the contents of any snapshot change.
+    
+    /**
+     * Creates a snapshot of the given kind for the given topology.
+     * @param directory directory holding the snapshot files.
+     * @param kind name of the structures held by the snapshot.
+     * @param fixedDomains
+     * @param oligomerDomains
+     * @param variableDomains
+     * @param parameters parameters the structures depend on.
+     */
+    public TopologySnapshot(File directory, String kind, Map<String,String> fixedDomains, Map<String,String[]> oligomerDomains, Map<String,String> variableDomains, int... parameters){
+        super(directory, kind+"-", MAGIC, VERSION, "topology snapshot", kind, out -> {
+            out.writeInt(fixedDomains.size());
+            for (Map.Entry<String,String> entry : new TreeMap<>(fixedDomains).entrySet()){
+                BinaryFormat.writeString(out, entry.getKey());
+                BinaryFormat.writeString(out, entry.getValue().trim());
+            }
+            out.writeInt(variableDomains.size());
+            for (Map.Entry<String,String> entry : new TreeMap<>(variableDomains).entrySet()){
+                BinaryFormat.writeString(out, entry.getKey());
+                out.writeInt(entry.getValue().trim().length());
+            }
+            out.writeInt(oligomerDomains.size());
+            for (Map.Entry<String,String[]> entry : new TreeMap<>(oligomerDomains).entrySet()){
+                BinaryFormat.writeString(out, entry.getKey());
+                BinaryFormat.writeStrings(out, entry.getValue());
+            }
+            out.writeInt(parameters.length);
+            for (int parameter : parameters){
+                out.writeInt(parameter);
+            }
+        });
+    }
+}
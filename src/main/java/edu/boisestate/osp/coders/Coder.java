@@ -111,7 +111,11 @@ public class Coder implements ICoder{
     
     @Override
     public int[] getComplement(int[] encodedSequence){
-        int[] retSequence = IntStream.range(0,encodedSequence.length).map(i-> -encodedSequence[encodedSequence.length-i-1]).toArray();
+        int length = encodedSequence.length;
+        int[] retSequence = new int[length];
+        for (int i = 0; i < length; i++){
+            retSequence[i] = -encodedSequence[length-i-1];
+        }
         return retSequence;
     }
 }
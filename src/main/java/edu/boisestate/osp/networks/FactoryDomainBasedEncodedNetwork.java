@@ -26,6 +26,11 @@ import edu.boisestate.osp.validators.IValidator;
 import edu.boisestate.osp.scorers.IScorer;
 import edu.boisestate.osp.coders.ICoder;
 import edu.boisestate.osp.util;
+import edu.boisestate.osp.DigestFile;
+import edu.boisestate.osp.TopologySnapshot;
+import java.io.File;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -75,6 +80,13 @@ public class FactoryDomainBasedEncodedNetwork {
 
     // Creates a factory for creating networks of a given design
     public FactoryDomainBasedEncodedNetwork (ICoder coder, Map<String,String> fixedDomains, Map<String,String[]> oligomerDomains, Map<String,String> variableDomains){
+        this(coder, fixedDomains, oligomerDomains, variableDomains, null);
+    }
+    
+    // Creates a factory for creating networks of a given design. The oligomer
+    // combinations of each variable domain are stored in snapshotDirectory for
+    // later launches on the same design. snapshotDirectory may be null.
+    public FactoryDomainBasedEncodedNetwork (ICoder coder, Map<String,String> fixedDomains, Map<String,String[]> oligomerDomains, Map<String,String> variableDomains, File snapshotDirectory){
         this.coder = coder;
         
         this.fixedDomainIndices = new HashMap<>();
@@ -140,7 +152,24 @@ public class FactoryDomainBasedEncodedNetwork {
         this.vdtoc = getVariableDomainToOligomerCoordinates();
         this.vdctoc = getVariableDomainComplementToOligomerCoordinates();
         this.firstPartialEncodedOligomerSequences = assembleFirstPartialSolution();
-        this.vdCombo = getDomainToOligomerCombinationsMap(variableDomains,oligomerDomains,vdto);
+        TopologySnapshot snapshot = (snapshotDirectory == null) ? null : new TopologySnapshot(snapshotDirectory, "FactoryDomainBasedEncodedNetwork", fixedDomains, oligomerDomains, variableDomains);
+        Map<Integer,int[][]> combos = (snapshot == null) ? null : loadDomainToOligomerCombinationsMap(snapshot);
+        if (combos == null){
+            combos = getDomainToOligomerCombinationsMap(variableDomains,oligomerDomains,vdto);
+            if (snapshot != null){
+                final Map<Integer,int[][]> calculatedCombos = combos;
+                final String[] sortedDomainNames = getSortedNames(variableDomainNames);
+                final int[] oligomerRanks = getRanks(oligomerNames);
+                snapshot.save(out -> {
+                    for (String domainName : sortedDomainNames){
+                        int[][] value = calculatedCombos.get(variableDomainIndices.get(domainName));
+                        DigestFile.writeInts(out, getMapped(value[0], oligomerRanks));
+                        DigestFile.writeInts(out, getMapped(value[1], oligomerRanks));
+                    }
+                });
+            }
+        }
+        this.vdCombo = combos;
         this.oligomerBaseIsVariableArray = getBaseIsVariableArray(this.firstPartialEncodedOligomerSequences);
     }
     
@@ -540,10 +569,46 @@ public class FactoryDomainBasedEncodedNetwork {
         return retNet;
     }
 
-    private static int[] getType3Mutation(int[] encodedSequence){
+    /**
+     * Returns an unscored type 2 mutation of the given variable domain, or
+     * null if no valid mutation was found.
+     * @param existingNetwork
+     * @param domainIndex index of the variable domain to mutate.
+     * @param validator
+     * @return
+     */
+    public IDomainBasedEncodedNetwork getType2Mutation(IDomainBasedEncodedNetwork existingNetwork, int domainIndex, IValidator validator){
+        int[][] oldEVD = existingNetwork.getVariableDomainSequencesEncoded();
+        int[][] newEVD = Arrays.copyOf(oldEVD,oldEVD.length);
+        int[][] newEOS = existingNetwork.getOligomerSequencesEncoded();
+        int sdi = domainIndex;
+        int[] oldDomain = newEVD[sdi];
+        
+        InnerNetwork newNetwork = new InnerNetwork(newEVD,newEOS);
+        
+        int attempts1 = 0;
+        int[] newDomain;
+        boolean valid = false;
+        do {
+            newDomain = getType2Mutation(oldDomain);
+            newEVD[sdi] = newDomain;
+            newEOS = placeDomain(newEOS,sdi,newDomain);
+            newNetwork.encodedOligomers = newEOS;
+            newNetwork.encodedVariableDomains = newEVD;
+            valid = validator.isValidNetwork(newNetwork,sdi);
+            attempts1++;
+        } while (attempts1<1000 && (!valid || Arrays.equals(oldDomain,newDomain)));
+
+        if (!valid || Arrays.equals(oldDomain,newDomain)) {
+            return null;
+        }
+        return newNetwork;
+    }
+
+    // writes a copy of encodedSequence with two bases swapped into newSequence.
+    private static int[] getType3Mutation(int[] encodedSequence, int[] newSequence){
             Random rnd = ThreadLocalRandom.current();
             int length = encodedSequence.length;
-            int[] newSequence = new int[length];
             
             System.arraycopy(encodedSequence, 0, newSequence, 0, length);
             int i1 = rnd.nextInt(newSequence.length);
@@ -557,37 +622,73 @@ public class FactoryDomainBasedEncodedNetwork {
         }
     
     public IDomainBasedEncodedScoredNetwork getType3Mutation(IDomainBasedEncodedScoredNetwork existingNetwork, IScorer scorer, IValidator validator){
+        int sdi = getMutationDomainIndex(); // selceted Domain Index
+        IDomainBasedEncodedNetwork newNetwork = getType3Mutation(existingNetwork, sdi, validator);
+        if (newNetwork == null) {
+            return existingNetwork;
+        }
+        
+        // only the swapped bases differ from the old domain.
+        int[] oldDomain = existingNetwork.getVariableDomainSequencesEncoded()[sdi];
+        int[] newDomain = newNetwork.getVariableDomainSequencesEncoded()[sdi];
+        int updatedBaseCount = 0;
+        for (int i = 0; i < newDomain.length; i++){
+            if (oldDomain[i] != newDomain[i]) updatedBaseCount++;
+        }
+        int[] updatedBaseIndices = new int[updatedBaseCount];
+        updatedBaseCount = 0;
+        for (int i = 0; i < newDomain.length; i++){
+            if (oldDomain[i] != newDomain[i]) updatedBaseIndices[updatedBaseCount++] = i;
+        }
+        IDomainBasedEncodedScoredNetwork retNet = scorer.getScored(existingNetwork,newNetwork,sdi,updatedBaseIndices);
+        return retNet;
+    }
+    
+    /**
+     * Returns an unscored type 3 mutation of the given variable domain, or
+     * null if no valid mutation was found.
+     * @param existingNetwork
+     * @param domainIndex index of the variable domain to mutate.
+     * @param validator
+     * @return
+     */
+    public IDomainBasedEncodedNetwork getType3Mutation(IDomainBasedEncodedNetwork existingNetwork, int domainIndex, IValidator validator){
         int[][] oldEVD = existingNetwork.getVariableDomainSequencesEncoded();
         int[][] newEVD = Arrays.copyOf(oldEVD,oldEVD.length);
-        int[][] oldEOS = existingNetwork.getOligomerSequencesEncoded();
-        int[][] newEOS = Arrays.copyOf(oldEOS,oldEOS.length);
-
-        //Select a domain for mutation.
-        Random rnd = ThreadLocalRandom.current();
-        int sdi = domainSelectionBag[rnd.nextInt(domainSelectionBag.length)]; // selceted Domain Index
+        int sdi = domainIndex;
         int[] oldDomain = newEVD[sdi];
         
-        InnerNetwork newNetwork = new InnerNetwork(newEVD,newEOS);
+        // placeDomain copies the oligomer array, so the existing oligomers are placed into directly.
+        InnerNetwork newNetwork = new InnerNetwork();
         
+        // rejected attempts are overwritten in place. only the first attempt copies the affected oligomers.
         int attempts1 = 0;
-        int[] newDomain;
-        boolean valid = false;
-        do {
-            newDomain = getType3Mutation(oldDomain);
-            newEVD[sdi] = newDomain;
-            newEOS = placeDomain(newEOS,sdi,newDomain);
-            newNetwork.encodedOligomers = newEOS;
-            newNetwork.encodedVariableDomains = newEVD;
+        int[] newDomain = new int[oldDomain.length];
+        newEVD[sdi] = newDomain;
+        int[][] newEOS = placeDomain(existingNetwork.getOligomerSequencesEncoded(),sdi,getType3Mutation(oldDomain,newDomain));
+        newNetwork.encodedOligomers = newEOS;
+        newNetwork.encodedVariableDomains = newEVD;
+        boolean valid = validator.isValidNetwork(newNetwork,sdi);
+        attempts1++;
+        while (attempts1<1000 && (!valid || Arrays.equals(oldDomain,newDomain))){
+            overwriteDomain(newEOS,sdi,getType3Mutation(oldDomain,newDomain));
             valid = validator.isValidNetwork(newNetwork,sdi);
             attempts1++;
-        } while (attempts1<1000 && (!valid || Arrays.equals(oldDomain,newDomain)));
+        }
 
         if (!valid) {
-            return existingNetwork;
+            return null;
         }
-        
-        IDomainBasedEncodedScoredNetwork retNet = scorer.getScored(existingNetwork,newNetwork,sdi);
-        return retNet;
+        return newNetwork;
+    }
+    
+    /**
+     * Returns the index of a randomly selected variable domain. Each used
+     * domain is selected in proportion to its length.
+     * @return
+     */
+    public int getMutationDomainIndex(){
+        return domainSelectionBag[ThreadLocalRandom.current().nextInt(domainSelectionBag.length)];
     }
     
     // creates encoded oligomers which have all variable domains placed, but
@@ -913,6 +1014,26 @@ public class FactoryDomainBasedEncodedNetwork {
         return ret;
     }
     
+    // writes the passed domain into encoded oligomers which are not shared with any other network.
+    private void overwriteDomain(int[][] encodedOligomerSequences, int domainIndex, int[] domainSequence){
+        //for every oligomer the domain occurs on
+        for(Map.Entry<Integer,int[]> oligomerCoords : vdtoc.get(domainIndex).entrySet()){
+            int[] oligomer = encodedOligomerSequences[oligomerCoords.getKey()];
+            for (int k : oligomerCoords.getValue()){
+                System.arraycopy(domainSequence,0,oligomer,k,domainSequence.length);
+            }
+        }
+        
+        //for every oligomer the domain complement occurs on
+        int[] compSequence = coder.getComplement(domainSequence);
+        for(Map.Entry<Integer,int[]> oligomerCoords : vdctoc.get(domainIndex).entrySet()){
+            int[] oligomer = encodedOligomerSequences[oligomerCoords.getKey()];
+            for (int k : oligomerCoords.getValue()){
+                System.arraycopy(compSequence,0,oligomer,k,compSequence.length);
+            }
+        }
+    }
+    
     //returns encoded oligomers with the passed domains added.
     private int[][] placeDomains(int[][] encodedOligomerSequences, int[] domainIndices, int[][] domainSequences){
 
@@ -959,6 +1080,57 @@ public class FactoryDomainBasedEncodedNetwork {
         return ret;
     }
     
+    // returns the oligomer combinations of each variable domain stored in the snapshot, or null if they are not stored.
+    // the snapshot lists the variable domains in the order of their names, and gives each oligomer by the position of its
+    // name among the sorted oligomer names, so that the snapshot does not depend on the iteration order of the given maps.
+    private Map<Integer,int[][]> loadDomainToOligomerCombinationsMap (TopologySnapshot snapshot){
+        ByteBuffer contents = snapshot.load();
+        if (contents == null) return null;
+        String[] sortedOligomerNames = getSortedNames(oligomerNames);
+        int[] oligomerIndicesByRank = new int[oligomerCount];
+        for (int rank = 0; rank < oligomerCount; rank++){
+            oligomerIndicesByRank[rank] = oligomerIndices.get(sortedOligomerNames[rank]);
+        }
+        Map<Integer,int[][]> ret = new ConcurrentHashMap<>();
+        try{
+            for (String domainName : getSortedNames(variableDomainNames)){
+                int[][] value = new int[2][];
+                value[0] = getMapped(DigestFile.readInts(contents), oligomerIndicesByRank);
+                value[1] = getMapped(DigestFile.readInts(contents), oligomerIndicesByRank);
+                ret.put(variableDomainIndices.get(domainName), value);
+            }
+        } catch (BufferUnderflowException | NegativeArraySizeException | ArrayIndexOutOfBoundsException e){
+            return null;
+        }
+        return ret;
+    }
+    
+    // returns a sorted copy of the given names.
+    private static String[] getSortedNames(String[] names){
+        String[] ret = Arrays.copyOf(names, names.length);
+        Arrays.sort(ret);
+        return ret;
+    }
+    
+    // returns the position of each name among the sorted names.
+    private static int[] getRanks(String[] names){
+        String[] sortedNames = getSortedNames(names);
+        int[] ret = new int[names.length];
+        for (int i = 0; i < names.length; i++){
+            ret[i] = Arrays.binarySearch(sortedNames, names[i]);
+        }
+        return ret;
+    }
+    
+    // returns the value of mapping at each of the given indices.
+    private static int[] getMapped(int[] indices, int[] mapping){
+        int[] ret = new int[indices.length];
+        for (int i = 0; i < indices.length; i++){
+            ret[i] = mapping[indices[i]];
+        }
+        return ret;
+    }
+    
     private Map<Integer,int[][]> getDomainToOligomerCombinationsMap (Map<String,String> variableDomains, Map<String,String[]> oligomerDomains, Map<Integer,Set<Integer>> variableDomainsToOligomers){
         Map<Integer,int[][]> ret = new ConcurrentHashMap<>(); //Domains To Oligomers Map
 
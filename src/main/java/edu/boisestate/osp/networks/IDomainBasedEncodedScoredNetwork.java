@@ -22,6 +22,8 @@
 
 package edu.boisestate.osp.networks;
 
+import java.math.BigInteger;
+
 /**
  *
  * @author mtobi
@@ -34,6 +36,26 @@ public interface IDomainBasedEncodedScoredNetwork extends IDomainBasedEncodedNet
      */
     String getScore();
     
+    /**
+     * Returns true if the score of the network can be exactly represented by
+     * getLongScore().
+     * @return
+     */
+    boolean isLongScore();
+    
+    /**
+     * Returns the score of the network as a long. The returned value is only
+     * exact if isLongScore() returns true.
+     * @return
+     */
+    long getLongScore();
+    
+    /**
+     * Returns the exact score of the network.
+     * @return
+     */
+    BigInteger getBigIntegerScore();
+    
     /**
      * Returns a reference to the object which scored this network.
      * @return
@@ -22,20 +22,28 @@
 
 package edu.boisestate.osp.scorers;
 
+import edu.boisestate.osp.DuplexPointsTable;
+import edu.boisestate.osp.ScoringMetrics;
+import edu.boisestate.osp.DigestFile;
+import edu.boisestate.osp.TopologySnapshot;
 import edu.boisestate.osp.networks.IDomainBasedEncodedNetwork;
 import edu.boisestate.osp.networks.IDomainBasedEncodedScoredNetwork;
+import java.io.File;
 import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.stream.IntStream;
 
 /**
@@ -49,68 +57,197 @@ public class DeltaWScorer implements IScorer{
     final int interSB;
     final int maxLength;
     final int swx;
+    final boolean usePackedKernel; // if true, inter-oligomer duplexes are counted eight bases at a time.
+    final int seedLength; // length of the seeds used to skip oligomer combinations. 0 if combinations are never skipped.
     
-    AtomicInteger scorings = new AtomicInteger(0);
+    static final int MIN_SEED_LENGTH = 4; // shorter seeds are shared by almost every combination.
+    static final int DEFAULT_SCORE_CACHE_CAPACITY = 1 << 12; // number of recent scores remembered by default.
     
-    final Map<Integer,int[]> knownRanges;
+    final ScoringMetrics metrics = new ScoringMetrics("DeltaWScorer"); // counts and timings of scorings.
+    
+    final ThreadLocal<int[]> knownLengthCounts; // histograms confined to one scoring thread. returned to all zeros after each use.
+    final ThreadLocal<int[][]> knownDaughterLengthCounts; // one histogram per daughter scored together. confined to one scoring thread and returned to all zeros after each use.
+    final ThreadLocal<Map<Integer,ScoringSupervisor.CoverageBuffer>> knownCoverage; // map connecting a variable domain index to its coverage buffer. confined to the thread which bounds daughters.
     final Map<Integer,Combination[]> knownCombos; // map connecting variable domain index to affected combinations;
-    final Map<Integer,Map<Integer,BasePair[][]>> knownBasePairs;
+    final Map<Integer,int[][]> knownDomainBaseIndices; // map connecting variable domain index to the position of its bases on each oligomer;
+    final Map<Integer,Integer> knownDenseBaseCounts; // map connecting variable domain index to the number of updated bases from which daughters are counted in lockstep;
+    final Map<Integer,SelfAlignments> knownSelfAlignments; // map connecting variable domain index to the self-alignments of affected oligomers;
+    final Map<Long,Alignments> knownAlignments; // map connecting a pair of oligomer lengths to their alignments;
     
-    final Map<Integer,BigInteger> knownIntraScores;
-    final Map<Integer,BigInteger> knownInterScores;
+    final DuplexPointsTable intraPoints; // points of each intra-oligomer duplex length.
+    final DuplexPointsTable interPoints; // points of each inter-oligomer duplex length.
+    final long[] interRunPoints; // points of each inter-oligomer duplex length, saturated at Long.MAX_VALUE. used to bound scores.
+    final ScoreCache knownScores; // scores of recently scored networks. null if scores are not remembered.
 
     final BigInteger baselineO;
     final BigInteger baselineN;
     final BigInteger baselineW;
+    final Map<String,int[]> baselineOligomers; // uniquely encoded oligomers of the baseline network, keyed by oligomer name.
+    volatile ScoreDecomposition baselineDecomposition; // created when a decomposition is first requested.
     
     final int MAX_THREADS;
     final int MAX_THREADS_PER_NETWORK;
     final ScoringSupervisor ss;
     
     public DeltaWScorer(Map<String,String> fixedDomains, Map<String,String[]> oligomerDomains, Map<String,String> variableDomains, int intraSB, int intraSLC, int interSB, int interSLC, int swx, int maxThreads, int maxThreadsPerNetwork){
-        knownIntraScores = new ConcurrentHashMap<>();
-        knownInterScores = new ConcurrentHashMap<>();
-        knownRanges = new ConcurrentHashMap<>();
-        knownBasePairs = new ConcurrentHashMap<>();
+        this(fixedDomains, oligomerDomains, variableDomains, intraSB, intraSLC, interSB, interSLC, swx, maxThreads, maxThreadsPerNetwork, false);
+    }
+    
+    public DeltaWScorer(Map<String,String> fixedDomains, Map<String,String[]> oligomerDomains, Map<String,String> variableDomains, int intraSB, int intraSLC, int interSB, int interSLC, int swx, int maxThreads, int maxThreadsPerNetwork, boolean usePackedKernel){
+        this(fixedDomains, oligomerDomains, variableDomains, intraSB, intraSLC, interSB, interSLC, swx, maxThreads, maxThreadsPerNetwork, usePackedKernel, DEFAULT_SCORE_CACHE_CAPACITY);
+    }
+    
+    /**
+     * @param fixedDomains
+     * @param oligomerDomains
+     * @param variableDomains
+     * @param intraSB
+     * @param intraSLC
+     * @param interSB
+     * @param interSLC
+     * @param swx
+     * @param maxThreads
+     * @param maxThreadsPerNetwork
+     * @param usePackedKernel if true, inter-oligomer duplexes are counted eight bases at a time.
+     * @param scoreCacheCapacity number of recent scores remembered, so that networks which are seen again are not scored again. 0 disables the cache.
+     */
+    public DeltaWScorer(Map<String,String> fixedDomains, Map<String,String[]> oligomerDomains, Map<String,String> variableDomains, int intraSB, int intraSLC, int interSB, int interSLC, int swx, int maxThreads, int maxThreadsPerNetwork, boolean usePackedKernel, int scoreCacheCapacity){
+        this(fixedDomains, oligomerDomains, variableDomains, intraSB, intraSLC, interSB, interSLC, swx, maxThreads, maxThreadsPerNetwork, usePackedKernel, scoreCacheCapacity, null);
+    }
+    
+    /**
+     * @param fixedDomains
+     * @param oligomerDomains
+     * @param variableDomains
+     * @param intraSB
+     * @param intraSLC
+     * @param interSB
+     * @param interSLC
+     * @param swx
+     * @param maxThreads
+     * @param maxThreadsPerNetwork
+     * @param usePackedKernel if true, inter-oligomer duplexes are counted eight bases at a time.
+     * @param scoreCacheCapacity number of recent scores remembered, so that networks which are seen again are not scored again. 0 disables the cache.
+     * @param snapshotDirectory directory where the baseline scores of this topology are stored for later launches. null if they are always calculated.
+     */
+    public DeltaWScorer(Map<String,String> fixedDomains, Map<String,String[]> oligomerDomains, Map<String,String> variableDomains, int intraSB, int intraSLC, int interSB, int interSLC, int swx, int maxThreads, int maxThreadsPerNetwork, boolean usePackedKernel, int scoreCacheCapacity, File snapshotDirectory){
+        knownAlignments = new ConcurrentHashMap<>();
         knownCombos = new ConcurrentHashMap<>();
+        knownSelfAlignments = new ConcurrentHashMap<>();
+        knownDomainBaseIndices = new ConcurrentHashMap<>();
+        knownDenseBaseCounts = new ConcurrentHashMap<>();
         
         this.intraSB = intraSB;
         this.intraSLC = intraSLC;
         this.interSB = interSB;
         this.interSLC = interSLC;
         this.swx = swx;
+        this.usePackedKernel = usePackedKernel;
+        this.seedLength = (interSLC >= MIN_SEED_LENGTH) ? Math.min(interSLC, KmerSeedIndex.MAX_SEED_LENGTH) : 0;
+        this.knownScores = (scoreCacheCapacity > 0) ? new ScoreCache(scoreCacheCapacity) : null;
 
         Map<String,int[]> efd = encode(fixedDomains); // encoded fixed domains
         Map<String,int[]> uevd = getUniquelyEncodedDomains(variableDomains); // uniequely encoded initial variable domains
         Map<String,int[]> ueo = assembleEncodedOligomers(efd, uevd, oligomerDomains);
         int[][] ueoArray = ueo.values().stream().toArray(i->new int[i][]);
+        baselineOligomers = ueo;
         
         maxLength = Arrays.stream(ueoArray).mapToInt(x -> x.length).max().getAsInt();
-        
-        baselineO = calculateO(ueoArray);
-        baselineN = calculateN(ueoArray);
-        baselineW = calculateW(baselineO,baselineN);
+        knownLengthCounts = ThreadLocal.withInitial(() -> new int[maxLength+1]);
+        knownDaughterLengthCounts = ThreadLocal.withInitial(() -> new int[0][]);
+        knownCoverage = ThreadLocal.withInitial(HashMap::new);
+        intraPoints = new DuplexPointsTable(maxLength, intraSLC, intraSB);
+        interPoints = new DuplexPointsTable(maxLength, interSLC, interSB);
+        interRunPoints = new long[maxLength+1];
+        for (int length = 0; length <= maxLength; length++){
+            BigInteger points = (length == 0 || interRunPoints[length-1] < Long.MAX_VALUE) ? interPoints.getPoints(length) : null;
+            interRunPoints[length] = (points != null && points.bitLength() < Long.SIZE) ? points.longValue() : Long.MAX_VALUE;
+        }
         
         MAX_THREADS = maxThreads;
         MAX_THREADS_PER_NETWORK = maxThreadsPerNetwork;
         ss = new ScoringSupervisor(MAX_THREADS,MAX_THREADS_PER_NETWORK);
+        
+        // the baselines only depend on the topology and are loaded from a snapshot if one exists.
+        TopologySnapshot snapshot = (snapshotDirectory == null) ? null : new TopologySnapshot(snapshotDirectory, "DeltaWScorer", fixedDomains, oligomerDomains, variableDomains, intraSB, intraSLC, interSB, interSLC);
+        BigInteger[] baselines = (snapshot == null) ? null : loadBaselines(snapshot);
+        if (baselines == null){
+            baselines = new BigInteger[]{calculateO(ueoArray), calculateN(ueoArray)};
+            if (snapshot != null){
+                final BigInteger[] calculatedBaselines = baselines;
+                snapshot.save(out -> {
+                    DigestFile.writeBigInteger(out, calculatedBaselines[0]);
+                    DigestFile.writeBigInteger(out, calculatedBaselines[1]);
+                });
+            }
+        }
+        baselineO = baselines[0];
+        baselineN = baselines[1];
+        baselineW = calculateW(baselineO,baselineN);
+    }
+    
+    // returns the baseline O and N stored in the snapshot, or null if they are not stored.
+    private static BigInteger[] loadBaselines(TopologySnapshot snapshot){
+        ByteBuffer contents = snapshot.load();
+        if (contents == null) return null;
+        try{
+            return new BigInteger[]{DigestFile.readBigInteger(contents), DigestFile.readBigInteger(contents)};
+        } catch (BufferUnderflowException | NegativeArraySizeException | NumberFormatException e){
+            return null;
+        }
     }
     
     private class InnerNetwork implements IDomainBasedEncodedScoredNetwork{
         final IDomainBasedEncodedNetwork unscoredNetwork;
-        final String score;
+        final boolean isLongScore;
+        final long longScore;
+        final BigInteger bigScore; // only used if the score does not fit in a long.
+        String score; // created when first requested.
         final Object scorer = DeltaWScorer.this;
+        final Map<Integer,BigInteger> knownPartialW = new ConcurrentHashMap<>(); // map connecting a variable domain index to the partial W affected by that domain;
+        KmerSeedIndex seedIndex; // created when first requested, or updated from the previous network's.
+        final AtomicInteger boundedScorings = new AtomicInteger(); // number of bounded batches of daughters of this network.
+        volatile long scoreCacheKey; // key of this network in the score cache. only valid once hasScoreCacheKey is set.
+        volatile boolean hasScoreCacheKey;
+        volatile ScoreDecomposition decomposition; // created when first requested, or updated from previousDecomposition.
+        ScoreDecomposition previousDecomposition; // decomposition of the network this network was scored from. null once decomposition is set.
+        int decompositionDomainIndex; // the variable domain which differs from the network of previousDecomposition.
+        
+        InnerNetwork(IDomainBasedEncodedNetwork unscoredNetwork, long score){
+            this.unscoredNetwork = unscoredNetwork;
+            this.isLongScore = true;
+            this.longScore = score;
+            this.bigScore = null;
+        }
         
-        InnerNetwork(IDomainBasedEncodedNetwork unscoredNetwork, String score){
+        InnerNetwork(IDomainBasedEncodedNetwork unscoredNetwork, BigInteger score){
             this.unscoredNetwork = unscoredNetwork;
-            this.score = score;
+            this.isLongScore = score.bitLength() < Long.SIZE;
+            this.longScore = score.longValue();
+            this.bigScore = this.isLongScore ? null : score;
         }
         
         @Override
         public String getScore() {
+            if (score == null) score = isLongScore ? Long.toString(longScore) : bigScore.toString();
             return score;
         }
         
+        @Override
+        public boolean isLongScore() {
+            return isLongScore;
+        }
+        
+        @Override
+        public long getLongScore() {
+            return longScore;
+        }
+        
+        @Override
+        public BigInteger getBigIntegerScore() {
+            return isLongScore ? BigInteger.valueOf(longScore) : bigScore;
+        }
+        
         @Override
         public Object getScorer() {
             return scorer;
@@ -210,23 +347,17 @@ public class DeltaWScorer implements IScorer{
     
     @Override
     public int compareFitness(IDomainBasedEncodedScoredNetwork network1, IDomainBasedEncodedScoredNetwork network2){
-        BigInteger score1;
-        if(network1.getScorer() == DeltaWScorer.this){
-            score1 = new BigInteger(network1.getScore());
-        } else {
-           score1 = calculateW(network1.getOligomerSequencesEncoded()).subtract(baselineW);
-           scorings.incrementAndGet();
+        if(network1.getScorer() != DeltaWScorer.this){
+            network1 = getScored(network1);
+        }
+        if(network2.getScorer() != DeltaWScorer.this){
+            network2 = getScored(network2);
         }
         
-        BigInteger score2;
-        if(network2.getScorer() == DeltaWScorer.this){
-            score2 = new BigInteger(network2.getScore());
-        } else {
-           score2 = calculateW(network2.getOligomerSequencesEncoded()).subtract(baselineW);
-           scorings.incrementAndGet();
+        if(network1.isLongScore() && network2.isLongScore()){
+            return -Long.compare(network1.getLongScore(), network2.getLongScore());
         }
-       
-       return -score1.compareTo(score2);
+        return -network1.getBigIntegerScore().compareTo(network2.getBigIntegerScore());
     }
     
     /**
@@ -236,9 +367,19 @@ public class DeltaWScorer implements IScorer{
     */
     @Override
     public IDomainBasedEncodedScoredNetwork getScored(IDomainBasedEncodedNetwork network){
-        String score = getScoreString(network);
-        scorings.incrementAndGet();
-        return new InnerNetwork(network,score);
+        ScoringMetrics.Scoring scoring = metrics.beginScoring();
+        try{
+            if (knownScores == null) return new InnerNetwork(network,getDeltaW(network));
+            long key = getScoreCacheKey(network);
+            InnerNetwork retNetwork = getCachedScored(key, network);
+            if (retNetwork == null){
+                retNetwork = new InnerNetwork(network,getDeltaW(network));
+                putCachedScored(key, retNetwork);
+            }
+            return retNetwork;
+        } finally {
+            metrics.endScoring(scoring, false, 1);
+        }
    }
 
    /**
@@ -248,9 +389,7 @@ public class DeltaWScorer implements IScorer{
     */
     @Override
     public IDomainBasedEncodedScoredNetwork getScored(IDomainBasedEncodedScoredNetwork network){
-        String score = getScoreString(network);
-        scorings.incrementAndGet();
-        return new InnerNetwork(network,score);
+        return getScored((IDomainBasedEncodedNetwork) network);
    }
 
    /**
@@ -262,10 +401,288 @@ public class DeltaWScorer implements IScorer{
     */
     @Override
     public IDomainBasedEncodedScoredNetwork getScored(IDomainBasedEncodedScoredNetwork previousNetwork, IDomainBasedEncodedNetwork newNetwork, int updatedDomainIndex){
-        String score = ss.getScoreString(DeltaWScorer.this, previousNetwork, newNetwork, updatedDomainIndex);
-        scorings.incrementAndGet();
-        return new InnerNetwork(newNetwork,score);
+        ScoringMetrics.Scoring scoring = metrics.beginScoring();
+        try{
+            if (knownScores == null) return ss.getScored(DeltaWScorer.this, previousNetwork, newNetwork, updatedDomainIndex);
+            long key = getScoreCacheKey(previousNetwork, newNetwork, updatedDomainIndex);
+            IDomainBasedEncodedScoredNetwork retNetwork = getCachedScored(key, previousNetwork, newNetwork, updatedDomainIndex);
+            if (retNetwork == null){
+                retNetwork = ss.getScored(DeltaWScorer.this, previousNetwork, newNetwork, updatedDomainIndex);
+                putCachedScored(key, retNetwork);
+            }
+            return retNetwork;
+        } finally {
+            metrics.endScoring(scoring, true, 1);
+        }
+    }
+    
+   /**
+    * Returns a scored version of the given network.
+    * @param previousNetwork The prior network
+    * @param newNetwork The new network which has had bases of one variable domain updated.
+    * @param updatedDomainIndex The domain index of the variable domain which was updated.
+    * @param updatedBaseIndices The indices of the bases within the variable domain which were updated.
+    * @return
+    */
+    @Override
+    public IDomainBasedEncodedScoredNetwork getScored(IDomainBasedEncodedScoredNetwork previousNetwork, IDomainBasedEncodedNetwork newNetwork, int updatedDomainIndex, int[] updatedBaseIndices){
+        ScoringMetrics.Scoring scoring = metrics.beginScoring();
+        try{
+            if (knownScores == null) return ss.getScored(DeltaWScorer.this, previousNetwork, newNetwork, updatedDomainIndex, updatedBaseIndices);
+            long key = getScoreCacheKey(previousNetwork, newNetwork, updatedDomainIndex);
+            IDomainBasedEncodedScoredNetwork retNetwork = getCachedScored(key, previousNetwork, newNetwork, updatedDomainIndex);
+            if (retNetwork == null){
+                retNetwork = ss.getScored(DeltaWScorer.this, previousNetwork, newNetwork, updatedDomainIndex, updatedBaseIndices);
+                putCachedScored(key, retNetwork);
+            }
+            return retNetwork;
+        } finally {
+            metrics.endScoring(scoring, true, 1);
+        }
+    }
+    
+   /**
+    * Returns scored versions of the given networks, which are all daughters
+    * of the same previous network. Daughters which updated the same variable
+    * domain share one traversal of that domain's oligomer combinations.
+    * @param previousNetwork The prior network
+    * @param newNetworks The new networks, each of which has had one variable domain updated.
+    * @param updatedDomainIndices The i'th element is the domain index of the variable domain which was updated in the i'th new network.
+    * @return
+    */
+    @Override
+    public IDomainBasedEncodedScoredNetwork[] getScored(IDomainBasedEncodedScoredNetwork previousNetwork, IDomainBasedEncodedNetwork[] newNetworks, int[] updatedDomainIndices){
+        return getScored(previousNetwork, newNetworks, updatedDomainIndices, (BigInteger) null);
+    }
+    
+   /**
+    * Returns scored versions of the given networks, which are all daughters
+    * of the same previous network. Scoring of a daughter stops once the
+    * points of its new inter-oligomer duplexes prove it is less fit than the
+    * bound network.
+    * @param previousNetwork The prior network
+    * @param newNetworks The new networks, each of which has had one variable domain updated.
+    * @param updatedDomainIndices The i'th element is the domain index of the variable domain which was updated in the i'th new network.
+    * @param boundNetwork Network to compare the new networks against.
+    * @return
+    */
+    @Override
+    public IDomainBasedEncodedScoredNetwork[] getScored(IDomainBasedEncodedScoredNetwork previousNetwork, IDomainBasedEncodedNetwork[] newNetworks, int[] updatedDomainIndices, IDomainBasedEncodedScoredNetwork boundNetwork){
+        // only the score of a network scored by this scorer is comparable.
+        return getScored(previousNetwork, newNetworks, updatedDomainIndices, (boundNetwork == null || boundNetwork.getScorer() != this) ? null : boundNetwork.getBigIntegerScore());
+    }
+    
+   /**
+    * Returns scored versions of the given networks, which are all daughters
+    * of the same previous network. Scoring of a daughter stops once the
+    * points of its new inter-oligomer duplexes prove its score is greater
+    * than the bound score.
+    * @param previousNetwork The prior network
+    * @param newNetworks The new networks, each of which has had one variable domain updated.
+    * @param updatedDomainIndices The i'th element is the domain index of the variable domain which was updated in the i'th new network.
+    * @param boundScore Greatest score of a new network which is fully scored. null if every new network is fully scored.
+    * @return
+    */
+    @Override
+    public IDomainBasedEncodedScoredNetwork[] getScored(IDomainBasedEncodedScoredNetwork previousNetwork, IDomainBasedEncodedNetwork[] newNetworks, int[] updatedDomainIndices, BigInteger boundScore){
+        ScoringMetrics.Scoring scoring = metrics.beginScoring();
+        try{
+            return getScoredBatch(previousNetwork, newNetworks, updatedDomainIndices, boundScore);
+        } finally {
+            metrics.endScoring(scoring, true, newNetworks.length);
+        }
+    }
+    
+    // scores the daughters of one previous network, reusing remembered scores.
+    private IDomainBasedEncodedScoredNetwork[] getScoredBatch(IDomainBasedEncodedScoredNetwork previousNetwork, IDomainBasedEncodedNetwork[] newNetworks, int[] updatedDomainIndices, BigInteger boundScore){
+        if (knownScores == null) return ss.getScored(DeltaWScorer.this, previousNetwork, newNetworks, updatedDomainIndices, boundScore);
+        
+        // only daughters without a remembered score are scored.
+        IDomainBasedEncodedScoredNetwork[] retNetworks = new IDomainBasedEncodedScoredNetwork[newNetworks.length];
+        int misses = 0;
+        for (int i = 0; i < newNetworks.length; i++){
+            retNetworks[i] = getCachedScored(getScoreCacheKey(previousNetwork, newNetworks[i], updatedDomainIndices[i]), previousNetwork, newNetworks[i], updatedDomainIndices[i]);
+            if (retNetworks[i] == null) misses++;
+        }
+        if (misses == 0) return retNetworks;
+        
+        // usually no daughter was remembered, and the given arrays are scored as they are.
+        IDomainBasedEncodedNetwork[] missedNetworks = newNetworks;
+        int[] missedDomainIndices = updatedDomainIndices;
+        if (misses < newNetworks.length){
+            missedNetworks = new IDomainBasedEncodedNetwork[misses];
+            missedDomainIndices = new int[misses];
+            misses = 0;
+            for (int i = 0; i < newNetworks.length; i++){
+                if (retNetworks[i] != null) continue;
+                missedNetworks[misses] = newNetworks[i];
+                missedDomainIndices[misses] = updatedDomainIndices[i];
+                misses++;
+            }
+        }
+        IDomainBasedEncodedScoredNetwork[] scoredNetworks = ss.getScored(DeltaWScorer.this, previousNetwork, missedNetworks, missedDomainIndices, boundScore);
+        misses = 0;
+        for (int i = 0; i < newNetworks.length; i++){
+            if (retNetworks[i] != null) continue;
+            // daughters rejected by the bound have no score to remember.
+            IDomainBasedEncodedScoredNetwork scoredNetwork = scoredNetworks[misses++];
+            if (scoredNetwork != null) putCachedScored(getScoreCacheKey(previousNetwork, newNetworks[i], updatedDomainIndices[i]), scoredNetwork);
+            retNetworks[i] = scoredNetwork;
+        }
+        return retNetworks;
+    }
+    
+    /**
+     * Returns the number of networks whose remembered score was reused.
+     * @return
+     */
+    public long getScoreCacheHits(){
+        return (knownScores == null) ? 0 : knownScores.getHits();
+    }
+    
+    /**
+     * Returns the number of networks which were scored because no score was remembered.
+     * @return
+     */
+    public long getScoreCacheMisses(){
+        return (knownScores == null) ? 0 : knownScores.getMisses();
+    }
 
+    @Override
+    public ScoringMetrics getMetrics(){
+        return metrics;
+    }
+    
+    /**
+     * Returns the contribution of each oligomer, and of each pair of
+     * oligomers, to deltaW of the given network. If the network was scored
+     * from a previous network whose decomposition had been requested, only the
+     * oligomers and pairs holding the updated domain are calculated.
+     * Requesting the decomposition of each accepted network therefore keeps
+     * the decomposition of the fittest network up to date.
+     * @param network
+     * @return
+     */
+    @Override
+    public ScoreDecomposition getDecomposition(IDomainBasedEncodedScoredNetwork network){
+        if (network.getScorer() != DeltaWScorer.this){
+            network = getScored(network);
+        }
+        InnerNetwork innerNetwork = (InnerNetwork) network;
+        ScoreDecomposition ret = innerNetwork.decomposition;
+        if (ret != null) return ret;
+        ScoreDecomposition previous = innerNetwork.previousDecomposition;
+        if (previous != null){
+            ret = getUpdatedDecomposition(previous, innerNetwork, innerNetwork.decompositionDomainIndex);
+        } else {
+            ret = calculateDecomposition(innerNetwork.getOligomerNames(), innerNetwork.getOligomerSequencesEncoded(), getBaselineDecomposition(innerNetwork));
+        }
+        innerNetwork.decomposition = ret;
+        innerNetwork.previousDecomposition = null;
+        return ret;
+    }
+    
+    // returns the decomposition of the baseline network, whose contributions are all zero.
+    private ScoreDecomposition getBaselineDecomposition(IDomainBasedEncodedNetwork network){
+        ScoreDecomposition ret = baselineDecomposition;
+        if (ret == null){
+            int[][] encodedOligomers = new int[network.getOligomerNames().length][];
+            for(Map.Entry<String,Integer> entry: network.getOligomerIndices().entrySet()){
+                encodedOligomers[entry.getValue()] = baselineOligomers.get(entry.getKey());
+            }
+            ret = calculateDecomposition(network.getOligomerNames(), encodedOligomers, null);
+            baselineDecomposition = ret;
+        }
+        return ret;
+    }
+    
+    // calculates every oligomer and pair score of the given oligomers. baseline is null when the baseline itself is calculated.
+    private ScoreDecomposition calculateDecomposition(String[] oligomerNames, int[][] encodedOligomers, ScoreDecomposition baseline){
+        int oligomers = encodedOligomers.length;
+        List<Integer> oligomerIndices = new ArrayList<>(oligomers);
+        for (int i = 0; i < oligomers; i++){
+            oligomerIndices.add(i);
+        }
+        BigInteger[] oligomerScores = new BigInteger[oligomers];
+        Arrays.fill(oligomerScores, BigInteger.ZERO);
+        addOligomerScores(encodedOligomers, calculateSelfAlignments(encodedOligomers, oligomerIndices), oligomerScores);
+        
+        Combination[] combos = new Combination[ScoreDecomposition.getPairCount(oligomers)];
+        for (int i = 0; i < oligomers; i++){
+            for (int j = i; j < oligomers; j++){
+                int indexO1 = (encodedOligomers[i].length < encodedOligomers[j].length) ? j : i;
+                int indexO2 = (indexO1 == i) ? j : i;
+                combos[ScoreDecomposition.getPairIndex(oligomers, i, j)] = new Combination(indexO1, indexO2, getKnownAlignments(this, encodedOligomers[indexO1].length, encodedOligomers[indexO2].length));
+            }
+        }
+        BigInteger[] pairScores = new BigInteger[combos.length];
+        setPairScores(encodedOligomers, combos, pairScores);
+        
+        return new ScoreDecomposition(oligomerNames, BigInteger.valueOf(swx), oligomerScores, pairScores, baseline);
+    }
+    
+    // returns the decomposition of a network which differs from the previous decomposition's network in one variable domain.
+    private ScoreDecomposition getUpdatedDecomposition(ScoreDecomposition previous, IDomainBasedEncodedNetwork network, int updatedVariableDomainIndex){
+        Set<Integer> oligomers = network.getVariableDomainToOligomerIndices().get(updatedVariableDomainIndex);
+        int[] updatedOligomers = new int[oligomers.size()];
+        BigInteger[] oligomerScores = previous.oligomerScores.clone();
+        int u = 0;
+        for (int i : oligomers){
+            updatedOligomers[u++] = i;
+            oligomerScores[i] = BigInteger.ZERO;
+        }
+        addOligomerScores(network.getOligomerSequencesEncoded(), getSelfAlignments(network, updatedVariableDomainIndex), oligomerScores);
+        
+        Combination[] combos = getCombos(network, updatedVariableDomainIndex);
+        int[] pairOligomers1 = new int[combos.length];
+        int[] pairOligomers2 = new int[combos.length];
+        for (int c = 0; c < combos.length; c++){
+            pairOligomers1[c] = combos[c].indexO1;
+            pairOligomers2[c] = combos[c].indexO2;
+        }
+        BigInteger[] pairScores = ss.getComboN(this, network.getOligomerSequencesEncoded(), combos);
+        return previous.getUpdated(updatedOligomers, oligomerScores, pairOligomers1, pairOligomers2, pairScores);
+    }
+    
+    // adds the score of each range of self-alignments to the score of its oligomer.
+    private void addOligomerScores(int[][] encodedOligomers, SelfAlignments selfAlignments, BigInteger[] oligomerScores){
+        BigInteger[] rangeScores = ss.getRangeO(this, encodedOligomers, selfAlignments);
+        for (int r = 0; r < rangeScores.length; r++){
+            int i = selfAlignments.oligomerIndices[r];
+            oligomerScores[i] = oligomerScores[i].add(rangeScores[r]);
+        }
+    }
+    
+    // sets the score of the pair of oligomers of each combination.
+    private void setPairScores(int[][] encodedOligomers, Combination[] combos, BigInteger[] pairScores){
+        int oligomers = encodedOligomers.length;
+        BigInteger[] comboScores = ss.getComboN(this, encodedOligomers, combos);
+        for (int c = 0; c < combos.length; c++){
+            pairScores[ScoreDecomposition.getPairIndex(oligomers, combos[c].indexO1, combos[c].indexO2)] = comboScores[c];
+        }
+    }
+    
+    // returns the partial W of the given variable domain from the decomposition of the network.
+    private BigInteger getPartialW(ScoreDecomposition decomposition, IDomainBasedEncodedNetwork network, int updatedVariableDomainIndex){
+        BigInteger partialO = BigInteger.ZERO;
+        for (int i : network.getVariableDomainToOligomerIndices().get(updatedVariableDomainIndex)){
+            partialO = partialO.add(decomposition.oligomerScores[i]);
+        }
+        BigInteger partialN = BigInteger.ZERO;
+        for (Combination combo : getCombos(network, updatedVariableDomainIndex)){
+            partialN = partialN.add(decomposition.getPairScore(combo.indexO1, combo.indexO2));
+        }
+        return calculateW(partialO, partialN);
+    }
+    
+    // links the new network to the decomposition of the previous network, so that its own decomposition is only updated when requested.
+    private static void linkDecomposition(InnerNetwork previousNetwork, InnerNetwork newNetwork, int updatedVariableDomainIndex){
+        ScoreDecomposition previous = previousNetwork.decomposition;
+        if (previous == null) return;
+        // combinations are shared by every network, so a domain which changed length cannot be updated.
+        if (previousNetwork.getVariableDomainSequencesEncoded()[updatedVariableDomainIndex].length != newNetwork.getVariableDomainSequencesEncoded()[updatedVariableDomainIndex].length) return;
+        newNetwork.previousDecomposition = previous;
+        newNetwork.decompositionDomainIndex = updatedVariableDomainIndex;
     }
 
     @Override
@@ -282,29 +699,116 @@ public class DeltaWScorer implements IScorer{
         return "fitness points";
     }
     
-    private String getScoreString(IDomainBasedEncodedNetwork network){
+    // returns the key of the network in the score cache.
+    private long getScoreCacheKey(IDomainBasedEncodedNetwork network){
+        if (network instanceof InnerNetwork && ((InnerNetwork) network).scorer == DeltaWScorer.this){
+            InnerNetwork innerNetwork = (InnerNetwork) network;
+            if (!innerNetwork.hasScoreCacheKey){
+                innerNetwork.scoreCacheKey = ScoreCache.getKey(network.getVariableDomainSequencesEncoded());
+                innerNetwork.hasScoreCacheKey = true;
+            }
+            return innerNetwork.scoreCacheKey;
+        }
+        return ScoreCache.getKey(network.getVariableDomainSequencesEncoded());
+    }
+    
+    // returns the key of the new network in the score cache, updated from the key of the previous network.
+    private long getScoreCacheKey(IDomainBasedEncodedNetwork previousNetwork, IDomainBasedEncodedNetwork newNetwork, int updatedDomainIndex){
+        int[] oldDomain = previousNetwork.getVariableDomainSequencesEncoded()[updatedDomainIndex];
+        int[] newDomain = newNetwork.getVariableDomainSequencesEncoded()[updatedDomainIndex];
+        return ScoreCache.getUpdatedKey(getScoreCacheKey(previousNetwork), updatedDomainIndex, oldDomain, newDomain);
+    }
+    
+    // returns the network scored with its remembered score, or null if no score is remembered.
+    private InnerNetwork getCachedScored(long key, IDomainBasedEncodedNetwork network){
+        BigInteger deltaW = knownScores.get(key, network.getVariableDomainSequencesEncoded());
+        if (deltaW == null) return null;
+        InnerNetwork retNetwork = new InnerNetwork(network, deltaW);
+        retNetwork.scoreCacheKey = key;
+        retNetwork.hasScoreCacheKey = true;
+        return retNetwork;
+    }
+    
+    // returns the daughter scored with its remembered score, or null if no score is remembered.
+    // the daughter is linked to the decomposition of the previous network as if it had been scored.
+    private InnerNetwork getCachedScored(long key, IDomainBasedEncodedScoredNetwork previousNetwork, IDomainBasedEncodedNetwork newNetwork, int updatedDomainIndex){
+        InnerNetwork retNetwork = getCachedScored(key, newNetwork);
+        if (retNetwork != null && previousNetwork.getScorer() == DeltaWScorer.this){
+            linkDecomposition((InnerNetwork) previousNetwork, retNetwork, updatedDomainIndex);
+        }
+        return retNetwork;
+    }
+    
+    // remembers the score of the network.
+    private void putCachedScored(long key, IDomainBasedEncodedScoredNetwork network){
+        if (network instanceof InnerNetwork){
+            InnerNetwork innerNetwork = (InnerNetwork) network;
+            innerNetwork.scoreCacheKey = key;
+            innerNetwork.hasScoreCacheKey = true;
+        }
+        knownScores.put(key, network.getVariableDomainSequencesEncoded(), network.getBigIntegerScore());
+    }
+    
+    private BigInteger getDeltaW(IDomainBasedEncodedNetwork network){
         BigInteger W = calculateW(network.getOligomerSequencesEncoded());
-        BigInteger deltaW = W.subtract(baselineW);
-
-        return deltaW.toString();
-   }
-   
-    private String getScoreString(IDomainBasedEncodedScoredNetwork previousNetwork, IDomainBasedEncodedNetwork newNetwork, int updatedVariableDomainIndex){
-        BigInteger deltaW;
-       
-        if(previousNetwork.getScorer() == DeltaWScorer.this){
-            BigInteger newPartialW = calculateAffectedW(newNetwork, updatedVariableDomainIndex);
-            BigInteger oldPartialW = calculateAffectedW(previousNetwork, updatedVariableDomainIndex);
-            BigInteger oldDeltaW = new BigInteger(previousNetwork.getScore());
-            deltaW = oldDeltaW.subtract(oldPartialW).add(newPartialW);
-        } else {
-           deltaW = calculateW(newNetwork.getOligomerSequencesEncoded()).subtract(baselineW);
+        return W.subtract(baselineW);
+    }
+    
+    // returns oldDeltaW - oldPartialW + newPartialW, using long arithmetic unless it would overflow.
+    private InnerNetwork getUpdatedScored(IDomainBasedEncodedScoredNetwork previousNetwork, IDomainBasedEncodedNetwork newNetwork, BigInteger oldPartialW, BigInteger newPartialW){
+        if(previousNetwork.isLongScore() && oldPartialW.bitLength() < Long.SIZE && newPartialW.bitLength() < Long.SIZE){
+            try{
+                long deltaW = Math.addExact(Math.subtractExact(previousNetwork.getLongScore(), oldPartialW.longValue()), newPartialW.longValue());
+                return new InnerNetwork(newNetwork,deltaW);
+            } catch (ArithmeticException e){}
         }
-       
-       return deltaW.toString();
-   }
+        BigInteger deltaW = previousNetwork.getBigIntegerScore().subtract(oldPartialW).add(newPartialW);
+        return new InnerNetwork(newNetwork,deltaW);
+    }
+    
+    // returns this thread's histograms for the given number of daughters.
+    private int[][] getDaughterLengthCounts(int daughters){
+        int[][] lengthCounts = knownDaughterLengthCounts.get();
+        if (lengthCounts.length < daughters){
+            int[][] grown = Arrays.copyOf(lengthCounts, daughters);
+            for (int i = lengthCounts.length; i < daughters; i++){
+                grown[i] = new int[maxLength+1];
+            }
+            knownDaughterLengthCounts.set(grown);
+            lengthCounts = grown;
+        }
+        return lengthCounts;
+    }
     
-    //returns an array of int[3][] where the first array is length of the possible duplex, array 2 is index of the left most base on o1, array 3 is the index of the left most base on 02
+    // returns the points of the counted intra-oligomer duplexes and returns the counts to zero.
+    private BigInteger getIntraScore(int[] lengthCounts){
+        return intraPoints.getScore(lengthCounts);
+    }
+    
+    // returns the points of the counted inter-oligomer duplexes and returns the counts to zero.
+    private BigInteger getInterScore(int[] lengthCounts){
+        return interPoints.getScore(lengthCounts);
+    }
+    
+    // returns the seed index of the network, creating it if needed. returns null if combinations are never skipped.
+    private KmerSeedIndex getSeedIndex(InnerNetwork network){
+        if (seedLength == 0) return null;
+        KmerSeedIndex seedIndex = network.seedIndex;
+        if (seedIndex == null){
+            seedIndex = new KmerSeedIndex(network.getOligomerSequencesEncoded(), seedLength);
+            network.seedIndex = seedIndex;
+        }
+        return seedIndex;
+    }
+    
+    // returns the seed index of the new network, updated from that of the previous network.
+    private KmerSeedIndex getUpdatedSeedIndex(InnerNetwork previousNetwork, IDomainBasedEncodedNetwork newNetwork, int updatedVariableDomainIndex){
+        KmerSeedIndex previousIndex = getSeedIndex(previousNetwork);
+        if (previousIndex == null) return null;
+        return previousIndex.getUpdated(newNetwork.getOligomerSequencesEncoded(), newNetwork.getVariableDomainToOligomerIndices().get(updatedVariableDomainIndex));
+    }
+    
+    //returns an array of int[3][] where the first array is length of the possible duplex, array 2 is index of the left most base on o1, array 3 is the index of the base on o2 paired with that base
     private int[][] calculateInterAlignments (int S1length, int S2length){
         ArrayList<Integer> lengths = new ArrayList<>();
         ArrayList<Integer> o1b1 = new ArrayList<>();
@@ -345,99 +849,78 @@ public class DeltaWScorer implements IScorer{
     }
 
     private BigInteger calculateO (int[][] encodedOligomers){
-        Map<Integer,Integer> lengthCounts = new HashMap<>();
-        //for each alignment
-
-        int[] encodedOligomer;
-        int[] S1;
-        int S1length;
-        int b1Max;
-        int structureLength;
-        int b1;
-        int b2;
-        int length;
-        Integer singleCount = 1;
-        // for each oligomer
-        for(int i : IntStream.range(0,encodedOligomers.length).toArray()){
-            encodedOligomer = encodedOligomers[i];
-            S1 = encodedOligomer;
-            S1length = S1.length;
-            b1Max = S1length-1;
-
-            for (int j : IntStream.range(0,S1length).toArray()){
-                structureLength = 0;
-                b1 = (S1length - (j)/2) % S1length; // index of base on the top strand;
-                b2 = (b1Max -((j+1)/2)) ;// index of base on the bottom strand;
+        List<Integer> oligomerIndices = new ArrayList<>(encodedOligomers.length);
+        for (int i = 0; i < encodedOligomers.length; i++){
+            oligomerIndices.add(i);
+        }
+        return ss.getO(this, encodedOligomers, calculateSelfAlignments(encodedOligomers, oligomerIndices));
+    }
+    
+    // counts the intra-oligomer duplexes of the j'th self-alignment, aka reference position, of the oligomer.
+    private void countSelfAlignment(int[] S1, int j, int[] lengthCounts){
+        int S1length = S1.length;
+        int b1Max = S1length-1;
+        int structureLength = 0;
+        int b1 = (S1length - (j)/2) % S1length; // index of base on the top strand;
+        int b2 = (b1Max -((j+1)/2)) ;// index of base on the bottom strand;
+
+        int length = S1length/2;
+        if(S1length % 2 == 0 && j%2 == 1)
+        {
+            length = length -1;
+        }
 
-                length = S1length/2;
-                if(S1length % 2 == 0 && j%2 == 1)
-                {
-                    length = length -1;
-                }
+        if(S1[b1] + S1[b2] ==0)
+        {
+            structureLength = 1;
+        }
 
-                if(S1[b1] + S1[b2] ==0)
+        //For every base-pair in the reference position
+        for ( int k =1; k < length; k++)
+        {
+            if( b1 == b1Max) 
+            {
+                if (structureLength >= intraSLC)
                 {
-                    structureLength = 1;
+                    lengthCounts[structureLength]++;
                 }
+                b1 = 0;
+                structureLength = 0;
+            } else {b1++;}
 
-                //For every base-pair in the reference position
-                for ( int k =1; k < length; k++)
+            if( b2 == 0) 
+            {
+                if (structureLength >= intraSLC)
                 {
-                    if( b1 == b1Max) 
-                    {
-                            if (structureLength >= intraSLC)
-                            {
-                                lengthCounts.merge(structureLength,singleCount,(x,y)->x+y);
-                            }
-                            b1 = 0;
-                            structureLength = 0;
-                    } else {b1++;}
-
-                    if( b2 == 0) 
-                    {
-                            if (structureLength >= intraSLC)
-                            {
-                                lengthCounts.merge(structureLength,singleCount,(x,y)->x+y);
-                            }
-                            b2 = b1Max;
-                            structureLength = 0;
-                    } else {b2--;}
-
-                    if(S1[b1]+S1[b2]==0)
-                    {
-                            structureLength++;
-                    }
-                    else
-                    {
-                        if (structureLength >= intraSLC)
-                        {
-                            lengthCounts.merge(structureLength,singleCount,(x,y)->x+y);
-                        }
-                        structureLength =0;
-                    }
+                    lengthCounts[structureLength]++;
                 }
+                b2 = b1Max;
+                structureLength = 0;
+            } else {b2--;}
 
-                //if the loop ended with an active structure, record it.
+            if(S1[b1]+S1[b2]==0)
+            {
+                structureLength++;
+            }
+            else
+            {
                 if (structureLength >= intraSLC)
                 {
-                    lengthCounts.merge(structureLength,singleCount,(x,y)->x+y);
-                };
+                    lengthCounts[structureLength]++;
+                }
+                structureLength =0;
             }
         }
 
-        BigInteger retScore = BigInteger.valueOf(0);
-        for(Map.Entry<Integer,Integer> entry: lengthCounts.entrySet()){
-            length = entry.getKey();
-            int counts = entry.getValue();
-            BigInteger lengthScore = knownIntraScores.computeIfAbsent(length, (x)->calculateUniqueDuplexPoints(x, intraSLC, intraSB));
-            retScore = retScore.add(lengthScore.multiply(BigInteger.valueOf(counts)));
+        //if the loop ended with an active structure, record it.
+        if (structureLength >= intraSLC)
+        {
+            lengthCounts[structureLength]++;
         }
-
-        return retScore;
     }
 
     private BigInteger calculateN (int[][] encodedOligomers){
-        Map<Integer,Integer> lengthCounts = new HashMap<>();
+        int[] lengthCounts = knownLengthCounts.get();
         int[][] oligomers = encodedOligomers;
         //for each alignment
         
@@ -450,7 +933,6 @@ public class DeltaWScorer implements IScorer{
         int structureLength;
         int b1;
         int b2;
-        Integer singleCount = Integer.valueOf(1);
 
         // for the first oligomer in each combination
         for(int i1: IntStream.range(0,oligomers.length).toArray()){
@@ -479,7 +961,7 @@ public class DeltaWScorer implements IScorer{
                             if( b2 == 0){
 
                                     if (structureLength >= interSLC){
-                                        lengthCounts.merge(structureLength,singleCount,(x,y)->x+y);
+                                        lengthCounts[structureLength]++;
                                     }
                                     b2 = b2Max;
                                     structureLength = 0;
@@ -494,7 +976,7 @@ public class DeltaWScorer implements IScorer{
                             {
                                     if (structureLength >= interSLC)
                                     {
-                                        lengthCounts.merge(structureLength,singleCount,(x,y)->x+y);
+                                        lengthCounts[structureLength]++;
                                     }
                                     structureLength = 0;
                             };
@@ -502,21 +984,13 @@ public class DeltaWScorer implements IScorer{
                     //if the loop ended with an active structure, record it.
                     if (structureLength >= interSLC)
                     {
-                        lengthCounts.merge(structureLength,singleCount,(x,y)->x+y);
+                        lengthCounts[structureLength]++;
                     };
                 }
             }
         }
 
-        BigInteger retScore = BigInteger.valueOf(0);
-        for(Map.Entry<Integer,Integer> entry: lengthCounts.entrySet()){
-            int length = entry.getKey();
-            int counts = entry.getValue();
-            BigInteger lengthScore = knownInterScores.computeIfAbsent(length, (x)->calculateUniqueDuplexPoints(x, interSLC, interSB));
-            retScore = retScore.add(lengthScore.multiply(BigInteger.valueOf(counts)));
-        }
-
-        return retScore;
+        return getInterScore(lengthCounts);
     }
 
     private BigInteger calculateW (int[][] encodedOligomers){
@@ -530,145 +1004,48 @@ public class DeltaWScorer implements IScorer{
     }
 
     private BigInteger calculateAffectedO (IDomainBasedEncodedNetwork network, int updatedVariableDomainIndex){
-        int[] lengthCounts = new int[maxLength+1];
-        int[][] encodedOligomers = network.getOligomerSequencesEncoded();
-        Set<Integer> affectedOligomerIndices = network.getVariableDomainToOligomerIndices().get(updatedVariableDomainIndex);
+        return ss.getO(this, network.getOligomerSequencesEncoded(), getSelfAlignments(network, updatedVariableDomainIndex));
+    }
+
+    private BigInteger calculateAffectedN (IDomainBasedEncodedNetwork network, int updatedVariableDomainIndex){
         //Map<Integer,AtomicInteger> lengthCounts = new HashMap<>();
         
-        int[] encodedOligomer;
-        int[] S1;
+        int[] lengthCounts = knownLengthCounts.get();
+        int[][] encodedOligomers = network.getOligomerSequencesEncoded();
+        int[][] aoc = network.getVariableDomainToOligomerCombinations().get(updatedVariableDomainIndex);
+        
+        int[] S1Bases;
+        int[] S2Bases;
         int S1length;
         int b1Max;
+        int S2length;
+        int b2Max;
         int structureLength;
         int b1;
         int b2;
-        //int j;
-
-        // for each oligomer
-        for(Integer i : affectedOligomerIndices){
-            encodedOligomer = encodedOligomers[i];
-            S1 = encodedOligomer;
-            S1length = S1.length;
+        
+        // for each oligomer combination
+        for (int i = 0; i < aoc[0].length; i++){
+            S1Bases = encodedOligomers[aoc[0][i]];
+            S2Bases = encodedOligomers[aoc[1][i]];
+            S1length = S1Bases.length;		
             b1Max = S1length-1;
-            //j=0;
-
-            for( int j : knownRanges.computeIfAbsent(S1length,x->IntStream.range(0,x).toArray())){
+            S2length = S2Bases.length;
+            b2Max = S2length-1;
+            for (int j = 0; j < S2length; j++){
                 structureLength = 0;
-                b1 = (S1length - (j)/2) % S1length; // index of base on the top strand;
-                b2 = (b1Max -((j+1)/2)) ;// index of base on the bottom strand;
-
-                int length = S1length/2;
-                if(S1length % 2 == 0 && j%2 == 1)
-                {
-                    length = length -1;
-                }
-
-                if(S1[b1] + S1[b2] ==0)
-                {
-                    structureLength = 1;
-                }
-
-                //For every base-pair in the reference position
-                for ( int k =1; k < length; k++)
-                {
-                    if( b1 == b1Max) 
-                    {
-                        if (structureLength >= intraSLC)
-                        {
+                b1 = 0; // index of base on the top strand;
+                b2 = (b2Max + j) % (S2length);// index of base on the bottom strand;
+                
+                // for each base in the stretch.
+                do{
+                    //are the current bases complementary?
+                    if (S1Bases[b1] + S2Bases[b2] == 0){
+                        structureLength++;
+                    } else {
+                        if (structureLength >= interSLC){
                             lengthCounts[structureLength]++;
-                            //lengthCounts.computeIfAbsent(structureLength,(x)->new AtomicInteger(0)).incrementAndGet();
-                        }
-                        b1 = 0;
-                        structureLength = 0;
-                    } else {b1++;}
-
-                    if( b2 == 0) 
-                    {
-                        if (structureLength >= intraSLC)
-                        {
-                            lengthCounts[structureLength]++;
-                            //lengthCounts.computeIfAbsent(structureLength,(x)->new AtomicInteger(0)).incrementAndGet();
-                        }
-                        b2 = b1Max;
-                        structureLength = 0;
-                    } else {b2--;}
-
-                    if(S1[b1]+S1[b2]==0)
-                    {
-                        structureLength++;
-                    }
-                    else
-                    {
-                        if (structureLength >= intraSLC)
-                        {
-                            lengthCounts[structureLength]++;
-                            //lengthCounts.computeIfAbsent(structureLength,(x)->new AtomicInteger(0)).incrementAndGet();
-                        }
-                        structureLength =0;
-                    }
-                }
-
-                //if the loop ended with an active structure, record it.
-                if (structureLength >= intraSLC)
-                {
-                    lengthCounts[structureLength]++;
-                    //lengthCounts.computeIfAbsent(structureLength,(x)->new AtomicInteger(0)).incrementAndGet();
-                }
-            };
-        }
-
-        BigInteger retScore = BigInteger.valueOf(0);
-        for(int i : knownRanges.computeIfAbsent(lengthCounts.length,x->IntStream.range(0,x).toArray())){
-            int length = i;
-            int counts = lengthCounts[i];
-            if (counts >0){
-                BigInteger lengthScore = knownIntraScores.computeIfAbsent(length, (x)->calculateUniqueDuplexPoints(x, intraSLC, intraSB));
-                retScore = retScore.add(lengthScore.multiply(BigInteger.valueOf(counts)));
-            }
-        }
-
-        return retScore;
-    }
-
-    private BigInteger calculateAffectedN (IDomainBasedEncodedNetwork network, int updatedVariableDomainIndex){
-        //Map<Integer,AtomicInteger> lengthCounts = new HashMap<>();
-        
-        int[] lengthCounts = new int[maxLength+1];
-        int[][] encodedOligomers = network.getOligomerSequencesEncoded();
-        int[][] aoc = network.getVariableDomainToOligomerCombinations().get(updatedVariableDomainIndex);
-        
-        int[] S1Bases;
-        int[] S2Bases;
-        int S1length;
-        int b1Max;
-        int S2length;
-        int b2Max;
-        int structureLength;
-        int b1;
-        int b2;
-        
-        // for each oligomer combination
-        for( int i : knownRanges.computeIfAbsent(aoc[0].length,x->IntStream.range(0,x).toArray())){
-            S1Bases = encodedOligomers[aoc[0][i]];
-            S2Bases = encodedOligomers[aoc[1][i]];
-            S1length = S1Bases.length;		
-            b1Max = S1length-1;
-            S2length = S2Bases.length;
-            b2Max = S2length-1;
-            for (int j : knownRanges.computeIfAbsent(S2length,x->IntStream.range(0,x).toArray())){
-                structureLength = 0;
-                b1 = 0; // index of base on the top strand;
-                b2 = (b2Max + j) % (S2length);// index of base on the bottom strand;
-                
-                // for each base in the stretch.
-                do{
-                    //are the current bases complementary?
-                    if (S1Bases[b1] + S2Bases[b2] == 0){
-                        structureLength++;
-                    } else {
-                        if (structureLength >= interSLC){
-                            lengthCounts[structureLength]++;
-                            //lengthCounts.merge(structureLength,singleCount,(x,y)->x+y);
+                            //lengthCounts.merge(structureLength,singleCount,(x,y)->x+y);
                             //lengthCounts.computeIfAbsent(structureLength,(x)->new AtomicInteger(0)).incrementAndGet();
                         }
                         structureLength = 0;
@@ -696,18 +1073,7 @@ public class DeltaWScorer implements IScorer{
             }
         }
 
-        //System.out.println("Inter Oligomer Structures:");
-        BigInteger retScore = BigInteger.valueOf(0);
-        for(int i : knownRanges.computeIfAbsent(lengthCounts.length,x->IntStream.range(0,x).toArray())){
-            int length = i;
-            int counts = lengthCounts[i];
-            if (counts >0){
-                //System.out.println(length+", "+counts);
-                BigInteger lengthScore = knownInterScores.computeIfAbsent(length, (x)->calculateUniqueDuplexPoints(x, interSLC, interSB));
-                retScore = retScore.add(lengthScore.multiply(BigInteger.valueOf(counts)));
-            }
-        }
-        return retScore;
+        return getInterScore(lengthCounts);
     }
 
     private BigInteger calculateAffectedW (IDomainBasedEncodedNetwork network, int updatedVariableDomainIndex){
@@ -799,18 +1165,6 @@ public class DeltaWScorer implements IScorer{
         return retArray;
     }
     
-    private static BigInteger calculateUniqueDuplexPoints (int length, int slc, int base){
-        BigInteger score = BigInteger.valueOf(0);
-        
-        int numberOfStructures = 1;
-        for (int i = length; i >= slc; i--){
-            score = score.add(BigInteger.valueOf(base).pow(i).multiply(BigInteger.valueOf(numberOfStructures)));
-            numberOfStructures++;
-        }
-        
-        return score;
-    }
-    
     private static Map<String,int[]> encode(Map<String,String> sequences){
         Map<String,int[]> encoded = new HashMap<>();
         sequences.forEach((k,v)-> {
@@ -845,274 +1199,1249 @@ public class DeltaWScorer implements IScorer{
     }
     
     static private class ScoringSupervisor{
-        final ExecutorService es;
+        // number of tasks each thread may steal from when splitting a network's combinations.
+        static final int CHUNKS_PER_THREAD = 4;
+        // number of base-pairs below which a range of combinations is cheaper to score than to hand to another thread.
+        static final long MIN_TASK_WORK = 1 << 14;
+        static final int[] NO_BASES = new int[0];
+        // daughters whose windows around the updated bases would examine at least this fraction of the base-pairs of a full count are counted in full, in lockstep.
+        static final double LOCKSTEP_WORK_FRACTION = 0.1;
+        final ForkJoinPool pool;
         final int maxThreads;
         final int maxThreadsPerNetwork;
-        final LinkedBlockingQueue<Runnable> workQueue;
         
         ScoringSupervisor(int maxThreads, int maxThreadsPerNetwork){
             this.maxThreads = maxThreads;
             this.maxThreadsPerNetwork = maxThreadsPerNetwork;
-            es = Executors.newFixedThreadPool(maxThreads);
-            workQueue = new LinkedBlockingQueue<>();
-            for(int i: IntStream.range(0,this.maxThreads).toArray()){
-                es.submit(new Worker(workQueue));
-            }
-            /*Runtime.getRuntime().addShutdownHook( new Thread(){
-                @Override
-                public void run(){
-                    es.shutdownNow();
-                }
-            });*/
+            pool = new ForkJoinPool(maxThreads);
         }
         
-        String getScoreString(DeltaWScorer scorer, IDomainBasedEncodedScoredNetwork previousNetwork, IDomainBasedEncodedNetwork newNetwork, int updatedVariableDomainIndex){
-            BigInteger deltaW;
-            String retString;
+        IDomainBasedEncodedScoredNetwork getScored(DeltaWScorer scorer, IDomainBasedEncodedScoredNetwork previousNetwork, IDomainBasedEncodedNetwork newNetwork, int updatedVariableDomainIndex){
+            IDomainBasedEncodedScoredNetwork retNetwork;
        
             if(previousNetwork.getScorer() == scorer){
                 Combination[] combos = scorer.getCombos(previousNetwork, updatedVariableDomainIndex);
                 if( combos.length == 0) {
-                    retString = previousNetwork.getScore();
-                    return retString;
+                    return getUnchangedScored(scorer, previousNetwork, newNetwork);
                 }
                 //int[][] aoc = previousNetwork.getVariableDomainToOligomerCombinations().get(updatedVariableDomainIndex);
-
-                //int threadsPerNetwork = (maxThreads+1)/2;
-                int threadsPerNetwork = (maxThreadsPerNetwork+1)/2;
-                //int comboPerThread = combos.length; // only one thread for each score.
-                int comboPerThread = (combos.length+threadsPerNetwork-1)/threadsPerNetwork;
-
-                ArrayList<Integer> lastIndexes = new ArrayList<>();
-                for(int i=0; (i < threadsPerNetwork ) && (i*comboPerThread < combos.length) ; i++){
-                    int firstIndex = i*comboPerThread;
-                    Integer lastIndex = Math.min(firstIndex+comboPerThread, combos.length);
-                    lastIndexes.add(lastIndex);
+                
+                // the previous network's partial W is reused if it was calculated for an earlier daughter.
+                InnerNetwork previousInnerNetwork = (InnerNetwork) previousNetwork;
+                BigInteger oldPartialW = previousInnerNetwork.knownPartialW.get(updatedVariableDomainIndex);
+                ScoreDecomposition previousDecomposition = previousInnerNetwork.decomposition;
+                if (oldPartialW == null && previousDecomposition != null){
+                    // the decomposition already holds the scores of the affected oligomers and pairs.
+                    oldPartialW = scorer.getPartialW(previousDecomposition, previousNetwork, updatedVariableDomainIndex);
+                    previousInnerNetwork.knownPartialW.putIfAbsent(updatedVariableDomainIndex, oldPartialW);
                 }
-                Integer[] lastIndexesArray = lastIndexes.toArray(x->new Integer[x]);
-                int[] indexList = IntStream.range(1,lastIndexesArray.length).toArray();
+                boolean calculateOld = (oldPartialW == null);
 
+                // the old and new partial N share the threads of this network.
+                int threadsPerNetwork = (maxThreadsPerNetwork+1)/2;
+                KmerSeedIndex oldSeeds = scorer.getSeedIndex(previousInnerNetwork);
+                KmerSeedIndex newSeeds = scorer.getUpdatedSeedIndex(previousInnerNetwork, newNetwork, updatedVariableDomainIndex);
+    
                 // start calculation of old partial N
-                NRequest[] oldRequests = new NRequest[lastIndexesArray.length];
-                oldRequests[0] = new NRequest(previousNetwork, scorer, combos, 0, lastIndexesArray[0]);
-                workQueue.add(oldRequests[0]);
-                for(int i:indexList){
-                    int firstIndex = lastIndexesArray[i-1];
-                    int lastIndex = lastIndexesArray[i];
-                    oldRequests[i] = new NRequest(previousNetwork, scorer, combos, firstIndex, lastIndex);
-                    workQueue.add(oldRequests[i]);
+                NRequest oldRequest = null;
+                if (calculateOld){
+                    oldRequest = new NRequest(previousNetwork, oldSeeds, scorer, combos, 0, combos.length, 0);
+                    oldRequest.minWork = getMinWork(oldRequest.getWork(0, combos.length), threadsPerNetwork);
+                    execute(oldRequest);
                 }
 
                 // start calculation of new partial N
-                NRequest[] newRequests = new NRequest[lastIndexesArray.length];
-                newRequests[0] = new NRequest(newNetwork, scorer, combos, 0, lastIndexesArray[0]);
-                workQueue.add(newRequests[0]);
-                for(int i:indexList){
-                    int firstIndex = lastIndexesArray[i-1];
-                    int lastIndex = lastIndexesArray[i];
-                    newRequests[i] = new NRequest(newNetwork, scorer, combos, firstIndex, lastIndex);
-                    workQueue.add(newRequests[i]);
+                NRequest newRequest = new NRequest(newNetwork, newSeeds, scorer, combos, 0, combos.length, 0);
+                newRequest.minWork = getMinWork(newRequest.getWork(0, combos.length), threadsPerNetwork);
+                execute(newRequest);
+                
+                // start calculation of the partial O. short oligomers are calculated by the calling thread.
+                SelfAlignments selfAlignments = scorer.getSelfAlignments(newNetwork, updatedVariableDomainIndex);
+                ORequest oldORequest = null;
+                boolean isOldOForked = false;
+                if (calculateOld){
+                    oldORequest = new ORequest(previousNetwork.getOligomerSequencesEncoded(), scorer, selfAlignments, 0, selfAlignments.oligomerIndices.length, 0);
+                    isOldOForked = start(oldORequest, threadsPerNetwork);
                 }
-
-                // calculate old partial O
-                BigInteger oldPartialO = scorer.calculateAffectedO(previousNetwork, updatedVariableDomainIndex);
+                ORequest newORequest = new ORequest(newNetwork.getOligomerSequencesEncoded(), scorer, selfAlignments, 0, selfAlignments.oligomerIndices.length, 0);
+                boolean isNewOForked = start(newORequest, threadsPerNetwork);
 
                 // calculate new parital O
-                BigInteger newPartialO = scorer.calculateAffectedO(newNetwork, updatedVariableDomainIndex);
+                BigInteger newPartialO = finish(newORequest, isNewOForked);
+
+                if (calculateOld){
+                    // calculate old partial O
+                    BigInteger oldPartialO = finish(oldORequest, isOldOForked);
 
-                // finish calculation of old partial N
-                BigInteger oldPartialN = new BigInteger(oldRequests[0].getResult());
-                for(int i:indexList){
-                    oldPartialN = oldPartialN.add(new BigInteger(oldRequests[i].getResult()));
+                    // finish calculation of old partial N
+                    BigInteger oldPartialN = oldRequest.join();
+                    oldPartialW = oldPartialO.multiply(BigInteger.valueOf(scorer.swx)).add(oldPartialN);
+                    previousInnerNetwork.knownPartialW.putIfAbsent(updatedVariableDomainIndex, oldPartialW);
                 }
 
                 // finish calculation of new partial N
-                BigInteger newPartialN = new BigInteger(newRequests[0].getResult());
-                for(int i:indexList){
-                    newPartialN = newPartialN.add(new BigInteger(newRequests[i].getResult()));
-                }
+                BigInteger newPartialN = newRequest.join();
 
                 // calculate partialW
-                BigInteger oldPartialW = oldPartialO.multiply(BigInteger.valueOf(scorer.swx)).add(oldPartialN);
                 BigInteger newPartialW = newPartialO.multiply(BigInteger.valueOf(scorer.swx)).add(newPartialN);
-                BigInteger oldDeltaW = new BigInteger(previousNetwork.getScore());
-                deltaW = oldDeltaW.subtract(oldPartialW).add(newPartialW);
-                retString = deltaW.toString();
-                //System.out.println(retString);
+                InnerNetwork newInnerNetwork = scorer.getUpdatedScored(previousNetwork, newNetwork, oldPartialW, newPartialW);
+                newInnerNetwork.knownPartialW.put(updatedVariableDomainIndex, newPartialW);
+                newInnerNetwork.seedIndex = newSeeds;
+                linkDecomposition(previousInnerNetwork, newInnerNetwork, updatedVariableDomainIndex);
+                retNetwork = newInnerNetwork;
             } else {
-               deltaW = scorer.calculateW(newNetwork.getOligomerSequencesEncoded()).subtract(scorer.baselineW);
-               retString = deltaW.toString();
+               retNetwork = scorer.new InnerNetwork(newNetwork, scorer.getDeltaW(newNetwork));
             }
             
-            return retString;
+            return retNetwork;
          }
         
-        static private class Worker implements Runnable{
-            LinkedBlockingQueue<Runnable> queue;
-            Worker(LinkedBlockingQueue<Runnable> queue){
-                this.queue = queue;
-            }
-            public void run(){
-                while (!Thread.currentThread().isInterrupted()){
-                    try{
-                        Runnable r = queue.take();
-                        synchronized (r) {
-                            r.run();
-                            r.notify();
-                        }
-                    } catch (Exception e) {System.out.println(e);}
+        IDomainBasedEncodedScoredNetwork getScored(DeltaWScorer scorer, IDomainBasedEncodedScoredNetwork previousNetwork, IDomainBasedEncodedNetwork newNetwork, int updatedVariableDomainIndex, int[] updatedBaseIndices){
+            if(previousNetwork.getScorer() != scorer){
+                return getScored(scorer, previousNetwork, newNetwork, updatedVariableDomainIndex);
+            }
+            
+            return getScoredSiblings(scorer, (InnerNetwork) previousNetwork, new IDomainBasedEncodedNetwork[]{newNetwork}, updatedVariableDomainIndex, new int[][]{updatedBaseIndices}, null)[0];
+        }
+        
+        IDomainBasedEncodedScoredNetwork[] getScored(DeltaWScorer scorer, IDomainBasedEncodedScoredNetwork previousNetwork, IDomainBasedEncodedNetwork[] newNetworks, int[] updatedVariableDomainIndices, BigInteger boundScore){
+            IDomainBasedEncodedScoredNetwork[] retNetworks = new IDomainBasedEncodedScoredNetwork[newNetworks.length];
+            if(previousNetwork.getScorer() != scorer){
+                for (int i = 0; i < newNetworks.length; i++){
+                    retNetworks[i] = getScored(scorer, previousNetwork, newNetworks[i], updatedVariableDomainIndices[i]);
+                }
+                return retNetworks;
+            }
+            if (boundScore != null) ((InnerNetwork) previousNetwork).boundedScorings.incrementAndGet();
+            
+            // daughters whose domain changed length are scored one domain at a time.
+            int[][] oldDomains = previousNetwork.getVariableDomainSequencesEncoded();
+            int[][] updatedBaseIndices = new int[newNetworks.length][];
+            for (int i = 0; i < newNetworks.length; i++){
+                int[] oldDomain = oldDomains[updatedVariableDomainIndices[i]];
+                int[] newDomain = newNetworks[i].getVariableDomainSequencesEncoded()[updatedVariableDomainIndices[i]];
+                if (oldDomain.length == newDomain.length){
+                    updatedBaseIndices[i] = getUpdatedBaseIndices(oldDomain, newDomain);
+                } else {
+                    retNetworks[i] = getScored(scorer, previousNetwork, newNetworks[i], updatedVariableDomainIndices[i]);
+                }
+            }
+            
+            // daughters which updated the same domain are scored together.
+            for (int i = 0; i < newNetworks.length; i++){
+                if (retNetworks[i] != null) continue;
+                int domainIndex = updatedVariableDomainIndices[i];
+                int siblings = 0;
+                for (int j = i; j < newNetworks.length; j++){
+                    if (retNetworks[j] == null && updatedVariableDomainIndices[j] == domainIndex) siblings++;
+                }
+                IDomainBasedEncodedNetwork[] siblingNetworks = new IDomainBasedEncodedNetwork[siblings];
+                int[][] siblingBaseIndices = new int[siblings][];
+                int[] siblingIndices = new int[siblings];
+                siblings = 0;
+                for (int j = i; j < newNetworks.length; j++){
+                    if (retNetworks[j] == null && updatedVariableDomainIndices[j] == domainIndex){
+                        siblingNetworks[siblings] = newNetworks[j];
+                        siblingBaseIndices[siblings] = updatedBaseIndices[j];
+                        siblingIndices[siblings] = j;
+                        siblings++;
+                    }
+                }
+                InnerNetwork[] scoredSiblings = getScoredSiblings(scorer, (InnerNetwork) previousNetwork, siblingNetworks, domainIndex, siblingBaseIndices, boundScore);
+                for (int j = 0; j < siblings; j++){
+                    retNetworks[siblingIndices[j]] = scoredSiblings[j];
                 }
             }
+            return retNetworks;
         }
         
-        static private class NRequest implements Runnable{
-            final DeltaWScorer scorer;
-            final Combination[] combinations;
+        // scores daughters of the previous network which updated bases of the same variable domain.
+        // the daughters share the domain's combinations, the previous network's seed index and one pass over the combinations.
+        // daughters which are proven to score more than the bound score are returned as null. boundScore may be null.
+        private InnerNetwork[] getScoredSiblings(DeltaWScorer scorer, InnerNetwork previousNetwork, IDomainBasedEncodedNetwork[] newNetworks, int updatedVariableDomainIndex, int[][] updatedBaseIndices, BigInteger boundScore){
+            InnerNetwork[] retNetworks = new InnerNetwork[newNetworks.length];
+            Combination[] combos = scorer.getCombos(previousNetwork, updatedVariableDomainIndex);
+            
+            // daughters without updated bases keep the previous score.
+            int daughters = 0;
+            int denseDaughters = 0;
+            int denseBaseCount = scorer.knownDenseBaseCounts.computeIfAbsent(updatedVariableDomainIndex, x -> getDenseBaseCount(previousNetwork, x, combos));
+            for (int i = 0; i < newNetworks.length; i++){
+                if( combos.length == 0 || updatedBaseIndices[i].length == 0) {
+                    retNetworks[i] = getUnchangedScored(scorer, previousNetwork, newNetworks[i]);
+                } else if (updatedBaseIndices[i].length >= denseBaseCount){
+                    denseDaughters++;
+                } else {
+                    daughters++;
+                }
+            }
+            
+            // daughters which updated much of the domain are counted in full, in lockstep.
+            if (denseDaughters > 0){
+                IDomainBasedEncodedNetwork[] denseNetworks = new IDomainBasedEncodedNetwork[denseDaughters];
+                int[] denseIndices = new int[denseDaughters];
+                denseDaughters = 0;
+                for (int i = 0; i < newNetworks.length; i++){
+                    if (retNetworks[i] == null && updatedBaseIndices[i].length >= denseBaseCount){
+                        denseNetworks[denseDaughters] = newNetworks[i];
+                        denseIndices[denseDaughters] = i;
+                        denseDaughters++;
+                    }
+                }
+                InnerNetwork[] scoredDense = getScoredLockstep(scorer, previousNetwork, denseNetworks, updatedVariableDomainIndex, combos);
+                for (int d = 0; d < denseDaughters; d++){
+                    retNetworks[denseIndices[d]] = scoredDense[d];
+                }
+            }
+            if (daughters == 0) return retNetworks;
+            
+            IDomainBasedEncodedNetwork[] daughterNetworks = new IDomainBasedEncodedNetwork[daughters];
+            int[][][] updatedBases = new int[daughters][][];
+            KmerSeedIndex oldSeeds = scorer.getSeedIndex(previousNetwork);
+            KmerSeedIndex[] newSeeds = new KmerSeedIndex[daughters];
+            int[] daughterIndices = new int[daughters];
+            daughters = 0;
+            for (int i = 0; i < newNetworks.length; i++){
+                if (retNetworks[i] != null) continue;
+                daughterNetworks[daughters] = newNetworks[i];
+                updatedBases[daughters] = getUpdatedBases(newNetworks[i], updatedVariableDomainIndex, updatedBaseIndices[i]);
+                newSeeds[daughters] = scorer.getUpdatedSeedIndex(previousNetwork, newNetworks[i], updatedVariableDomainIndex);
+                daughterIndices[daughters] = i;
+                daughters++;
+            }
+            
+            CoverageBuffer coverage = getCoverage(scorer, previousNetwork, updatedVariableDomainIndex, boundScore);
+            DeltaNRequest request;
+            BigInteger[] deltaO;
+            BigInteger[] deltaN;
+            try{
+                boolean isForked;
+                if (coverage == null){
+                    // start calculation of the change in N. small changes are calculated by the calling thread.
+                    request = new DeltaNRequest(previousNetwork, daughterNetworks, updatedBases, oldSeeds, newSeeds, null, scorer, combos, 0, combos.length, 0);
+                    isForked = start(request, maxThreadsPerNetwork);
+                    deltaO = getDeltaO(scorer, previousNetwork, daughterNetworks, updatedBases);
+                } else {
+                    deltaO = getDeltaO(scorer, previousNetwork, daughterNetworks, updatedBases);
+                    int[][] updatedDomainBases = new int[daughters][];
+                    for (int d = 0; d < daughters; d++){
+                        updatedDomainBases[d] = updatedBaseIndices[daughterIndices[d]];
+                    }
+                    Bounds bounds = new Bounds(coverage.points, updatedDomainBases, boundScore.subtract(previousNetwork.getBigIntegerScore()), deltaO, scorer.swx);
+                    request = new DeltaNRequest(previousNetwork, daughterNetworks, updatedBases, oldSeeds, newSeeds, bounds, scorer, combos, 0, combos.length, 0);
+                    isForked = start(request, maxThreadsPerNetwork);
+                }
+
+                // finish calculation of the change in N
+                deltaN = finish(request, isForked);
+            } finally {
+                if (coverage != null) coverage.isUsed = false;
+            }
+            
+            BigInteger oldPartialW = previousNetwork.knownPartialW.get(updatedVariableDomainIndex);
+            if (oldPartialW == null && previousNetwork.decomposition != null){
+                oldPartialW = scorer.getPartialW(previousNetwork.decomposition, previousNetwork, updatedVariableDomainIndex);
+                previousNetwork.knownPartialW.putIfAbsent(updatedVariableDomainIndex, oldPartialW);
+            }
+            for (int d = 0; d < daughters; d++){
+                if (request.bounds != null && request.bounds.isRejected(d)) continue;
+                BigInteger deltaPartialW = deltaO[d].multiply(BigInteger.valueOf(scorer.swx)).add(deltaN[d]);
+                InnerNetwork newInnerNetwork = scorer.getUpdatedScored(previousNetwork, daughterNetworks[d], BigInteger.ZERO, deltaPartialW);
+                if (oldPartialW != null){
+                    newInnerNetwork.knownPartialW.put(updatedVariableDomainIndex, oldPartialW.add(deltaPartialW));
+                }
+                newInnerNetwork.seedIndex = newSeeds[d];
+                linkDecomposition(previousNetwork, newInnerNetwork, updatedVariableDomainIndex);
+                retNetworks[daughterIndices[d]] = newInnerNetwork;
+            }
+            return retNetworks;
+        }
+        
+        // returns the number of updated domain bases from which a daughter is counted in full rather than by windows around the updated bases.
+        // depends only on the topology, so it is calculated once per domain.
+        private static int getDenseBaseCount(InnerNetwork previousNetwork, int updatedVariableDomainIndex, Combination[] combos){
+            // each occurrence of an updated base is paired with every base of the other oligomer once.
+            int[][] occurrences = getUpdatedBases(previousNetwork, updatedVariableDomainIndex, new int[1]);
+            int[][] oligomers = previousNetwork.getOligomerSequencesEncoded();
+            long baseWork = 0;
+            long fullWork = 0;
+            for (Combination combo : combos){
+                baseWork += (long)occurrences[combo.indexO1].length*oligomers[combo.indexO2].length + (long)occurrences[combo.indexO2].length*oligomers[combo.indexO1].length;
+                fullWork += combo.work;
+            }
+            if (baseWork == 0) return Integer.MAX_VALUE;
+            return (int) Math.max(1, Math.ceil(fullWork*LOCKSTEP_WORK_FRACTION/baseWork));
+        }
+        
+        // scores daughters of the previous network which updated many bases of the same variable domain.
+        // the daughters' bases are placed side by side, so that one traversal of each combination's alignments counts every daughter.
+        // the previous network takes a lane of its own if its partial W is not known.
+        private InnerNetwork[] getScoredLockstep(DeltaWScorer scorer, InnerNetwork previousNetwork, IDomainBasedEncodedNetwork[] newNetworks, int updatedVariableDomainIndex, Combination[] combos){
+            BigInteger oldPartialW = previousNetwork.knownPartialW.get(updatedVariableDomainIndex);
+            if (oldPartialW == null && previousNetwork.decomposition != null){
+                oldPartialW = scorer.getPartialW(previousNetwork.decomposition, previousNetwork, updatedVariableDomainIndex);
+                previousNetwork.knownPartialW.putIfAbsent(updatedVariableDomainIndex, oldPartialW);
+            }
+            int daughters = newNetworks.length;
+            IDomainBasedEncodedNetwork[] laneNetworks = newNetworks;
+            if (oldPartialW == null){
+                laneNetworks = Arrays.copyOf(newNetworks, daughters+1);
+                laneNetworks[daughters] = previousNetwork;
+            }
+            KmerSeedIndex[] seeds = new KmerSeedIndex[laneNetworks.length];
+            for (int d = 0; d < daughters; d++){
+                seeds[d] = scorer.getUpdatedSeedIndex(previousNetwork, newNetworks[d], updatedVariableDomainIndex);
+            }
+            if (laneNetworks.length > daughters){
+                seeds[daughters] = scorer.getSeedIndex(previousNetwork);
+            }
+            
+            // a single lane, or bases which do not fit in a byte lane, are scored one daughter at a time.
+            long[][][] laneBases = (laneNetworks.length < 2) ? null : getLaneBases(laneNetworks, false);
+            long[][][] complementLaneBases = (laneBases == null) ? null : getLaneBases(laneNetworks, true);
+            if (laneBases == null || complementLaneBases == null){
+                InnerNetwork[] retNetworks = new InnerNetwork[daughters];
+                for (int d = 0; d < daughters; d++){
+                    retNetworks[d] = (InnerNetwork) getScored(scorer, previousNetwork, newNetworks[d], updatedVariableDomainIndex);
+                }
+                return retNetworks;
+            }
+            
+            // start calculation of the partial N of every lane
+            LockstepNRequest request = new LockstepNRequest(laneBases, complementLaneBases, laneNetworks.length, seeds, scorer, combos, 0, combos.length, 0);
+            boolean isForked = start(request, maxThreadsPerNetwork);
+            
+            // calculate the partial O of every lane
+            SelfAlignments selfAlignments = scorer.getSelfAlignments(previousNetwork, updatedVariableDomainIndex);
+            BigInteger[] partialO = new BigInteger[laneNetworks.length];
+            for (int l = 0; l < laneNetworks.length; l++){
+                ORequest oRequest = new ORequest(laneNetworks[l].getOligomerSequencesEncoded(), scorer, selfAlignments, 0, selfAlignments.oligomerIndices.length, 0);
+                partialO[l] = finish(oRequest, start(oRequest, maxThreadsPerNetwork));
+            }
+            
+            // finish calculation of the partial N of every lane
+            BigInteger[] partialN = finish(request, isForked);
+            if (oldPartialW == null){
+                oldPartialW = partialO[daughters].multiply(BigInteger.valueOf(scorer.swx)).add(partialN[daughters]);
+                previousNetwork.knownPartialW.putIfAbsent(updatedVariableDomainIndex, oldPartialW);
+            }
+            
+            InnerNetwork[] retNetworks = new InnerNetwork[daughters];
+            for (int d = 0; d < daughters; d++){
+                BigInteger newPartialW = partialO[d].multiply(BigInteger.valueOf(scorer.swx)).add(partialN[d]);
+                InnerNetwork newInnerNetwork = scorer.getUpdatedScored(previousNetwork, newNetworks[d], oldPartialW, newPartialW);
+                newInnerNetwork.knownPartialW.put(updatedVariableDomainIndex, newPartialW);
+                newInnerNetwork.seedIndex = seeds[d];
+                linkDecomposition(previousNetwork, newInnerNetwork, updatedVariableDomainIndex);
+                retNetworks[d] = newInnerNetwork;
+            }
+            return retNetworks;
+        }
+        
+        // returns the lane bases of every oligomer for each group of up to eight lanes, or null if a base does not fit in a byte lane.
+        private static long[][][] getLaneBases(IDomainBasedEncodedNetwork[] laneNetworks, boolean complement){
+            int groups = (laneNetworks.length+PackedDuplexKernel.LANES-1)/PackedDuplexKernel.LANES;
+            int oligomers = laneNetworks[0].getOligomerSequencesEncoded().length;
+            long[][][] ret = new long[groups][oligomers][];
+            for (int g = 0; g < groups; g++){
+                int firstLane = g*PackedDuplexKernel.LANES;
+                int[][] laneOligomers = new int[Math.min(PackedDuplexKernel.LANES, laneNetworks.length-firstLane)][];
+                for (int o = 0; o < oligomers; o++){
+                    for (int l = 0; l < laneOligomers.length; l++){
+                        laneOligomers[l] = laneNetworks[firstLane+l].getOligomerSequencesEncoded()[o];
+                    }
+                    ret[g][o] = PackedDuplexKernel.getLaneBases(laneOligomers, complement);
+                    if (ret[g][o] == null) return null;
+                }
+            }
+            return ret;
+        }
+        
+        // returns the change in O of each daughter.
+        private static BigInteger[] getDeltaO(DeltaWScorer scorer, InnerNetwork previousNetwork, IDomainBasedEncodedNetwork[] daughterNetworks, int[][][] updatedBases){
+            int[] lengthCounts = scorer.knownLengthCounts.get();
+            int[][] oldOligomers = previousNetwork.getOligomerSequencesEncoded();
+            BigInteger[] deltaO = new BigInteger[daughterNetworks.length];
+            for (int d = 0; d < daughterNetworks.length; d++){
+                int[][] newOligomers = daughterNetworks[d].getOligomerSequencesEncoded();
+                for (int i = 0; i < oldOligomers.length; i++){
+                    if (updatedBases[d][i].length > 0){
+                        WindowedDuplexCounter.countIntraDelta(oldOligomers[i], newOligomers[i], updatedBases[d][i], scorer.intraSLC, lengthCounts);
+                    }
+                }
+                deltaO[d] = scorer.getIntraScore(lengthCounts);
+            }
+            return deltaO;
+        }
+        
+        // returns the calling thread's coverage buffer of the domain, holding the points of the previous network's inter-oligomer duplexes
+        // which contain, or end next to, each base of the domain in each combination. the buffer is marked as used, and must be released
+        // by clearing isUsed once the daughters are scored. returns null if the daughters are not bounded.
+        private CoverageBuffer getCoverage(DeltaWScorer scorer, InnerNetwork previousNetwork, int updatedVariableDomainIndex, BigInteger boundScore){
+            if (boundScore == null) return null;
+            
+            Map<Integer,CoverageBuffer> buffers = scorer.knownCoverage.get();
+            CoverageBuffer coverage = buffers.get(updatedVariableDomainIndex);
+            if (coverage == null){
+                coverage = new CoverageBuffer();
+                buffers.put(updatedVariableDomainIndex, coverage);
+            }
+            // a batch scored by this thread while it waits for another batch of the same domain is not bounded.
+            if (coverage.isUsed) return null;
+            if (coverage.network != previousNetwork){
+                // the coverage is only calculated for a network which has already had a batch of daughters, so that early generations with frequent improvements do not pay for it.
+                if (previousNetwork.boundedScorings.get() <= 1) return null;
+                Combination[] combos = scorer.getCombos(previousNetwork, updatedVariableDomainIndex);
+                int domainLength = previousNetwork.getVariableDomainSequencesEncoded()[updatedVariableDomainIndex].length;
+                if (coverage.points.length != combos.length || (combos.length > 0 && coverage.points[0].length != domainLength)){
+                    coverage.points = new long[combos.length][domainLength];
+                }
+                coverage.network = null;
+                coverage.isUsed = true;
+                boolean isFilled = false;
+                try{
+                    CoverageRequest request = new CoverageRequest(previousNetwork, scorer.getSeedIndex(previousNetwork), scorer.getDomainBaseIndices(previousNetwork, updatedVariableDomainIndex), coverage.points, scorer, combos, 0, combos.length, 0);
+                    finish(request, start(request, maxThreadsPerNetwork));
+                    isFilled = true;
+                } finally {
+                    if (!isFilled) coverage.isUsed = false;
+                }
+                coverage.network = previousNetwork;
+                return coverage;
+            }
+            coverage.isUsed = true;
+            return coverage;
+        }
+        
+        // returns the new network with the score of the previous network.
+        private static InnerNetwork getUnchangedScored(DeltaWScorer scorer, IDomainBasedEncodedScoredNetwork previousNetwork, IDomainBasedEncodedNetwork newNetwork){
+            InnerNetwork ret = previousNetwork.isLongScore() ? scorer.new InnerNetwork(newNetwork, previousNetwork.getLongScore()) : scorer.new InnerNetwork(newNetwork, previousNetwork.getBigIntegerScore());
+            ret.decomposition = ((InnerNetwork) previousNetwork).decomposition;
+            return ret;
+        }
+        
+        // returns the indices of the bases which differ between the old and new domain.
+        private static int[] getUpdatedBaseIndices(int[] oldDomain, int[] newDomain){
+            int updatedBaseCount = 0;
+            for (int i = 0; i < newDomain.length; i++){
+                if (oldDomain[i] != newDomain[i]) updatedBaseCount++;
+            }
+            if (updatedBaseCount == 0) return NO_BASES;
+            int[] ret = new int[updatedBaseCount];
+            updatedBaseCount = 0;
+            for (int i = 0; i < newDomain.length; i++){
+                if (oldDomain[i] != newDomain[i]) ret[updatedBaseCount++] = i;
+            }
+            return ret;
+        }
+        
+        // returns an array where the i'th element lists the updated base indices on the i'th oligomer.
+        private static int[][] getUpdatedBases(IDomainBasedEncodedNetwork network, int updatedVariableDomainIndex, int[] updatedBaseIndices){
+            int domainLength = network.getVariableDomainSequencesEncoded()[updatedVariableDomainIndex].length;
+            Map<Integer,int[]> domainCoordinates = network.getVariableDomainToOligomerCoordinates().get(updatedVariableDomainIndex);
+            Map<Integer,int[]> complementCoordinates = network.getVariableDomainComplementToOligomerCoordinates().get(updatedVariableDomainIndex);
+            int[][] ret = new int[network.getOligomerSequencesEncoded().length][];
+            
+            // count the occurrences of the domain on each oligomer.
+            int[] occurrences = new int[ret.length];
+            for (Map.Entry<Integer,int[]> entry : domainCoordinates.entrySet()){
+                occurrences[entry.getKey()] += entry.getValue().length;
+            }
+            for (Map.Entry<Integer,int[]> entry : complementCoordinates.entrySet()){
+                occurrences[entry.getKey()] += entry.getValue().length;
+            }
+            for (int i = 0; i < ret.length; i++){
+                ret[i] = (occurrences[i] == 0) ? NO_BASES : new int[occurrences[i]*updatedBaseIndices.length];
+                occurrences[i] = 0;
+            }
+            
+            for (Map.Entry<Integer,int[]> entry : domainCoordinates.entrySet()){
+                int[] bases = ret[entry.getKey()];
+                for (int start : entry.getValue()){
+                    for (int index : updatedBaseIndices){
+                        bases[occurrences[entry.getKey()]++] = start + index;
+                    }
+                }
+            }
+            // the complement is placed in reverse order.
+            for (Map.Entry<Integer,int[]> entry : complementCoordinates.entrySet()){
+                int[] bases = ret[entry.getKey()];
+                for (int start : entry.getValue()){
+                    for (int index : updatedBaseIndices){
+                        bases[occurrences[entry.getKey()]++] = start + domainLength - 1 - index;
+                    }
+                }
+            }
+            return ret;
+        }
+        
+        // returns O of the given self-alignments.
+        BigInteger getO(DeltaWScorer scorer, int[][] encodedOligomers, SelfAlignments selfAlignments){
+            ORequest request = new ORequest(encodedOligomers, scorer, selfAlignments, 0, selfAlignments.oligomerIndices.length, 0);
+            return finish(request, start(request, maxThreadsPerNetwork));
+        }
+        
+        // returns O of each range of the given self-alignments.
+        BigInteger[] getRangeO(DeltaWScorer scorer, int[][] encodedOligomers, SelfAlignments selfAlignments){
+            BigInteger[] rangeO = new BigInteger[selfAlignments.oligomerIndices.length];
+            RangeORequest request = new RangeORequest(encodedOligomers, rangeO, scorer, selfAlignments, 0, rangeO.length, 0);
+            finish(request, start(request, maxThreadsPerNetwork));
+            return rangeO;
+        }
+        
+        // returns N of each of the given combinations.
+        BigInteger[] getComboN(DeltaWScorer scorer, int[][] encodedOligomers, Combination[] combinations){
+            BigInteger[] comboN = new BigInteger[combinations.length];
+            ComboNRequest request = new ComboNRequest(encodedOligomers, comboN, scorer, combinations, 0, combinations.length, 0);
+            finish(request, start(request, maxThreadsPerNetwork));
+            return comboN;
+        }
+        
+        // starts the task on the pool unless it is too small to be split. returns true if the task was started.
+        private boolean start(ComboTask<?> task, int threads){
+            long totalWork = task.getWork(task.firstIndex, task.lastIndex);
+            task.minWork = getMinWork(totalWork, threads);
+            if (totalWork <= MIN_TASK_WORK) return false;
+            execute(task);
+            return true;
+        }
+        
+        // submits the task to the pool, noting when it was queued.
+        private void execute(ComboTask<?> task){
+            task.queuedNanos = System.nanoTime();
+            pool.execute(task);
+        }
+        
+        // returns the result of a task passed to start. tasks which were not started are computed by the calling thread.
+        private static <V> V finish(ComboTask<V> task, boolean isForked){
+            return isForked ? task.join() : task.compute(0);
+        }
+        
+        // returns the number of base-pairs below which the task's range of combinations is not split further.
+        private static long getMinWork(long totalWork, int threads){
+            long chunks = (long)threads*CHUNKS_PER_THREAD;
+            return Math.max(MIN_TASK_WORK, (totalWork+chunks-1)/chunks);
+        }
+        
+        // scores a range of combinations, or of self-alignments. ranges with
+        // more than minWork base-pairs are split in two halves of similar work,
+        // one of which may be stolen by an idle thread.
+        @SuppressWarnings("serial")
+        static private abstract class ComboTask<V> extends RecursiveTask<V>{
             final int firstIndex;
             final int lastIndex;
-            final IDomainBasedEncodedNetwork network;
-            String result;
-            final AtomicBoolean isDone;
-            //Map<Integer,AtomicInteger> lengthCounts = new HashMap<>();
+            long minWork;
+            long queuedNanos; // time the task was submitted or forked. 0 if the task was never queued.
             
-            NRequest(IDomainBasedEncodedNetwork network, DeltaWScorer scorer, Combination[] combinations, int firstIndex, int lastIndex){
-                isDone = new AtomicBoolean(false);
-                this.combinations = combinations;
+            ComboTask(int firstIndex, int lastIndex, long minWork){
                 this.firstIndex = firstIndex;
                 this.lastIndex = lastIndex;
-                this.network = network;
+                this.minWork = minWork;
+            }
+            
+            abstract ComboTask<V> getSubtask(int firstIndex, int lastIndex);
+            
+            abstract V computeRange();
+            
+            // returns the combined result of two adjacent ranges.
+            abstract V add(V first, V second);
+            
+            // returns the estimated number of base-pairs examined for the given combination.
+            abstract long getWork(int index);
+            
+            // returns the metrics which record this task.
+            abstract ScoringMetrics getMetrics();
+            
+            // returns the number of oligomer combinations in the given range.
+            long getCombinations(int firstIndex, int lastIndex){
+                return lastIndex-firstIndex;
+            }
+            
+            // returns the estimated number of base-pairs examined for the given range of combinations.
+            long getWork(int firstIndex, int lastIndex){
+                long work = 0;
+                for (int i = firstIndex; i < lastIndex; i++){
+                    work += getWork(i);
+                }
+                return work;
+            }
+            
+            // computes the range and records its visited combinations, its work, its queue wait and its compute time.
+            V computeRecordedRange(long work, long queueWaitNanos){
+                long startNanos = System.nanoTime();
+                V result = computeRange();
+                getMetrics().recordTask(getClass().getSimpleName(), getCombinations(firstIndex, lastIndex), work, queueWaitNanos, System.nanoTime()-startNanos);
+                return result;
+            }
+            
+            @Override
+            protected V compute(){
+                return compute((queuedNanos == 0) ? 0 : System.nanoTime()-queuedNanos);
+            }
+            
+            // the queue wait of a split task is recorded with its first half, which is computed by the same thread.
+            private V compute(long queueWaitNanos){
+                long work = getWork(firstIndex, lastIndex);
+                if (lastIndex-firstIndex < 2 || work <= minWork){
+                    return computeRecordedRange(work, queueWaitNanos);
+                }
+                
+                // split where the first half holds about half of the work.
+                int splitIndex = firstIndex+1;
+                long firstWork = getWork(firstIndex);
+                while (splitIndex < lastIndex-1 && 2*(firstWork+getWork(splitIndex)) <= work){
+                    firstWork += getWork(splitIndex);
+                    splitIndex++;
+                }
+                ComboTask<V> secondHalf = getSubtask(splitIndex, lastIndex);
+                secondHalf.queuedNanos = System.nanoTime();
+                secondHalf.fork();
+                V result = getSubtask(firstIndex, splitIndex).compute(queueWaitNanos);
+                return add(result, secondHalf.join());
+            }
+        }
+        
+        @SuppressWarnings("serial")
+        static private class ORequest extends ComboTask<BigInteger>{
+            final DeltaWScorer scorer;
+            final int[][] encodedOligomers;
+            final SelfAlignments selfAlignments;
+            
+            ORequest(int[][] encodedOligomers, DeltaWScorer scorer, SelfAlignments selfAlignments, int firstIndex, int lastIndex, long minWork){
+                super(firstIndex, lastIndex, minWork);
+                this.encodedOligomers = encodedOligomers;
                 this.scorer = scorer;
+                this.selfAlignments = selfAlignments;
             }
             
-            public String getResult(){
-                synchronized (NRequest.this){
-                    while (!isDone.get()){
-                        try{
-                            NRequest.this.wait();
-                        } catch (Exception e) {System.out.println(e);}
-                    }
-                    return this.result;
+            @Override
+            ComboTask<BigInteger> getSubtask(int firstIndex, int lastIndex){
+                return new ORequest(encodedOligomers, scorer, selfAlignments, firstIndex, lastIndex, minWork);
+            }
+            
+            @Override
+            BigInteger add(BigInteger first, BigInteger second){
+                return first.add(second);
+            }
+            
+            @Override
+            ScoringMetrics getMetrics(){
+                return scorer.metrics;
+            }
+            
+            @Override
+            long getWork(int index){
+                return selfAlignments.work[index];
+            }
+            
+            // self-alignments are not oligomer combinations.
+            @Override
+            long getCombinations(int firstIndex, int lastIndex){
+                return 0;
+            }
+            
+            @Override
+            BigInteger computeRange(){
+                int[] lengthCounts = scorer.knownLengthCounts.get();
+                
+                // for each range of self-alignments
+                for (int r = firstIndex; r < lastIndex; r++){
+                    countRange(r, lengthCounts);
+                }
+                
+                return scorer.getIntraScore(lengthCounts);
+            }
+            
+            // counts the intra-oligomer duplexes of the r'th range of self-alignments.
+            void countRange(int r, int[] lengthCounts){
+                int[] S1 = encodedOligomers[selfAlignments.oligomerIndices[r]];
+                for (int j = selfAlignments.firstPositions[r]; j < selfAlignments.lastPositions[r]; j++){
+                    scorer.countSelfAlignment(S1, j, lengthCounts);
+                }
+            }
+        }
+        
+        // calculates O of each range of self-alignments on its own.
+        @SuppressWarnings("serial")
+        static private class RangeORequest extends ORequest{
+            final BigInteger[] rangeO; // shared by all subtasks. each fills the elements of its own ranges.
+            
+            RangeORequest(int[][] encodedOligomers, BigInteger[] rangeO, DeltaWScorer scorer, SelfAlignments selfAlignments, int firstIndex, int lastIndex, long minWork){
+                super(encodedOligomers, scorer, selfAlignments, firstIndex, lastIndex, minWork);
+                this.rangeO = rangeO;
+            }
+            
+            @Override
+            ComboTask<BigInteger> getSubtask(int firstIndex, int lastIndex){
+                return new RangeORequest(encodedOligomers, rangeO, scorer, selfAlignments, firstIndex, lastIndex, minWork);
+            }
+            
+            @Override
+            BigInteger computeRange(){
+                int[] lengthCounts = scorer.knownLengthCounts.get();
+                for (int r = firstIndex; r < lastIndex; r++){
+                    countRange(r, lengthCounts);
+                    rangeO[r] = scorer.getIntraScore(lengthCounts);
                 }
+                return BigInteger.ZERO;
+            }
+        }
+        
+        @SuppressWarnings("serial")
+        static private class NRequest extends ComboTask<BigInteger>{
+            final DeltaWScorer scorer;
+            final IDomainBasedEncodedNetwork network;
+            final Combination[] combinations;
+            final KmerSeedIndex seeds; // null if no combination is skipped.
+            //Map<Integer,AtomicInteger> lengthCounts = new HashMap<>();
+            
+            NRequest(IDomainBasedEncodedNetwork network, KmerSeedIndex seeds, DeltaWScorer scorer, Combination[] combinations, int firstIndex, int lastIndex, long minWork){
+                super(firstIndex, lastIndex, minWork);
+                this.network = network;
+                this.combinations = combinations;
+                this.seeds = seeds;
+                this.scorer = scorer;
+            }
+            
+            @Override
+            ComboTask<BigInteger> getSubtask(int firstIndex, int lastIndex){
+                return new NRequest(network, seeds, scorer, combinations, firstIndex, lastIndex, minWork);
+            }
+            
+            @Override
+            BigInteger add(BigInteger first, BigInteger second){
+                return first.add(second);
+            }
+            
+            @Override
+            ScoringMetrics getMetrics(){
+                return scorer.metrics;
+            }
+            
+            @Override
+            long getWork(int index){
+                return combinations[index].work;
             }
         
-            public void run(){
-                int[] lengthCounts = new int[scorer.maxLength+1];
+            @Override
+            BigInteger computeRange(){
+                int[] lengthCounts = scorer.knownLengthCounts.get();
                 int[][] encodedOligomers = network.getOligomerSequencesEncoded();
+                long[][] windows = scorer.usePackedKernel ? new long[encodedOligomers.length][] : null;
+                long[][] complementWindows = scorer.usePackedKernel ? new long[encodedOligomers.length][] : null;
 
-                int indexS1;
-                int indexS2;
-                int structureLength;
-                BasePair[][] allBP = new BasePair[0][];
-                Combination currentCombo;
+                // for each oligomer combination
+                for (int i = firstIndex; i < lastIndex; i++){
+                    countCombination(scorer, combinations[i], seeds, encodedOligomers, windows, complementWindows, lengthCounts);
+                }
 
+                return scorer.getInterScore(lengthCounts);
+            }
+        }
+        
+        // calculates N of each combination on its own.
+        @SuppressWarnings("serial")
+        static private class ComboNRequest extends ComboTask<BigInteger>{
+            final DeltaWScorer scorer;
+            final int[][] encodedOligomers;
+            final Combination[] combinations;
+            final BigInteger[] comboN; // shared by all subtasks. each fills the elements of its own combinations.
+            
+            ComboNRequest(int[][] encodedOligomers, BigInteger[] comboN, DeltaWScorer scorer, Combination[] combinations, int firstIndex, int lastIndex, long minWork){
+                super(firstIndex, lastIndex, minWork);
+                this.encodedOligomers = encodedOligomers;
+                this.comboN = comboN;
+                this.combinations = combinations;
+                this.scorer = scorer;
+            }
+            
+            @Override
+            ComboTask<BigInteger> getSubtask(int firstIndex, int lastIndex){
+                return new ComboNRequest(encodedOligomers, comboN, scorer, combinations, firstIndex, lastIndex, minWork);
+            }
+            
+            @Override
+            BigInteger add(BigInteger first, BigInteger second){
+                return first;
+            }
+            
+            @Override
+            ScoringMetrics getMetrics(){
+                return scorer.metrics;
+            }
+            
+            @Override
+            long getWork(int index){
+                return combinations[index].work;
+            }
+            
+            @Override
+            BigInteger computeRange(){
+                int[] lengthCounts = scorer.knownLengthCounts.get();
+                long[][] windows = scorer.usePackedKernel ? new long[encodedOligomers.length][] : null;
+                long[][] complementWindows = scorer.usePackedKernel ? new long[encodedOligomers.length][] : null;
+                for (int i = firstIndex; i < lastIndex; i++){
+                    countCombination(scorer, combinations[i], null, encodedOligomers, windows, complementWindows, lengthCounts);
+                    comboN[i] = scorer.getInterScore(lengthCounts);
+                }
+                return BigInteger.ZERO;
+            }
+        }
+        
+        // counts the inter-oligomer duplexes of the combination. windows hold the packed oligomers built so far by the calling task, or are null if the packed kernel is not used.
+        private static void countCombination(DeltaWScorer scorer, Combination currentCombo, KmerSeedIndex seeds, int[][] encodedOligomers, long[][] windows, long[][] complementWindows, int[] lengthCounts){
+            int indexS1 = currentCombo.indexO1;
+            int indexS2 = currentCombo.indexO2;
+            // oligomers which share no seed cannot form a duplex of interSLC base-pairs.
+            if (seeds != null && !seeds.mayShareSeed(indexS1, indexS2)) return;
+            Alignments alignments = currentCombo.alignments;
+            int[] lengths = alignments.lengths;
+            int[] firstIndexes1 = alignments.firstIndexes1;
+            int[] firstIndexes2 = alignments.firstIndexes2;
+            
+            if (scorer.usePackedKernel){
+                long[] w1 = windows[indexS1];
+                if (w1 == null){
+                    w1 = PackedDuplexKernel.getWindows(encodedOligomers[indexS1]);
+                    if (w1 == null) w1 = PackedDuplexKernel.UNPACKABLE;
+                    windows[indexS1] = w1;
+                }
+                long[] cw2 = complementWindows[indexS2];
+                if (cw2 == null){
+                    cw2 = PackedDuplexKernel.getComplementWindows(encodedOligomers[indexS2]);
+                    if (cw2 == null) cw2 = PackedDuplexKernel.UNPACKABLE;
+                    complementWindows[indexS2] = cw2;
+                }
+                // bases which do not fit in a byte fall back to the scalar path.
+                if (w1 != PackedDuplexKernel.UNPACKABLE && cw2 != PackedDuplexKernel.UNPACKABLE){
+                    int S2length = encodedOligomers[indexS2].length;
+                    for (int s = 0; s < lengths.length; s++){
+                        PackedDuplexKernel.countStretch(w1, cw2, firstIndexes1[s], S2length-1-firstIndexes2[s], lengths[s], scorer.interSLC, lengthCounts);
+                    }
+                    return;
+                }
+            }
+            
+            int[] S1Bases = encodedOligomers[indexS1];
+            int[] S2Bases = encodedOligomers[indexS2];
+            // for each stretch of base pairs.
+            for (int s = 0; s < lengths.length; s++){
+                int structureLength=0;
+                int b2 = firstIndexes2[s];
+                int lastB1 = firstIndexes1[s] + lengths[s];
+                // for each base-pair in the stretch.
+                for(int b1 = firstIndexes1[s]; b1 < lastB1; b1++, b2--){
+                    if(S1Bases[b1]+S2Bases[b2] == 0){
+                        structureLength++;
+                    } else {
+                        if (structureLength >= scorer.interSLC){
+                            lengthCounts[structureLength]++;
+                        }
+                        structureLength = 0;
+                    }
+                }
+                if (structureLength >= scorer.interSLC){
+                    lengthCounts[structureLength]++;
+                }
+            }
+        }
+        
+        // sums the points of the inter-oligomer duplexes of each combination
+        // which contain, or end next to, each base of a variable domain. every
+        // duplex removed by updating a set of domain bases is counted by at
+        // least one of them.
+        @SuppressWarnings("serial")
+        static private class CoverageRequest extends ComboTask<long[][]>{
+            final DeltaWScorer scorer;
+            final IDomainBasedEncodedNetwork network;
+            final Combination[] combinations;
+            final KmerSeedIndex seeds; // null if no combination is skipped.
+            final int[][] domainBaseIndices; // index of the domain base at each base of each oligomer, or -1.
+            final long[][] coverage; // shared by all subtasks. each refills the elements of its own combinations.
+            
+            CoverageRequest(IDomainBasedEncodedNetwork network, KmerSeedIndex seeds, int[][] domainBaseIndices, long[][] coverage, DeltaWScorer scorer, Combination[] combinations, int firstIndex, int lastIndex, long minWork){
+                super(firstIndex, lastIndex, minWork);
+                this.coverage = coverage;
+                this.network = network;
+                this.combinations = combinations;
+                this.seeds = seeds;
+                this.domainBaseIndices = domainBaseIndices;
+                this.scorer = scorer;
+            }
+            
+            @Override
+            ComboTask<long[][]> getSubtask(int firstIndex, int lastIndex){
+                return new CoverageRequest(network, seeds, domainBaseIndices, coverage, scorer, combinations, firstIndex, lastIndex, minWork);
+            }
+            
+            @Override
+            long[][] add(long[][] first, long[][] second){
+                return first;
+            }
+            
+            @Override
+            ScoringMetrics getMetrics(){
+                return scorer.metrics;
+            }
+            
+            @Override
+            long getWork(int index){
+                return combinations[index].work;
+            }
+            
+            @Override
+            long[][] computeRange(){
+                int[][] encodedOligomers = network.getOligomerSequencesEncoded();
+                
                 // for each oligomer combination
-                for( int k : scorer.knownRanges.computeIfAbsent(lastIndex-firstIndex,x->IntStream.range(0,x).toArray())){
-                    int i = k+firstIndex;
-                    currentCombo = combinations[i];
-                    indexS1 = currentCombo.indexO1;
-                    indexS2 = currentCombo.indexO2;
-                    allBP = currentCombo.allBP;
+                for (int i = firstIndex; i < lastIndex; i++){
+                    long[] comboCoverage = coverage[i];
+                    Arrays.fill(comboCoverage, 0);
+                    int indexS1 = combinations[i].indexO1;
+                    int indexS2 = combinations[i].indexO2;
+                    if (seeds != null && !seeds.mayShareSeed(indexS1, indexS2)) continue;
+                    int[] S1Bases = encodedOligomers[indexS1];
+                    int[] S2Bases = encodedOligomers[indexS2];
+                    Alignments alignments = combinations[i].alignments;
                     
                     // for each stretch of base pairs.
-                    for (BasePair[] bps : allBP){
-                        structureLength=0;
+                    for (int s = 0; s < alignments.lengths.length; s++){
+                        int structureLength = 0;
+                        int b2 = alignments.firstIndexes2[s];
+                        int lastB1 = alignments.firstIndexes1[s] + alignments.lengths[s];
+                        int b1;
                         // for each base-pair in the stretch.
-                        for(BasePair bp : bps){
-                            if(encodedOligomers[indexS1][bp.index1]+encodedOligomers[indexS2][bp.index2] == 0){
+                        for (b1 = alignments.firstIndexes1[s]; b1 < lastB1; b1++, b2--){
+                            if (S1Bases[b1]+S2Bases[b2] == 0){
                                 structureLength++;
                             } else {
                                 if (structureLength >= scorer.interSLC){
-                                    lengthCounts[structureLength]++;
+                                    addCoverage(comboCoverage, indexS1, b1-structureLength, b1-1, indexS2, b2+1, b2+structureLength, scorer.interRunPoints[structureLength]);
                                 }
                                 structureLength = 0;
                             }
                         }
                         if (structureLength >= scorer.interSLC){
-                            lengthCounts[structureLength]++;
+                            addCoverage(comboCoverage, indexS1, b1-structureLength, b1-1, indexS2, b2+1, b2+structureLength, scorer.interRunPoints[structureLength]);
                         }
                     }
                 }
+                return coverage;
+            }
+            
+            // adds the points of a duplex to the domain bases it contains or ends next to on either oligomer.
+            private void addCoverage(long[] coverage, int indexO1, int firstB1, int lastB1, int indexO2, int firstB2, int lastB2, long points){
+                addCoverage(coverage, domainBaseIndices[indexO1], firstB1-1, lastB1+1, points);
+                addCoverage(coverage, domainBaseIndices[indexO2], firstB2-1, lastB2+1, points);
+            }
+            
+            private static void addCoverage(long[] coverage, int[] domainBases, int firstBase, int lastBase, long points){
+                if (domainBases == null) return;
+                for (int b = Math.max(0, firstBase); b <= Math.min(domainBases.length-1, lastBase); b++){
+                    int i = domainBases[b];
+                    if (i >= 0){
+                        coverage[i] = (coverage[i] > Long.MAX_VALUE-points) ? Long.MAX_VALUE : coverage[i]+points;
+                    }
+                }
+            }
+        }
+        
+        // the coverage of one variable domain by the duplexes of one network, kept by one thread.
+        // the points are refilled in place when daughters of another network are bounded.
+        static private class CoverageBuffer{
+            long[][] points = new long[0][]; // points of the duplexes covering each domain base in each combination.
+            InnerNetwork network; // network whose duplexes are counted in points. null while points are not filled.
+            boolean isUsed; // true while daughters are bounded by points.
+        }
+        
+        // decides when daughters of a DeltaNRequest are proven less fit than the bound network.
+        // after a subtask has processed some combinations, a daughter's W is at least
+        // previousW + swx*deltaO + (the change in points of the processed combinations) - (the lost points of the others),
+        // where the lost points of a combination are the coverage of the daughter's updated bases.
+        static private class Bounds{
+            final long[][] coverage; // points of the duplexes covering each domain base in each combination.
+            final int[][] updatedDomainBases; // updated domain base indices of each daughter.
+            final long[] budgets; // a daughter is rejected once the processed changes plus lost points of a subtask exceed its budget.
+            final AtomicIntegerArray rejected; // shared by all subtasks. 1 once a daughter is rejected.
+            
+            Bounds(long[][] coverage, int[][] updatedDomainBases, BigInteger headroom, BigInteger[] deltaO, int swx){
+                this.coverage = coverage;
+                this.updatedDomainBases = updatedDomainBases;
+                this.budgets = new long[updatedDomainBases.length];
+                this.rejected = new AtomicIntegerArray(updatedDomainBases.length);
+                for (int d = 0; d < budgets.length; d++){
+                    long totalLostPoints = 0;
+                    for (int i = 0; i < coverage.length; i++){
+                        totalLostPoints = WindowedDuplexCounter.add(totalLostPoints, getLostPoints(i, d));
+                    }
+                    if (totalLostPoints == Long.MAX_VALUE){
+                        budgets[d] = Long.MAX_VALUE;
+                        continue;
+                    }
+                    // budget = boundW - previousW - swx*deltaO + totalLostPoints
+                    // calculated with longs where they suffice, since a budget is set for every bounded daughter.
+                    if (headroom.bitLength() < Long.SIZE && deltaO[d].bitLength() < Long.SIZE){
+                        try{
+                            budgets[d] = Math.addExact(Math.subtractExact(headroom.longValue(), Math.multiplyExact(deltaO[d].longValue(), (long)swx)), totalLostPoints);
+                            if (budgets[d] < 0) rejected.set(d, 1);
+                            continue;
+                        } catch (ArithmeticException e){
+                            // the budget exceeds a long and is calculated below.
+                        }
+                    }
+                    BigInteger budget = headroom.subtract(deltaO[d].multiply(BigInteger.valueOf(swx))).add(BigInteger.valueOf(totalLostPoints));
+                    if (budget.bitLength() >= Long.SIZE){
+                        budgets[d] = Long.MAX_VALUE;
+                    } else {
+                        budgets[d] = budget.longValue();
+                        if (budgets[d] < 0) rejected.set(d, 1);
+                    }
+                }
+            }
+            
+            // true once any subtask has rejected the daughter.
+            boolean isRejected(int daughter){
+                return rejected.get(daughter) != 0;
+            }
+            
+            // returns the points of the duplexes of the given combination which may be removed by the updated bases of the given daughter.
+            long getLostPoints(int combinationIndex, int daughter){
+                long[] comboCoverage = coverage[combinationIndex];
+                long lostPoints = 0;
+                for (int i : updatedDomainBases[daughter]){
+                    lostPoints = WindowedDuplexCounter.add(lostPoints, comboCoverage[i]);
+                }
+                return lostPoints;
+            }
+        }
+        
+        // calculates the change in N of each daughter of one previous network.
+        @SuppressWarnings("serial")
+        static private class DeltaNRequest extends ComboTask<BigInteger[]>{
+            final DeltaWScorer scorer;
+            final IDomainBasedEncodedNetwork previousNetwork;
+            final IDomainBasedEncodedNetwork[] newNetworks;
+            final Combination[] combinations;
+            final int[][][] updatedBases; // updated base indices on each oligomer of each daughter.
+            final KmerSeedIndex oldSeeds; // null if no combination is skipped.
+            final KmerSeedIndex[] newSeeds;
+            final Bounds bounds; // null if daughters are not bounded.
+
+            DeltaNRequest(IDomainBasedEncodedNetwork previousNetwork, IDomainBasedEncodedNetwork[] newNetworks, int[][][] updatedBases, KmerSeedIndex oldSeeds, KmerSeedIndex[] newSeeds, Bounds bounds, DeltaWScorer scorer, Combination[] combinations, int firstIndex, int lastIndex, long minWork){
+                super(firstIndex, lastIndex, minWork);
+                this.bounds = bounds;
+                this.combinations = combinations;
+                this.previousNetwork = previousNetwork;
+                this.newNetworks = newNetworks;
+                this.updatedBases = updatedBases;
+                this.oldSeeds = oldSeeds;
+                this.newSeeds = newSeeds;
+                this.scorer = scorer;
+            }
+
+            @Override
+            ComboTask<BigInteger[]> getSubtask(int firstIndex, int lastIndex){
+                return new DeltaNRequest(previousNetwork, newNetworks, updatedBases, oldSeeds, newSeeds, bounds, scorer, combinations, firstIndex, lastIndex, minWork);
+            }
+            
+            @Override
+            BigInteger[] add(BigInteger[] first, BigInteger[] second){
+                for (int d = 0; d < first.length; d++){
+                    first[d] = first[d].add(second[d]);
+                }
+                return first;
+            }
+            
+            @Override
+            ScoringMetrics getMetrics(){
+                return scorer.metrics;
+            }
+            
+            // each updated base is paired with every base of the other oligomer once.
+            @Override
+            long getWork(int index){
+                int indexO1 = combinations[index].indexO1;
+                int indexO2 = combinations[index].indexO2;
+                int[][] oligomers = previousNetwork.getOligomerSequencesEncoded();
+                long work = 0;
+                for (int[][] daughterBases : updatedBases){
+                    work += (long)daughterBases[indexO1].length*oligomers[indexO2].length + (long)daughterBases[indexO2].length*oligomers[indexO1].length;
+                }
+                return work;
+            }
+
+            @Override
+            BigInteger[] computeRange(){
+                int daughters = newNetworks.length;
+                int[][] lengthCounts = scorer.getDaughterLengthCounts(daughters);
+                int[][] oldOligomers = previousNetwork.getOligomerSequencesEncoded();
+                boolean isBounded = (bounds != null);
+                long[] runPoints = isBounded ? scorer.interRunPoints : null;
+                long[] processedPoints = isBounded ? new long[daughters] : null; // change in points plus lost points of the processed combinations.
 
-                BigInteger retScore = BigInteger.valueOf(0);
-                for(int i : scorer.knownRanges.computeIfAbsent(lengthCounts.length,x->IntStream.range(0,x).toArray())){
-                    int length = i;
-                    int counts = lengthCounts[i];
-                    if (counts >0){
-                        BigInteger lengthScore = scorer.knownInterScores.computeIfAbsent(length, (x)->calculateUniqueDuplexPoints(x, scorer.interSLC, scorer.interSB));
-                        retScore = retScore.add(lengthScore.multiply(BigInteger.valueOf(counts)));
+                // for each oligomer combination
+                for (int i = firstIndex; i < lastIndex; i++){
+                    int indexS1 = combinations[i].indexO1;
+                    int indexS2 = combinations[i].indexO2;
+                    boolean oldMayPair = (oldSeeds == null) || oldSeeds.mayShareSeed(indexS1, indexS2);
+                    // for each daughter
+                    for (int d = 0; d < daughters; d++){
+                        if (isBounded && bounds.isRejected(d)) continue;
+                        // the count only changes if the old or new oligomers can form a duplex of interSLC base-pairs.
+                        if (!oldMayPair && !newSeeds[d].mayShareSeed(indexS1, indexS2)) continue;
+                        int[][] newOligomers = newNetworks[d].getOligomerSequencesEncoded();
+                        long points = WindowedDuplexCounter.countInterDelta(oldOligomers[indexS1], newOligomers[indexS1], updatedBases[d][indexS1], oldOligomers[indexS2], newOligomers[indexS2], updatedBases[d][indexS2], scorer.interSLC, lengthCounts[d], runPoints);
+                        if (isBounded && bounds.budgets[d] < Long.MAX_VALUE){
+                            processedPoints[d] = WindowedDuplexCounter.add(processedPoints[d], WindowedDuplexCounter.add(points, bounds.getLostPoints(i, d)));
+                            if (processedPoints[d] > bounds.budgets[d]) bounds.rejected.set(d, 1);
+                        }
                     }
                 }
-                this.result = retScore.toString();
-                this.isDone.set(true);
+
+                BigInteger[] ret = new BigInteger[daughters];
+                for (int d = 0; d < daughters; d++){
+                    ret[d] = scorer.getInterScore(lengthCounts[d]);
+                }
+                return ret;
             }
         }
-    }
-    static private class BasePair{
-        final int index1;
-        final int index2;
-        BasePair(int index1, int index2){
-            this.index1 = index1;
-            this.index2 = index2;
+        
+        // calculates N of up to eight networks with the same oligomer lengths in each traversal of a combination's alignments.
+        @SuppressWarnings("serial")
+        static private class LockstepNRequest extends ComboTask<BigInteger[]>{
+            final DeltaWScorer scorer;
+            final long[][][] laneBases; // lane bases of each oligomer, for each group of eight networks.
+            final long[][][] complementLaneBases;
+            final int lanes;
+            final Combination[] combinations;
+            final KmerSeedIndex[] seeds; // seed index of each network. elements are null if no combination is skipped.
+            
+            LockstepNRequest(long[][][] laneBases, long[][][] complementLaneBases, int lanes, KmerSeedIndex[] seeds, DeltaWScorer scorer, Combination[] combinations, int firstIndex, int lastIndex, long minWork){
+                super(firstIndex, lastIndex, minWork);
+                this.laneBases = laneBases;
+                this.complementLaneBases = complementLaneBases;
+                this.lanes = lanes;
+                this.seeds = seeds;
+                this.combinations = combinations;
+                this.scorer = scorer;
+            }
+            
+            @Override
+            ComboTask<BigInteger[]> getSubtask(int firstIndex, int lastIndex){
+                return new LockstepNRequest(laneBases, complementLaneBases, lanes, seeds, scorer, combinations, firstIndex, lastIndex, minWork);
+            }
+            
+            @Override
+            BigInteger[] add(BigInteger[] first, BigInteger[] second){
+                for (int l = 0; l < first.length; l++){
+                    first[l] = first[l].add(second[l]);
+                }
+                return first;
+            }
+            
+            @Override
+            ScoringMetrics getMetrics(){
+                return scorer.metrics;
+            }
+            
+            @Override
+            long getWork(int index){
+                return combinations[index].work*lanes;
+            }
+            
+            // returns true if the oligomers of the combination may form a duplex of interSLC base-pairs in any network.
+            private boolean mayShareSeed(int indexS1, int indexS2){
+                for (KmerSeedIndex laneSeeds : seeds){
+                    if (laneSeeds == null || laneSeeds.mayShareSeed(indexS1, indexS2)) return true;
+                }
+                return false;
+            }
+            
+            @Override
+            BigInteger[] computeRange(){
+                int[][] lengthCounts = scorer.getDaughterLengthCounts(lanes);
+                int[] runStarts = new int[PackedDuplexKernel.LANES];
+                
+                // for each oligomer combination
+                for (int i = firstIndex; i < lastIndex; i++){
+                    int indexS1 = combinations[i].indexO1;
+                    int indexS2 = combinations[i].indexO2;
+                    if (!mayShareSeed(indexS1, indexS2)) continue;
+                    Alignments alignments = combinations[i].alignments;
+                    // for each group of networks
+                    for (int g = 0; g < laneBases.length; g++){
+                        int firstLane = g*PackedDuplexKernel.LANES;
+                        int groupLanes = Math.min(PackedDuplexKernel.LANES, lanes-firstLane);
+                        long[] laneBases1 = laneBases[g][indexS1];
+                        long[] complementLaneBases2 = complementLaneBases[g][indexS2];
+                        // for each stretch of base pairs.
+                        for (int s = 0; s < alignments.lengths.length; s++){
+                            PackedDuplexKernel.countLaneStretch(laneBases1, complementLaneBases2, alignments.firstIndexes1[s], alignments.firstIndexes2[s], alignments.lengths[s], groupLanes, scorer.interSLC, lengthCounts, firstLane, runStarts);
+                        }
+                    }
+                }
+                
+                BigInteger[] ret = new BigInteger[lanes];
+                for (int l = 0; l < lanes; l++){
+                    ret[l] = scorer.getInterScore(lengthCounts[l]);
+                }
+                return ret;
+            }
         }
     }
     
-    // returns an n x m array of base pairs.
-    // each n represents a longest possible duplex, aka base-alignment.
-    // each m represents a pase pair in the alignment.
-    static private BasePair[][] getKnownBasePairs(DeltaWScorer scorer, int oligomer1Length, int oligomer2Length){
-        Map<Integer,BasePair[][]> firstMap = scorer.knownBasePairs.computeIfAbsent(oligomer1Length,x->new ConcurrentHashMap<Integer,BasePair[][]>());
-        BasePair[][] bps = firstMap.computeIfAbsent(oligomer2Length,x->calculateBasePairs(scorer,oligomer1Length,oligomer2Length));
-        return bps;
+    // stores the longest possible duplexes, aka base-alignments, between two oligomers.
+    // the k'th base-pair of the s'th alignment pairs base firstIndexes1[s]+k
+    // on oligomer 1 with base firstIndexes2[s]-k on oligomer 2.
+    static private class Alignments{
+        final int[] lengths;
+        final int[] firstIndexes1;
+        final int[] firstIndexes2;
+        Alignments(int[] lengths, int[] firstIndexes1, int[] firstIndexes2){
+            this.lengths = lengths;
+            this.firstIndexes1 = firstIndexes1;
+            this.firstIndexes2 = firstIndexes2;
+        }
     }
     
-    // returns an n x m array of base pairs.
-    // each n represents a longest possible duplex, aka base-alignment.
-    // each m represents a pase pair in the alignment.
+    // returns the alignments between oligomers of the given lengths.
     // oligomer1Length must be larger than or equal to oligomer2Length
-    static private BasePair[][] calculateBasePairs(DeltaWScorer scorer, int oligomer1Length, int oligomer2Length){
-        int S1length;
-        int b1Max;
-        int S2length;
-        int b2Max;
-        int b1;
-        int b2;
-        ArrayList<BasePair[]> duplexList = new ArrayList<>();
-        ArrayList<BasePair> bpList = new ArrayList<>();
-
-        // for each oligomer combination
-        S1length = oligomer1Length;		
-        b1Max = S1length-1;
-        S2length = oligomer2Length;
-        b2Max = S2length-1;
-        //for each oligomer alignment
-        for (int j : scorer.knownRanges.computeIfAbsent(S2length,x->IntStream.range(0,x).toArray())){
-            b1 = 0; // index of base on the top strand;
-            b2 = (b2Max + j) % (S2length);// index of base on the bottom strand;
-
-            do{
-                // add a base pair to the array.
-                bpList.add(new BasePair(b1,b2));
-
-                //advance to the next base
-                b1++;
-                if(b2 == 0){
-                    BasePair[] copiedArray = Arrays.copyOf(bpList.toArray(x->new BasePair[x]),bpList.size());
-                    duplexList.add(copiedArray);
-                    bpList.clear();
-                    b2 = b2Max;
-                } else {b2--;}
-            } while (b1 <= b1Max);
-            
-            // if the loop ended with a duplex.
-            if(bpList.size() > 0){
-                BasePair[] copiedArray = Arrays.copyOf(bpList.toArray(x->new BasePair[x]),bpList.size());
-                duplexList.add(copiedArray);
-                bpList.clear();
+    static private Alignments getKnownAlignments(DeltaWScorer scorer, int oligomer1Length, int oligomer2Length){
+        Long key = ((long)oligomer1Length << 32) | oligomer2Length;
+        return scorer.knownAlignments.computeIfAbsent(key,x->{
+            int[][] alignments = scorer.calculateInterAlignments(oligomer1Length,oligomer2Length);
+            return new Alignments(alignments[0],alignments[1],alignments[2]);
+        });
+    }
+    
+    // returns an array where the i'th element holds the index of the domain base at each base of the i'th oligomer, or -1.
+    // oligomers which hold neither the domain nor its complement are null.
+    private int[][] getDomainBaseIndices(IDomainBasedEncodedNetwork network, int updatedVariableDomain){
+        return knownDomainBaseIndices.computeIfAbsent(updatedVariableDomain, x->{
+            int[][] encodedOligomers = network.getOligomerSequencesEncoded();
+            int domainLength = network.getVariableDomainSequencesEncoded()[x].length;
+            int[][] ret = new int[encodedOligomers.length][];
+            for (int i : network.getVariableDomainToOligomerIndices().get(x)){
+                ret[i] = new int[encodedOligomers[i].length];
+                Arrays.fill(ret[i], -1);
             }
-        }
-        
-        BasePair[][] ret = duplexList.toArray(x->new BasePair[x][]);
-        return ret;
+            for (Map.Entry<Integer,int[]> entry : network.getVariableDomainToOligomerCoordinates().get(x).entrySet()){
+                for (int start : entry.getValue()){
+                    for (int k = 0; k < domainLength; k++){
+                        ret[entry.getKey()][start+k] = k;
+                    }
+                }
+            }
+            // the complement is placed in reverse order.
+            for (Map.Entry<Integer,int[]> entry : network.getVariableDomainComplementToOligomerCoordinates().get(x).entrySet()){
+                for (int start : entry.getValue()){
+                    for (int k = 0; k < domainLength; k++){
+                        ret[entry.getKey()][start+domainLength-1-k] = k;
+                    }
+                }
+            }
+            return ret;
+        });
     }
     
     private Combination[] getCombos(IDomainBasedEncodedNetwork network, int updatedVariableDomain){
@@ -1130,21 +2459,80 @@ public class DeltaWScorer implements IScorer{
                 indexO1 = aoc[1][i];
                 indexO2 = aoc[0][i];
             }
-            BasePair[][] allBP = scorer.getKnownBasePairs(scorer, encodedOligomers[indexO1].length, encodedOligomers[indexO2].length);
-            ret[i] = new Combination(indexO1, indexO2, allBP);
+            Alignments alignments = getKnownAlignments(scorer, encodedOligomers[indexO1].length, encodedOligomers[indexO2].length);
+            ret[i] = new Combination(indexO1, indexO2, alignments);
         }
         
+        // the longest combinations come first, since they are the most likely to form the long duplexes which reject a bounded daughter.
+        Arrays.sort(ret, (c1,c2) -> Long.compare(c2.work, c1.work));
         return ret;
     }
     
+    // stores ranges of the self-alignments, aka reference positions, of oligomers.
+    // the r'th range holds reference positions firstPositions[r] to
+    // lastPositions[r]-1 of oligomer oligomerIndices[r].
+    static private class SelfAlignments{
+        final int[] oligomerIndices;
+        final int[] firstPositions;
+        final int[] lastPositions;
+        final long[] work; // number of base-pairs in each range.
+        SelfAlignments(int[] oligomerIndices, int[] firstPositions, int[] lastPositions, long[] work){
+            this.oligomerIndices = oligomerIndices;
+            this.firstPositions = firstPositions;
+            this.lastPositions = lastPositions;
+            this.work = work;
+        }
+    }
+    
+    private SelfAlignments getSelfAlignments(IDomainBasedEncodedNetwork network, int updatedVariableDomain){
+        return knownSelfAlignments.computeIfAbsent(updatedVariableDomain, x->calculateSelfAlignments(network.getOligomerSequencesEncoded(), network.getVariableDomainToOligomerIndices().get(x)));
+    }
+    
+    // long oligomers are split into ranges of about MIN_TASK_WORK base-pairs, so that their self-alignments may be scored by several threads.
+    private static SelfAlignments calculateSelfAlignments(int[][] encodedOligomers, Collection<Integer> oligomerIndices){
+        int ranges = 0;
+        for (int i : oligomerIndices){
+            int length = encodedOligomers[i].length;
+            int positionsPerRange = getPositionsPerRange(length);
+            ranges += (length+positionsPerRange-1)/positionsPerRange;
+        }
+        
+        int[] rangeOligomers = new int[ranges];
+        int[] firstPositions = new int[ranges];
+        int[] lastPositions = new int[ranges];
+        long[] work = new long[ranges];
+        int r = 0;
+        for (int i : oligomerIndices){
+            int length = encodedOligomers[i].length;
+            int positionsPerRange = getPositionsPerRange(length);
+            for (int j = 0; j < length; j += positionsPerRange){
+                rangeOligomers[r] = i;
+                firstPositions[r] = j;
+                lastPositions[r] = Math.min(length, j+positionsPerRange);
+                work[r] = (long)(lastPositions[r]-j)*Math.max(1, length/2);
+                r++;
+            }
+        }
+        return new SelfAlignments(rangeOligomers, firstPositions, lastPositions, work);
+    }
+    
+    // each self-alignment of an oligomer holds about half as many base-pairs as the oligomer has bases.
+    private static int getPositionsPerRange(int oligomerLength){
+        return (int)Math.max(1, ScoringSupervisor.MIN_TASK_WORK/Math.max(1, oligomerLength/2));
+    }
+    
     private static class Combination{
         int indexO1;
         int indexO2;
-        BasePair[][] allBP;
-        Combination(int indexO1, int indexO2, BasePair[][] allBP){
+        Alignments alignments;
+        long work; // number of base-pairs in all alignments.
+        Combination(int indexO1, int indexO2, Alignments alignments){
             this.indexO1 = indexO1;
             this.indexO2 = indexO2;
-            this.allBP = allBP;
+            this.alignments = alignments;
+            for (int length : alignments.lengths){
+                this.work += length;
+            }
         }
     }
 }
@@ -22,8 +22,10 @@
 
 package edu.boisestate.osp.scorers;
 
+import edu.boisestate.osp.ScoringMetrics;
 import edu.boisestate.osp.networks.IDomainBasedEncodedNetwork;
 import edu.boisestate.osp.networks.IDomainBasedEncodedScoredNetwork;
+import java.math.BigInteger;
 
 /**
  *
@@ -63,6 +65,67 @@ public interface IScorer {
      * @return
      */
     IDomainBasedEncodedScoredNetwork getScored(IDomainBasedEncodedScoredNetwork previousNetwork, IDomainBasedEncodedNetwork newNetwork, int updatedDomainIndex);
+
+    /**
+     * Returns a scored version of the given network.
+     * @param previousNetwork The prior network
+     * @param newNetwork The new network which has had bases of one variable domain updated.
+     * @param updatedDomainIndex The domain index of the variable domain which was updated.
+     * @param updatedBaseIndices The indices of the bases within the variable domain which were updated.
+     * @return
+     */
+    IDomainBasedEncodedScoredNetwork getScored(IDomainBasedEncodedScoredNetwork previousNetwork, IDomainBasedEncodedNetwork newNetwork, int updatedDomainIndex, int[] updatedBaseIndices);
+    
+    /**
+     * Returns scored versions of the given networks, which are all daughters
+     * of the same previous network. The i'th element of the returned array is
+     * the scored version of the i'th new network.
+     * @param previousNetwork The prior network
+     * @param newNetworks The new networks, each of which has had one variable domain updated.
+     * @param updatedDomainIndices The i'th element is the domain index of the variable domain which was updated in the i'th new network.
+     * @return
+     */
+    IDomainBasedEncodedScoredNetwork[] getScored(IDomainBasedEncodedScoredNetwork previousNetwork, IDomainBasedEncodedNetwork[] newNetworks, int[] updatedDomainIndices);
+    
+    /**
+     * Returns scored versions of the given networks, which are all daughters
+     * of the same previous network. Networks which are less fit than the
+     * bound network may be returned as null instead, without being fully
+     * scored.
+     * @param previousNetwork The prior network
+     * @param newNetworks The new networks, each of which has had one variable domain updated.
+     * @param updatedDomainIndices The i'th element is the domain index of the variable domain which was updated in the i'th new network.
+     * @param boundNetwork Network to compare the new networks against.
+     * @return
+     */
+    IDomainBasedEncodedScoredNetwork[] getScored(IDomainBasedEncodedScoredNetwork previousNetwork, IDomainBasedEncodedNetwork[] newNetworks, int[] updatedDomainIndices, IDomainBasedEncodedScoredNetwork boundNetwork);
+    
+    /**
+     * Returns scored versions of the given networks, which are all daughters
+     * of the same previous network. Networks whose score is greater than the
+     * bound score may be returned as null instead, without being fully
+     * scored.
+     * @param previousNetwork The prior network
+     * @param newNetworks The new networks, each of which has had one variable domain updated.
+     * @param updatedDomainIndices The i'th element is the domain index of the variable domain which was updated in the i'th new network.
+     * @param boundScore Greatest score of a new network which is returned. null if every new network is returned.
+     * @return
+     */
+    IDomainBasedEncodedScoredNetwork[] getScored(IDomainBasedEncodedScoredNetwork previousNetwork, IDomainBasedEncodedNetwork[] newNetworks, int[] updatedDomainIndices, BigInteger boundScore);
+    
+    /**
+     * Returns the contribution of each oligomer, and of each pair of
+     * oligomers, to the score of the given network.
+     * @param network
+     * @return
+     */
+    ScoreDecomposition getDecomposition(IDomainBasedEncodedScoredNetwork network);
+    
+    /**
+     * Returns the counts and timings of the scoring done by this scorer.
+     * @return
+     */
+    ScoringMetrics getMetrics();
     
     /**
      * Returns a human-readable string for labeling this score. 
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2019 Boise State University
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package edu.boisestate.osp.scorers;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Records which k-mers, or seeds, occur on each oligomer and on its reverse
+ * complement.
+ *
+ * An inter-oligomer duplex of at least seedLength base-pairs pairs a seed of
+ * oligomer 1 with a seed of the reverse complement of oligomer 2. Two
+ * oligomers which share no such seed cannot form the duplex and need not be
+ * scanned. The seeds of each oligomer are kept as a sorted array of keys, so
+ * that two oligomers are compared in a single merge of their arrays.
+ *
+ * @author mtobi
+ */
+final class KmerSeedIndex {
+    static final int MAX_SEED_LENGTH = 8; // bases packed into the key of one seed.
+    
+    final int seedLength;
+    final long[][] seeds; // sorted keys of the seeds of each oligomer.
+    final long[][] complementSeeds; // sorted keys of the seeds of the reverse complement of each oligomer.
+    
+    /**
+     * Creates an index of the given oligomers.
+     * @param encodedOligomers
+     * @param seedLength number of bases in each seed. at most MAX_SEED_LENGTH.
+     */
+    KmerSeedIndex(int[][] encodedOligomers, int seedLength){
+        this.seedLength = seedLength;
+        this.seeds = new long[encodedOligomers.length][];
+        this.complementSeeds = new long[encodedOligomers.length][];
+        for (int i = 0; i < encodedOligomers.length; i++){
+            seeds[i] = getSeeds(encodedOligomers[i], false);
+            complementSeeds[i] = getSeeds(encodedOligomers[i], true);
+        }
+    }
+    
+    // shares the seeds of the parent, except for those of updated oligomers.
+    private KmerSeedIndex(KmerSeedIndex parent, int[][] encodedOligomers, Collection<Integer> updatedOligomers){
+        this.seedLength = parent.seedLength;
+        this.seeds = parent.seeds.clone();
+        this.complementSeeds = parent.complementSeeds.clone();
+        for (int i : updatedOligomers){
+            seeds[i] = getSeeds(encodedOligomers[i], false);
+            complementSeeds[i] = getSeeds(encodedOligomers[i], true);
+        }
+    }
+    
+    /**
+     * Returns an index of the given oligomers, where only the updated
+     * oligomers differ from the oligomers of this index.
+     * @param encodedOligomers
+     * @param updatedOligomers
+     * @return
+     */
+    KmerSeedIndex getUpdated(int[][] encodedOligomers, Collection<Integer> updatedOligomers){
+        return new KmerSeedIndex(this, encodedOligomers, updatedOligomers);
+    }
+    
+    /**
+     * Returns false if oligomer 1 and oligomer 2 cannot form a duplex of at
+     * least seedLength base-pairs.
+     * @param indexO1
+     * @param indexO2
+     * @return
+     */
+    boolean mayShareSeed(int indexO1, int indexO2){
+        long[] seeds1 = seeds[indexO1];
+        long[] complementSeeds2 = complementSeeds[indexO2];
+        int i = 0;
+        int j = 0;
+        while (i < seeds1.length && j < complementSeeds2.length){
+            if (seeds1[i] < complementSeeds2[j]){
+                i++;
+            } else if (seeds1[i] > complementSeeds2[j]){
+                j++;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // returns the sorted keys of every seed of the oligomer or of its reverse complement.
+    private long[] getSeeds(int[] encodedOligomer, boolean complement){
+        int length = encodedOligomer.length;
+        if (length < seedLength) return new long[0];
+        long[] keys = new long[length-seedLength+1];
+        long mask = (seedLength == MAX_SEED_LENGTH) ? -1L : (1L << (8*seedLength)) - 1;
+        long key = 0;
+        for (int i = 0; i < length; i++){
+            int base = complement ? -encodedOligomer[length-1-i] : encodedOligomer[i];
+            key = ((key << 8) | (base & 0xFF)) & mask;
+            if (i >= seedLength-1){
+                keys[i-seedLength+1] = key;
+            }
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2019 Boise State University
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package edu.boisestate.osp.scorers;
+
+/**
+ * Counts inter-oligomer duplexes by comparing eight bases at a time.
+ *
+ * Each base is stored as one byte lane of a long. Oligomer 1 is read in the
+ * 5' to 3' direction and oligomer 2 is read as its reverse complement, so that
+ * a stretch of base-pairs becomes a comparison of two contiguous lane ranges.
+ * Lanes which differ mark the ends of complementary runs.
+ *
+ * Up to eight networks with the same oligomer lengths may also be compared in
+ * lockstep, with the same base of each network in its own byte lane.
+ *
+ * @author mtobi
+ */
+final class PackedDuplexKernel {
+    static final int LANES = 8;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    // cached in place of the windows of an oligomer which cannot be packed, so that it is not packed again.
+    static final long[] UNPACKABLE = new long[0];
+
+    private PackedDuplexKernel(){
+    }
+
+    /**
+     * Returns an array where the i'th element packs bases i to i+7 of the
+     * given oligomer into byte lanes, lowest lane first. Returns null if a base
+     * cannot be represented by a single byte.
+     * @param encodedOligomer
+     * @return
+     */
+    static long[] getWindows(int[] encodedOligomer){
+        int length = encodedOligomer.length;
+        long[] ret = new long[length];
+        long window = 0;
+        for (int i = length-1; i >= 0; i--){
+            int base = encodedOligomer[i];
+            if (base != (byte)base) return null;
+            window = (window << 8) | (base & 0xFF);
+            ret[i] = window;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns an array where the i'th element packs bases i to i+7 of the
+     * reverse complement of the given oligomer into byte lanes, lowest lane
+     * first. Returns null if a base cannot be represented by a single byte.
+     * @param encodedOligomer
+     * @return
+     */
+    static long[] getComplementWindows(int[] encodedOligomer){
+        int length = encodedOligomer.length;
+        long[] ret = new long[length];
+        long window = 0;
+        for (int i = length-1; i >= 0; i--){
+            int base = -encodedOligomer[length-1-i];
+            if (base != (byte)base) return null;
+            window = (window << 8) | (base & 0xFF);
+            ret[i] = window;
+        }
+        return ret;
+    }
+
+    /**
+     * Records every complementary run of at least slc base-pairs in the given
+     * stretch.
+     * @param windows1 windows of oligomer 1.
+     * @param complementWindows2 complement windows of oligomer 2.
+     * @param index1 index of the first base of the stretch on oligomer 1.
+     * @param complementIndex2 index of the first base of the stretch on the reverse complement of oligomer 2.
+     * @param length number of base-pairs in the stretch.
+     * @param slc
+     * @param lengthCounts
+     */
+    static void countStretch(long[] windows1, long[] complementWindows2, int index1, int complementIndex2, int length, int slc, int[] lengthCounts){
+        int structureLength = 0;
+        int k = 0;
+        while (k < length){
+            long difference = windows1[index1+k] ^ complementWindows2[complementIndex2+k];
+            // high bit of each lane is set if the lane holds a mismatch.
+            long mismatches = (((difference & LOW_BITS) + LOW_BITS) | difference) & HIGH_BITS;
+            int lanes = Math.min(LANES, length-k);
+            if (lanes < LANES){
+                mismatches &= (1L << (lanes*8)) - 1;
+            }
+
+            if (mismatches == 0){
+                structureLength += lanes;
+            } else {
+                int nextLane = 0;
+                do{
+                    int lane = Long.numberOfTrailingZeros(mismatches) >>> 3;
+                    structureLength += lane - nextLane;
+                    if (structureLength >= slc){
+                        lengthCounts[structureLength]++;
+                    }
+                    structureLength = 0;
+                    nextLane = lane+1;
+                    mismatches &= mismatches - 1;
+                } while (mismatches != 0);
+                structureLength += lanes - nextLane;
+            }
+            k += lanes;
+        }
+        if (structureLength >= slc){
+            lengthCounts[structureLength]++;
+        }
+    }
+
+    /**
+     * Returns an array where the b'th element packs base b of the given
+     * oligomer in each of up to eight networks into byte lanes, lowest lane
+     * first. Complemented bases are packed if complement is true. Returns null
+     * if a base cannot be represented by a single byte.
+     * @param laneOligomers the same oligomer in each network.
+     * @param complement
+     * @return
+     */
+    static long[] getLaneBases(int[][] laneOligomers, boolean complement){
+        int length = laneOligomers[0].length;
+        long[] ret = new long[length];
+        for (int lane = 0; lane < laneOligomers.length; lane++){
+            int[] bases = laneOligomers[lane];
+            for (int b = 0; b < length; b++){
+                int base = complement ? -bases[b] : bases[b];
+                if (base != (byte)base) return null;
+                ret[b] |= (long)(base & 0xFF) << (lane*8);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Records every complementary run of at least slc base-pairs in the given
+     * stretch, for each of up to eight networks at once.
+     * @param laneBases1 lane bases of oligomer 1.
+     * @param complementLaneBases2 complemented lane bases of oligomer 2.
+     * @param index1 index of the first base of the stretch on oligomer 1.
+     * @param index2 index of the base on oligomer 2 paired with the first base of the stretch.
+     * @param length number of base-pairs in the stretch.
+     * @param lanes number of networks packed in the lane bases.
+     * @param slc
+     * @param lengthCounts histogram of each network.
+     * @param firstLane index in lengthCounts of the network in the lowest lane.
+     * @param runStarts scratch space for the position at which the current run of each lane started.
+     */
+    static void countLaneStretch(long[] laneBases1, long[] complementLaneBases2, int index1, int index2, int length, int lanes, int slc, int[][] lengthCounts, int firstLane, int[] runStarts){
+        long usedLanes = (lanes == LANES) ? HIGH_BITS : HIGH_BITS & ((1L << (lanes*8)) - 1);
+        long inRun = 0;
+        for (int k = 0; k < length; k++){
+            long difference = laneBases1[index1+k] ^ complementLaneBases2[index2-k];
+            // high bit of each lane is set if the lane holds a complementary base-pair.
+            long matches = ~(((difference & LOW_BITS) + LOW_BITS) | difference) & usedLanes;
+            long ended = inRun & ~matches;
+            while (ended != 0){
+                int lane = Long.numberOfTrailingZeros(ended) >>> 3;
+                int structureLength = k - runStarts[lane];
+                if (structureLength >= slc){
+                    lengthCounts[firstLane+lane][structureLength]++;
+                }
+                ended &= ended - 1;
+            }
+            long started = matches & ~inRun;
+            while (started != 0){
+                runStarts[Long.numberOfTrailingZeros(started) >>> 3] = k;
+                started &= started - 1;
+            }
+            inRun = matches;
+        }
+        while (inRun != 0){
+            int lane = Long.numberOfTrailingZeros(inRun) >>> 3;
+            int structureLength = length - runStarts[lane];
+            if (structureLength >= slc){
+                lengthCounts[firstLane+lane][structureLength]++;
+            }
+            inRun &= inRun - 1;
+        }
+    }
+}
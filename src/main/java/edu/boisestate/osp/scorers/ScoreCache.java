@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2019 Boise State University
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package edu.boisestate.osp.scorers;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the scores of recently scored networks.
+ *
+ * Networks are identified by the content of their variable domains, since the
+ * fixed domains and the oligomer structure are the same for every network of
+ * one scorer. The key of a network is the sum of a polynomial hash of each
+ * variable domain, so the key of a daughter is updated from that of its parent
+ * by replacing the hash of the one domain which changed. Two networks with the
+ * same key are also compared base by base before a score is reused.
+ *
+ * The cache holds a fixed number of scores. When it is full, the score to
+ * evict is chosen by the CLOCK algorithm: each hit marks its score as
+ * referenced, and the hand of the clock clears marks until it finds a score
+ * which has not been referenced since its last pass.
+ *
+ * @author mtobi
+ */
+final class ScoreCache {
+    private static final long BASE_MULTIPLIER = 0x9E3779B97F4A7C15L; // odd multiplier of the polynomial hash.
+    private static final long DOMAIN_MULTIPLIER = 0xC2B2AE3D27D4EB4FL; // mixes the domain index into the hash of its bases.
+    
+    private final Map<Long,Entry> entries; // map connecting a key to its score.
+    private final Entry[] slots; // positions on the clock.
+    private int hand; // next slot examined for eviction. guarded by this.
+    private int size; // number of occupied slots. guarded by this.
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    
+    /**
+     * Creates an empty cache.
+     * @param capacity maximum number of scores held. must be at least 1.
+     */
+    ScoreCache(int capacity){
+        this.entries = new ConcurrentHashMap<>(2*capacity);
+        this.slots = new Entry[capacity];
+    }
+    
+    static private class Entry{
+        final long key;
+        final int[][] variableDomains;
+        final BigInteger score;
+        volatile boolean referenced; // set by each hit. cleared by the hand of the clock.
+        
+        Entry(long key, int[][] variableDomains, BigInteger score){
+            this.key = key;
+            this.variableDomains = variableDomains;
+            this.score = score;
+        }
+    }
+    
+    /**
+     * Returns the key of a network with the given variable domains.
+     * @param variableDomains
+     * @return
+     */
+    static long getKey(int[][] variableDomains){
+        long key = 0;
+        for (int i = 0; i < variableDomains.length; i++){
+            key += getDomainHash(i, variableDomains[i]);
+        }
+        return key;
+    }
+    
+    /**
+     * Returns the key of a network which differs from the network of the
+     * given key in one variable domain.
+     * @param key
+     * @param domainIndex
+     * @param oldDomain
+     * @param newDomain
+     * @return
+     */
+    static long getUpdatedKey(long key, int domainIndex, int[] oldDomain, int[] newDomain){
+        return key - getDomainHash(domainIndex, oldDomain) + getDomainHash(domainIndex, newDomain);
+    }
+    
+    // returns the polynomial hash of the bases of one domain, mixed with the domain's index.
+    private static long getDomainHash(int domainIndex, int[] domain){
+        long hash = domain.length;
+        for (int base : domain){
+            hash = hash*BASE_MULTIPLIER + base;
+        }
+        hash = (hash ^ (hash >>> 29)) * DOMAIN_MULTIPLIER + domainIndex;
+        hash = (hash ^ (hash >>> 32)) * BASE_MULTIPLIER;
+        return hash ^ (hash >>> 29);
+    }
+    
+    /**
+     * Returns the score of the network with the given key and variable
+     * domains, or null if it is not held.
+     * @param key
+     * @param variableDomains
+     * @return
+     */
+    BigInteger get(long key, int[][] variableDomains){
+        Entry entry = entries.get(key);
+        if (entry != null && Arrays.deepEquals(entry.variableDomains, variableDomains)){
+            entry.referenced = true;
+            hits.incrementAndGet();
+            return entry.score;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+    
+    /**
+     * Holds the score of the network with the given key and variable domains,
+     * evicting another score if the cache is full. The variable domains are
+     * held by reference and must not be modified.
+     * @param key
+     * @param variableDomains
+     * @param score
+     */
+    synchronized void put(long key, int[][] variableDomains, BigInteger score){
+        if (entries.containsKey(key)) return;
+        int slot;
+        if (size < slots.length){
+            slot = size++;
+        } else {
+            while (slots[hand].referenced){
+                slots[hand].referenced = false;
+                hand = (hand+1) % slots.length;
+            }
+            entries.remove(slots[hand].key);
+            slot = hand;
+            hand = (hand+1) % slots.length;
+        }
+        Entry entry = new Entry(key, variableDomains, score);
+        slots[slot] = entry;
+        entries.put(key, entry);
+    }
+    
+    /**
+     * Returns the number of lookups which found a score.
+     * @return
+     */
+    long getHits(){
+        return hits.get();
+    }
+    
+    /**
+     * Returns the number of lookups which did not find a score.
+     * @return
+     */
+    long getMisses(){
+        return misses.get();
+    }
+}
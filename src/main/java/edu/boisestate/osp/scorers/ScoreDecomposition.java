@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2019 Boise State University
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package edu.boisestate.osp.scorers;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The contribution of each oligomer's own duplexes, and of the duplexes
+ * between each pair of oligomers, to the score of one network. The
+ * contributions sum to the score of the network.
+ *
+ * A decomposition is never modified. The decomposition of a network which
+ * differs from a previous network in one variable domain shares the
+ * baselines of the previous decomposition, and only the oligomers and pairs
+ * of oligomers holding that domain are calculated again.
+ *
+ * Pair scores are held in one row per oligomer, and the score of a pair is
+ * held in the rows of both its oligomers. An updated decomposition shares
+ * the rows of the previous decomposition, and only replaces the rows of the
+ * oligomers holding the updated domain. The score of a pair is read from
+ * whichever of its rows was replaced last, so an update costs one row per
+ * updated oligomer rather than a copy of every pair.
+ *
+ * @author mtobi
+ */
+public final class ScoreDecomposition {
+    final String[] oligomerNames;
+    final BigInteger oligomerWeight; // weight of the oligomer scores in the network score.
+    final BigInteger[] oligomerScores; // intra-oligomer score of each oligomer.
+    final BigInteger[][] pairRows; // inter-oligomer score of each pair of oligomers, held in the row of each oligomer.
+    final int[] rowGenerations; // generation in which each row was last replaced.
+    final int generation; // number of updates since the decomposition was calculated.
+    final BigInteger[] baselineOligomerScores; // oligomerScores of the baseline network. shared by every decomposition of a scorer.
+    final BigInteger[][] baselinePairRows; // pairRows of the baseline network. shared by every decomposition of a scorer.
+    final BigInteger total;
+    
+    /**
+     * Creates the decomposition of a network from the score of every
+     * oligomer and pair of oligomers.
+     * @param pairScores score of each pair of oligomers, indexed by getPairIndex.
+     * @param baseline decomposition of the baseline network, or null if this is the decomposition of the baseline network.
+     */
+    ScoreDecomposition(String[] oligomerNames, BigInteger oligomerWeight, BigInteger[] oligomerScores, BigInteger[] pairScores, ScoreDecomposition baseline){
+        int oligomers = oligomerScores.length;
+        this.oligomerNames = oligomerNames;
+        this.oligomerWeight = oligomerWeight;
+        this.oligomerScores = oligomerScores;
+        this.pairRows = new BigInteger[oligomers][oligomers];
+        for (int i = 0; i < oligomers; i++){
+            for (int j = i; j < oligomers; j++){
+                BigInteger score = pairScores[getPairIndex(oligomers, i, j)];
+                pairRows[i][j] = score;
+                pairRows[j][i] = score;
+            }
+        }
+        this.rowGenerations = new int[oligomers];
+        this.generation = 0;
+        this.baselineOligomerScores = (baseline == null) ? oligomerScores : baseline.oligomerScores;
+        this.baselinePairRows = (baseline == null) ? pairRows : baseline.pairRows;
+        
+        BigInteger sum = BigInteger.ZERO;
+        for (int i = 0; i < oligomers; i++){
+            sum = sum.add(getOligomerContribution(i));
+            for (int j = i; j < oligomers; j++){
+                sum = sum.add(getPairContribution(i, j));
+            }
+        }
+        this.total = sum;
+    }
+    
+    private ScoreDecomposition(ScoreDecomposition previous, BigInteger[] oligomerScores, BigInteger[][] pairRows, int[] rowGenerations, BigInteger total){
+        this.oligomerNames = previous.oligomerNames;
+        this.oligomerWeight = previous.oligomerWeight;
+        this.oligomerScores = oligomerScores;
+        this.pairRows = pairRows;
+        this.rowGenerations = rowGenerations;
+        this.generation = previous.generation+1;
+        this.baselineOligomerScores = previous.baselineOligomerScores;
+        this.baselinePairRows = previous.baselinePairRows;
+        this.total = total;
+    }
+    
+    /**
+     * Returns the decomposition of a network which differs from this
+     * decomposition's network only in the given oligomers.
+     * @param updatedOligomers indices of the oligomers which differ.
+     * @param oligomerScores score of every oligomer of the new network.
+     * @param pairOligomers1 first oligomer of each pair whose score differs.
+     * @param pairOligomers2 second oligomer of each pair whose score differs.
+     * @param pairScores new score of each pair.
+     * @return
+     */
+    ScoreDecomposition getUpdated(int[] updatedOligomers, BigInteger[] oligomerScores, int[] pairOligomers1, int[] pairOligomers2, BigInteger[] pairScores){
+        int updatedGeneration = generation+1;
+        BigInteger[][] updatedRows = pairRows.clone();
+        int[] updatedRowGenerations = rowGenerations.clone();
+        BigInteger updatedTotal = total;
+        for (int i : updatedOligomers){
+            updatedTotal = updatedTotal.add(oligomerScores[i].subtract(this.oligomerScores[i]).multiply(oligomerWeight));
+            replaceRow(updatedRows, updatedRowGenerations, updatedGeneration, i);
+        }
+        for (int p = 0; p < pairScores.length; p++){
+            int i = pairOligomers1[p];
+            int j = pairOligomers2[p];
+            updatedTotal = updatedTotal.add(pairScores[p].subtract(getPairScore(i, j)));
+            if (updatedRowGenerations[i] != updatedGeneration && updatedRowGenerations[j] != updatedGeneration){
+                replaceRow(updatedRows, updatedRowGenerations, updatedGeneration, i);
+            }
+            if (updatedRowGenerations[i] == updatedGeneration) updatedRows[i][j] = pairScores[p];
+            if (updatedRowGenerations[j] == updatedGeneration) updatedRows[j][i] = pairScores[p];
+        }
+        return new ScoreDecomposition(this, oligomerScores, updatedRows, updatedRowGenerations, updatedTotal);
+    }
+    
+    // replaces the row of the given oligomer in the rows of an update with a copy holding the current score of each pair, unless the update already replaced it.
+    private void replaceRow(BigInteger[][] updatedRows, int[] updatedRowGenerations, int updatedGeneration, int oligomer){
+        if (updatedRowGenerations[oligomer] == updatedGeneration) return;
+        BigInteger[] row = new BigInteger[pairRows.length];
+        for (int j = 0; j < row.length; j++){
+            row[j] = getPairScore(oligomer, j);
+        }
+        updatedRows[oligomer] = row;
+        updatedRowGenerations[oligomer] = updatedGeneration;
+    }
+    
+    // returns the inter-oligomer score of the pair of the given oligomers.
+    BigInteger getPairScore(int oligomer1, int oligomer2){
+        return (rowGenerations[oligomer1] >= rowGenerations[oligomer2]) ? pairRows[oligomer1][oligomer2] : pairRows[oligomer2][oligomer1];
+    }
+    
+    // returns the index of the pair of the given oligomers in the pair scores of a new decomposition.
+    static int getPairIndex(int oligomers, int oligomer1, int oligomer2){
+        int i = Math.min(oligomer1, oligomer2);
+        int j = Math.max(oligomer1, oligomer2);
+        return i*oligomers - i*(i-1)/2 + (j-i);
+    }
+    
+    // returns the number of pairs of the given number of oligomers, including each oligomer paired with itself.
+    static int getPairCount(int oligomers){
+        return oligomers*(oligomers+1)/2;
+    }
+    
+    /**
+     * Returns the number of oligomers in the network.
+     * @return
+     */
+    public int getOligomerCount(){
+        return oligomerScores.length;
+    }
+    
+    /**
+     * Returns the contribution of the duplexes within the given oligomer to
+     * the score of the network.
+     * @param oligomer index of the oligomer.
+     * @return
+     */
+    public BigInteger getOligomerContribution(int oligomer){
+        return oligomerScores[oligomer].subtract(baselineOligomerScores[oligomer]).multiply(oligomerWeight);
+    }
+    
+    /**
+     * Returns the contribution of the duplexes between the given oligomers to
+     * the score of the network. An oligomer may be paired with itself.
+     * @param oligomer1 index of the first oligomer.
+     * @param oligomer2 index of the second oligomer.
+     * @return
+     */
+    public BigInteger getPairContribution(int oligomer1, int oligomer2){
+        return getPairScore(oligomer1, oligomer2).subtract(baselinePairRows[oligomer1][oligomer2]);
+    }
+    
+    /**
+     * Returns the sum of all contributions, which is the score of the network.
+     * @return
+     */
+    public BigInteger getTotal(){
+        return total;
+    }
+    
+    /**
+     * Returns the largest contributions of oligomers and pairs of oligomers,
+     * largest first. Contributions of zero or less are not returned.
+     * @param count maximum number of contributions returned.
+     * @return
+     */
+    public List<Contribution> getTopOffenders(int count){
+        if (count <= 0) return Collections.emptyList();
+        
+        // the smallest kept contribution is at the head of the queue.
+        PriorityQueue<Contribution> kept = new PriorityQueue<>(count, (c1,c2) -> c1.contribution.compareTo(c2.contribution));
+        int oligomers = oligomerScores.length;
+        for (int i = 0; i < oligomers; i++){
+            offer(kept, count, i, -1, getOligomerContribution(i));
+        }
+        for (int i = 0; i < oligomers; i++){
+            for (int j = i; j < oligomers; j++){
+                offer(kept, count, i, j, getPairContribution(i, j));
+            }
+        }
+        
+        List<Contribution> ret = new ArrayList<>(kept);
+        ret.sort((c1,c2) -> c2.contribution.compareTo(c1.contribution));
+        return ret;
+    }
+    
+    private void offer(PriorityQueue<Contribution> kept, int count, int oligomer1, int oligomer2, BigInteger contribution){
+        if (contribution.signum() <= 0) return;
+        if (kept.size() == count){
+            if (kept.peek().contribution.compareTo(contribution) >= 0) return;
+            kept.poll();
+        }
+        kept.add(new Contribution(oligomer1, oligomer2, contribution));
+    }
+    
+    /**
+     * Returns the top offenders as text, one per line.
+     * @param count maximum number of contributions listed.
+     * @return
+     */
+    public String getTopOffendersString(int count){
+        StringBuilder sb = new StringBuilder();
+        for (Contribution c : getTopOffenders(count)){
+            if (sb.length() > 0) sb.append(System.lineSeparator());
+            if (c.isPair()){
+                sb.append(oligomerNames[c.oligomer1]).append(" ").append(oligomerNames[c.oligomer2]);
+            } else {
+                sb.append(oligomerNames[c.oligomer1]);
+            }
+            sb.append(" ").append(c.contribution);
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * The contribution of one oligomer, or of one pair of oligomers.
+     */
+    public static final class Contribution {
+        public final int oligomer1;
+        public final int oligomer2; // -1 if this is the contribution of the duplexes within oligomer1.
+        public final BigInteger contribution;
+        
+        Contribution(int oligomer1, int oligomer2, BigInteger contribution){
+            this.oligomer1 = oligomer1;
+            this.oligomer2 = oligomer2;
+            this.contribution = contribution;
+        }
+        
+        /**
+         * Returns true if this is the contribution of the duplexes between two oligomers.
+         * @return
+         */
+        public boolean isPair(){
+            return oligomer2 >= 0;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2019 Boise State University
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package edu.boisestate.osp.scorers;
+
+/**
+ * Counts the change in duplexes caused by updating a few bases.
+ *
+ * Every base-pair (b1,b2) lies on the anti-diagonal b1+b2. Duplexes never
+ * continue from one anti-diagonal to the next, so only the anti-diagonals
+ * through an updated base need to be examined. On each of these, the window
+ * around the updated base-pairs is extended to the nearest unchanged mismatch
+ * on each side. The duplexes found in the window of the old sequences are
+ * removed from the length counts and those of the new sequences are added.
+ *
+ * @author mtobi
+ */
+final class WindowedDuplexCounter {
+    private static final ThreadLocal<int[]> KNOWN_CELLS = ThreadLocal.withInitial(() -> new int[16]); // scratch space for the updated base-pairs of one anti-diagonal.
+
+    private WindowedDuplexCounter(){
+    }
+
+    /**
+     * Adds the change in inter-oligomer duplexes between oligomer 1 and
+     * oligomer 2 to deltaCounts.
+     * @param oldS1 previous bases of oligomer 1.
+     * @param newS1 new bases of oligomer 1.
+     * @param updated1 indices of the updated bases on oligomer 1.
+     * @param oldS2 previous bases of oligomer 2.
+     * @param newS2 new bases of oligomer 2.
+     * @param updated2 indices of the updated bases on oligomer 2.
+     * @param slc
+     * @param deltaCounts
+     * @param runPoints points of a duplex of each length, saturated at Long.MAX_VALUE. may be null.
+     * @return the points of the added duplexes minus the points of the removed duplexes, saturated at Long.MAX_VALUE and Long.MIN_VALUE. 0 if runPoints is null.
+     */
+    static long countInterDelta(int[] oldS1, int[] newS1, int[] updated1, int[] oldS2, int[] newS2, int[] updated2, int slc, int[] deltaCounts, long[] runPoints){
+        int S1length = newS1.length;
+        int S2length = newS2.length;
+        int[] cells = getCells(updated1.length+updated2.length);
+        long deltaPoints = 0;
+
+        // for each anti-diagonal
+        for (int c = 0; c <= S1length+S2length-2; c++){
+            if (!isAffected(c, updated1, S2length) && !isAffected(c, updated2, S1length)) continue;
+            int firstB1 = Math.max(0, c-S2length+1);
+            int lastB1 = Math.min(S1length-1, c);
+            deltaPoints = add(deltaPoints, countDiagonalDelta(oldS1, newS1, updated1, oldS2, newS2, updated2, c, firstB1, lastB1, slc, deltaCounts, cells, runPoints));
+        }
+        return deltaPoints;
+    }
+
+    /**
+     * Adds the change in intra-oligomer duplexes of an oligomer to deltaCounts.
+     * @param oldS previous bases of the oligomer.
+     * @param newS new bases of the oligomer.
+     * @param updated indices of the updated bases.
+     * @param slc
+     * @param deltaCounts
+     */
+    static void countIntraDelta(int[] oldS, int[] newS, int[] updated, int slc, int[] deltaCounts){
+        int Slength = newS.length;
+        int[] cells = getCells(2*updated.length);
+
+        // for each anti-diagonal. only base-pairs with b1 < b2 are considered.
+        for (int c = 1; c <= 2*Slength-3; c++){
+            if (!isAffected(c, updated, Slength)) continue;
+            int firstB1 = Math.max(0, c-Slength+1);
+            int lastB1 = (c-1)/2;
+            countDiagonalDelta(oldS, newS, updated, oldS, newS, updated, c, firstB1, lastB1, slc, deltaCounts, cells, null);
+        }
+    }
+
+    // returns this thread's scratch space, grown to at least the given size.
+    private static int[] getCells(int size){
+        int[] cells = KNOWN_CELLS.get();
+        if (cells.length < size){
+            cells = new int[size];
+            KNOWN_CELLS.set(cells);
+        }
+        return cells;
+    }
+
+    // returns x+y, saturated at Long.MAX_VALUE and Long.MIN_VALUE.
+    static long add(long x, long y){
+        long sum = x+y;
+        if (((x ^ sum) & (y ^ sum)) < 0){
+            return (x < 0) ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        return sum;
+    }
+
+    // returns true if a base in updated pairs with any base of an oligomer of otherLength on anti-diagonal c.
+    private static boolean isAffected(int c, int[] updated, int otherLength){
+        for (int b : updated){
+            if (c >= b && c < b+otherLength) return true;
+        }
+        return false;
+    }
+
+    // returns the change in points on this anti-diagonal, or 0 if runPoints is null.
+    private static long countDiagonalDelta(int[] oldS1, int[] newS1, int[] updated1, int[] oldS2, int[] newS2, int[] updated2, int c, int firstB1, int lastB1, int slc, int[] deltaCounts, int[] cells, long[] runPoints){
+        // find the updated base-pairs on this anti-diagonal.
+        int n = 0;
+        for (int b1 : updated1){
+            if (b1 >= firstB1 && b1 <= lastB1) cells[n++] = b1;
+        }
+        for (int b2 : updated2){
+            int b1 = c-b2;
+            if (b1 >= firstB1 && b1 <= lastB1) cells[n++] = b1;
+        }
+        if (n == 0) return 0;
+
+        // sort and remove duplicates.
+        for (int i = 1; i < n; i++){
+            int cell = cells[i];
+            int j = i-1;
+            while (j >= 0 && cells[j] > cell){
+                cells[j+1] = cells[j];
+                j--;
+            }
+            cells[j+1] = cell;
+        }
+        int unique = 1;
+        for (int i = 1; i < n; i++){
+            if (cells[i] != cells[unique-1]) cells[unique++] = cells[i];
+        }
+        n = unique;
+
+        long addedPoints = 0;
+        long removedPoints = 0;
+        int i = 0;
+        while (i < n){
+            // extend the window to the nearest unchanged mismatch on each side.
+            int lo = cells[i];
+            while (lo > firstB1 && newS1[lo-1]+newS2[c-lo+1] == 0) lo--;
+            int hi = cells[i];
+            i++;
+            while (hi < lastB1){
+                if (i < n && cells[i] == hi+1){
+                    hi++;
+                    i++;
+                } else if (newS1[hi+1]+newS2[c-hi-1] == 0){
+                    hi++;
+                } else {
+                    break;
+                }
+            }
+            removedPoints = add(removedPoints, countRuns(oldS1, oldS2, c, lo, hi, slc, deltaCounts, -1, runPoints));
+            addedPoints = add(addedPoints, countRuns(newS1, newS2, c, lo, hi, slc, deltaCounts, 1, runPoints));
+        }
+        return add(addedPoints, -removedPoints);
+    }
+
+    // returns the points of the counted runs, or 0 if runPoints is null.
+    private static long countRuns(int[] S1, int[] S2, int c, int firstB1, int lastB1, int slc, int[] deltaCounts, int sign, long[] runPoints){
+        long points = 0;
+        int structureLength = 0;
+        for (int b1 = firstB1; b1 <= lastB1; b1++){
+            if (S1[b1]+S2[c-b1] == 0){
+                structureLength++;
+            } else {
+                if (structureLength >= slc){
+                    deltaCounts[structureLength] += sign;
+                    if (runPoints != null) points = add(points, runPoints[structureLength]);
+                }
+                structureLength = 0;
+            }
+        }
+        if (structureLength >= slc){
+            deltaCounts[structureLength] += sign;
+            if (runPoints != null) points = add(points, runPoints[structureLength]);
+        }
+        return points;
+    }
+}
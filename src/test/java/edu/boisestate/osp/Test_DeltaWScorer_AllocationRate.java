@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2019 Boise State University
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package edu.boisestate.osp;
+
+import edu.boisestate.osp.coders.Coder;
+import edu.boisestate.osp.coders.ICoder;
+import edu.boisestate.osp.networks.FactoryDomainBasedEncodedNetwork;
+import edu.boisestate.osp.networks.IDomainBasedEncodedNetwork;
+import edu.boisestate.osp.networks.IDomainBasedEncodedScoredNetwork;
+import edu.boisestate.osp.scorers.DeltaWScorer;
+import edu.boisestate.osp.scorers.IScorer;
+import edu.boisestate.osp.validators.IValidator;
+import edu.boisestate.osp.validators.Validator;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Measures the bytes allocated by all threads for each type 3 mutation,
+ * including validation and scoring. Daughters are generated into reused slots
+ * and scored in batches, as by the type 3 cycles of SeqEvo. After each
+ * measurement the daughters of further generations are compared against the
+ * scores of a separate scorer, and the test fails if any daughter is scored
+ * differently or is rejected although it is as fit as its parent. The test
+ * also fails if any configuration allocates more than MAX_BYTES_PER_MUTATION.
+ */
+public class Test_DeltaWScorer_AllocationRate {
+    static final double MAX_BYTES_PER_MUTATION = 16*1024; // about twice the largest allocation rate of any configuration.
+    
+    public static void main(String[] args){
+        int[] duplexNumbers = {4,16,64};
+        int[] duplexSizes = {8/4,32/4,128/4};
+        int daughtersPerGeneration = 4;
+        int warmupGenerations = 1250;
+        int measuredGenerations = 1250;
+        int checkedGenerations = 50;
+        
+        int mismatches = 0;
+        int excesses = 0;
+        System.out.println("Number duplexes\tDuplex size\tbytes per mutation\tmutations per second\tmismatched scores");
+        for (int numberDuplexes : duplexNumbers){
+            for (int oneFourthBasesPerDuplex : duplexSizes){
+                double[] result = measureAllocation(numberDuplexes, oneFourthBasesPerDuplex, daughtersPerGeneration, warmupGenerations, measuredGenerations, checkedGenerations);
+                System.out.println(numberDuplexes+"\t"+oneFourthBasesPerDuplex*4+"\t"+result[0]+"\t"+result[1]+"\t"+(int)result[2]);
+                mismatches += (int)result[2];
+                if (result[0] > MAX_BYTES_PER_MUTATION) excesses++;
+            }
+        }
+        if (mismatches > 0){
+            System.out.println("FAILED: "+mismatches+" daughters were scored differently than by a separate scorer.");
+        }
+        if (excesses > 0){
+            System.out.println("FAILED: "+excesses+" configurations allocated more than "+MAX_BYTES_PER_MUTATION+" bytes per mutation.");
+        }
+        if (mismatches > 0 || excesses > 0){
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+    
+    // returns the bytes allocated per mutation, the mutations per second, and the number of mismatched scores.
+    private static double[] measureAllocation(int numberDuplexes, int oneFourthBasesPerDuplex, int daughtersPerGeneration, int warmupGenerations, int measuredGenerations, int checkedGenerations){
+        Map<String,String> fixedDomains = new TreeMap<>();
+        Map<String,String> variableDomains = new TreeMap<>();
+        Map<String,String[]> oligomerDomains = new TreeMap<>();
+        
+        addVariableDomains(variableDomains,numberDuplexes,oneFourthBasesPerDuplex);
+        addDuplexOligomerDomains(oligomerDomains,numberDuplexes);
+        
+        ICoder coder = new Coder();
+        FactoryDomainBasedEncodedNetwork factory = new FactoryDomainBasedEncodedNetwork(coder, fixedDomains, oligomerDomains, variableDomains);
+        IScorer scorer = new DeltaWScorer(fixedDomains, oligomerDomains, variableDomains, 10, 1, 10, 1, 10000, Runtime.getRuntime().availableProcessors(), 4);
+        IScorer referenceScorer = new DeltaWScorer(fixedDomains, oligomerDomains, variableDomains, 10, 1, 10, 1, 10000, Runtime.getRuntime().availableProcessors(), 4);
+        IValidator validator = new Validator(coder, 6, 3, 3, 6);
+        Slots slots = new Slots(daughtersPerGeneration);
+        
+        IDomainBasedEncodedNetwork gen0 = factory.getNewNetwork(variableDomains);
+        IDomainBasedEncodedScoredNetwork currentFittest = scorer.getScored(gen0);
+        
+        currentFittest = mutate(factory, scorer, null, validator, slots, currentFittest, warmupGenerations);
+        
+        Map<Long,Long> startBytes = getAllocatedBytes();
+        long startTime = System.nanoTime();
+        currentFittest = mutate(factory, scorer, null, validator, slots, currentFittest, measuredGenerations);
+        long endTime = System.nanoTime();
+        Map<Long,Long> endBytes = getAllocatedBytes();
+        
+        mutate(factory, scorer, referenceScorer, validator, slots, currentFittest, checkedGenerations);
+        
+        // threads which ended during the measurement are not counted.
+        long allocatedBytes = 0;
+        for (Map.Entry<Long,Long> entry : endBytes.entrySet()){
+            allocatedBytes += entry.getValue() - startBytes.getOrDefault(entry.getKey(), 0L);
+        }
+        int measuredMutations = measuredGenerations*daughtersPerGeneration;
+        double bytesPerMutation = ((double)allocatedBytes)/measuredMutations;
+        double mutationsPerSecond = measuredMutations/((endTime-startTime)/1e9);
+        return new double[] {bytesPerMutation, mutationsPerSecond, slots.mismatches};
+    }
+    
+    // reused between generations, like the daughter slots of a type 3 cycle.
+    private static class Slots{
+        final IDomainBasedEncodedNetwork[] candidates;
+        final int[] domainIndices;
+        int mismatches;
+        
+        Slots(int daughtersPerGeneration){
+            candidates = new IDomainBasedEncodedNetwork[daughtersPerGeneration];
+            domainIndices = new int[daughtersPerGeneration];
+        }
+    }
+    
+    // if referenceScorer is not null, each daughter's score is compared against its score by referenceScorer.
+    private static IDomainBasedEncodedScoredNetwork mutate(FactoryDomainBasedEncodedNetwork factory, IScorer scorer, IScorer referenceScorer, IValidator validator, Slots slots, IDomainBasedEncodedScoredNetwork currentFittest, int numberGenerations){
+        for (int i = 0; i < numberGenerations; i++){
+            int valid = 0;
+            for (int j = 0; j < slots.candidates.length; j++){
+                int domainIndex = factory.getMutationDomainIndex();
+                IDomainBasedEncodedNetwork candidate = factory.getType3Mutation(currentFittest, domainIndex, validator);
+                if (candidate == null) continue;
+                slots.candidates[valid] = candidate;
+                slots.domainIndices[valid] = domainIndex;
+                valid++;
+            }
+            IDomainBasedEncodedNetwork[] candidates = slots.candidates;
+            int[] domainIndices = slots.domainIndices;
+            if (valid < candidates.length){
+                candidates = Arrays.copyOf(candidates, valid);
+                domainIndices = Arrays.copyOf(domainIndices, valid);
+            }
+            // daughters less fit than the current fittest network are rejected, as in a type 3 cycle.
+            IDomainBasedEncodedScoredNetwork[] daughters = scorer.getScored(currentFittest, candidates, domainIndices, currentFittest);
+            IDomainBasedEncodedScoredNetwork nextFittest = currentFittest;
+            for (int j = 0; j < daughters.length; j++){
+                if (referenceScorer != null){
+                    BigInteger referenceScore = referenceScorer.getScored(candidates[j]).getBigIntegerScore();
+                    boolean matches = (daughters[j] == null) ? referenceScore.compareTo(currentFittest.getBigIntegerScore()) > 0 : referenceScore.equals(daughters[j].getBigIntegerScore());
+                    if (!matches) slots.mismatches++;
+                }
+                if (daughters[j] != null && scorer.compareFitness(daughters[j], nextFittest) >= 0){
+                    nextFittest = daughters[j];
+                }
+            }
+            currentFittest = nextFittest;
+            Arrays.fill(slots.candidates, null);
+        }
+        return currentFittest;
+    }
+    
+    // returns a map connecting the id of each live thread to the bytes it has allocated.
+    private static Map<Long,Long> getAllocatedBytes(){
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Map<Long,Long> ret = new HashMap<>();
+        for (long id : bean.getAllThreadIds()){
+            long bytes = bean.getThreadAllocatedBytes(id);
+            if (bytes >= 0) ret.put(id, bytes);
+        }
+        return ret;
+    }
+    
+    private static void addDuplexOligomerDomains(Map<String,String[]> oligomerDomains, int numberDuplexes){
+        for(int i =1; i <= numberDuplexes; i++){
+            oligomerDomains.put("Duplex-"+i+"-Top", new String[] {"Domain-"+i});
+            oligomerDomains.put("Duplex-"+i+"-Bottom", new String[] {"c.Domain-"+i});
+        }
+    }
+    
+    private static void addVariableDomains(Map<String,String> variableDomains, int numberDuplexes, int numberOfEachBase){
+        StringBuilder domainSequence = new StringBuilder();
+        for(int i =0; i < numberOfEachBase; i++){
+            domainSequence.append('A');
+            domainSequence.append('C');
+            domainSequence.append('G');
+            domainSequence.append('T');
+        }
+        
+        for(int i =1; i <= numberDuplexes; i++){
+            variableDomains.put("Domain-"+i,domainSequence.toString());
+        }
+    }
+    
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2019 Boise State University
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package edu.boisestate.osp;
+
+import edu.boisestate.osp.coders.Coder;
+import edu.boisestate.osp.coders.ICoder;
+import edu.boisestate.osp.networks.FactoryDomainBasedEncodedNetwork;
+import edu.boisestate.osp.networks.IDomainBasedEncodedNetwork;
+import edu.boisestate.osp.networks.IDomainBasedEncodedScoredNetwork;
+import edu.boisestate.osp.scorers.DeltaWScorer;
+import edu.boisestate.osp.scorers.ScoreDecomposition;
+import edu.boisestate.osp.validators.IValidator;
+import edu.boisestate.osp.validators.Validator;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Scores the daughters of evolving networks with each scoring path of
+ * DeltaWScorer and compares every score against the score of the same
+ * network by a plain DeltaWScorer, which scores each network from scratch.
+ * The paths are batches, batches bounded by a network, batches bounded by a
+ * score, single daughters, and single daughters with their updated bases.
+ * Rejected daughters must be less fit than their bound. The decomposition of
+ * each accepted network must total its score, and its contributions must
+ * equal those of the plain scorer. Each network is scored with the scalar and
+ * packed kernels, with and without the score cache. The test fails if any
+ * daughter or decomposition differs.
+ */
+public class Test_DeltaWScorer_Equivalence {
+
+    public static void main(String[] args){
+        int generations = 240;
+
+        int daughters = 0;
+        int mismatches = 0;
+        System.out.println("Network\tKernel\tScore cache\tdaughters\trejected daughters\taccepted networks\tmismatches");
+        for (String networkName : new String[] {"Qian_Winfree_2011","Random","Repetitive"}){
+            for (boolean usePackedKernel : new boolean[] {false,true}){
+                for (int scoreCacheCapacity : new int[] {0,4096}){
+                    Check check = new Check(networkName, usePackedKernel, scoreCacheCapacity);
+                    check.run(generations);
+                    System.out.println(networkName+"\t"+(usePackedKernel ? "packed" : "scalar")+"\t"+scoreCacheCapacity+"\t"+check.daughters+"\t"+check.rejected+"\t"+check.accepted+"\t"+check.mismatches);
+                    daughters += check.daughters;
+                    mismatches += check.mismatches;
+                }
+            }
+        }
+        if (mismatches > 0){
+            System.out.println("FAILED: "+mismatches+" of "+daughters+" daughters or decompositions differed from the plain scorer.");
+            System.exit(1);
+        }
+        System.out.println("PASSED: "+daughters+" daughters matched the plain scorer.");
+        System.exit(0);
+    }
+
+    // evolves one network with one scorer setting.
+    private static class Check{
+        final FactoryDomainBasedEncodedNetwork factory;
+        final DeltaWScorer scorer;
+        final DeltaWScorer plainScorer;
+        final IValidator validator;
+        final Random rnd = new Random(1);
+        IDomainBasedEncodedScoredNetwork currentNetwork;
+        int daughters;
+        int rejected;
+        int accepted;
+        int mismatches;
+
+        Check(String networkName, boolean usePackedKernel, int scoreCacheCapacity){
+            Map<String,String> fixedDomains = new TreeMap<>();
+            Map<String,String> variableDomains = new TreeMap<>();
+            Map<String,String[]> oligomerDomains = new TreeMap<>();
+            int intraSLC = 1;
+            int interSLC = 1;
+            switch (networkName){
+                case "Qian_Winfree_2011":
+                    addQianWinfreeDomains(fixedDomains, variableDomains, oligomerDomains);
+                    intraSLC = 2;
+                    interSLC = 2;
+                    break;
+                case "Random":
+                    addRandomDomains(fixedDomains, variableDomains, oligomerDomains);
+                    break;
+                default:
+                    addRepetitiveDomains(fixedDomains, variableDomains, oligomerDomains);
+            }
+
+            ICoder coder = new Coder();
+            factory = new FactoryDomainBasedEncodedNetwork(coder, fixedDomains, oligomerDomains, variableDomains);
+            scorer = new DeltaWScorer(fixedDomains, oligomerDomains, variableDomains, 10, intraSLC, 10, interSLC, 10000, Runtime.getRuntime().availableProcessors(), 4, usePackedKernel, scoreCacheCapacity);
+            plainScorer = new DeltaWScorer(fixedDomains, oligomerDomains, variableDomains, 10, intraSLC, 10, interSLC, 10000, Runtime.getRuntime().availableProcessors(), 4, false, 0);
+            validator = new Validator(coder, 100, 100, 100, 100);
+            currentNetwork = scorer.getScored(factory.getNewNetwork(variableDomains));
+            scorer.getDecomposition(currentNetwork);
+        }
+
+        void run(int generations){
+            IDomainBasedEncodedNetwork[] previousCandidates = new IDomainBasedEncodedNetwork[0];
+            int[] previousDomainIndices = new int[0];
+            for (int g = 0; g < generations; g++){
+                List<IDomainBasedEncodedNetwork> candidateList = new ArrayList<>();
+                List<Integer> domainIndexList = new ArrayList<>();
+                int sameDomainIndex = factory.getMutationDomainIndex();
+                int numberCandidates = 1+rnd.nextInt(6);
+                for (int i = 0; i < numberCandidates; i++){
+                    // half of the daughters share a domain, so that they share a traversal of its combinations.
+                    int domainIndex = (i%2 == 0) ? sameDomainIndex : factory.getMutationDomainIndex();
+                    IDomainBasedEncodedNetwork candidate = (rnd.nextInt(5) == 0) ? factory.getType2Mutation(currentNetwork, domainIndex, validator) : factory.getType3Mutation(currentNetwork, domainIndex, validator);
+                    if (candidate == null) continue;
+                    candidateList.add(candidate);
+                    domainIndexList.add(domainIndex);
+                }
+                // daughters of an unchanged parent are scored again, so that remembered scores are reused.
+                if (g%4 == 3){
+                    for (int i = 0; i < previousCandidates.length; i++){
+                        candidateList.add(previousCandidates[i]);
+                        domainIndexList.add(previousDomainIndices[i]);
+                    }
+                }
+                IDomainBasedEncodedNetwork[] candidates = candidateList.toArray(new IDomainBasedEncodedNetwork[0]);
+                int[] domainIndices = new int[candidates.length];
+                for (int i = 0; i < candidates.length; i++){
+                    domainIndices[i] = domainIndexList.get(i);
+                }
+
+                IDomainBasedEncodedScoredNetwork[] scoredNetworks;
+                BigInteger boundScore = null;
+                switch (g%5){
+                    case 0:
+                        scoredNetworks = scorer.getScored(currentNetwork, candidates, domainIndices);
+                        break;
+                    case 1:
+                        boundScore = currentNetwork.getBigIntegerScore();
+                        scoredNetworks = scorer.getScored(currentNetwork, candidates, domainIndices, currentNetwork);
+                        break;
+                    case 2:
+                        boundScore = currentNetwork.getBigIntegerScore().multiply(BigInteger.valueOf(100+rnd.nextInt(5))).divide(BigInteger.valueOf(100));
+                        scoredNetworks = scorer.getScored(currentNetwork, candidates, domainIndices, boundScore);
+                        break;
+                    case 3:
+                        scoredNetworks = new IDomainBasedEncodedScoredNetwork[candidates.length];
+                        for (int i = 0; i < candidates.length; i++){
+                            scoredNetworks[i] = scorer.getScored(currentNetwork, candidates[i], domainIndices[i]);
+                        }
+                        break;
+                    default:
+                        scoredNetworks = new IDomainBasedEncodedScoredNetwork[candidates.length];
+                        for (int i = 0; i < candidates.length; i++){
+                            int[] updatedBaseIndices = getUpdatedBaseIndices(currentNetwork, candidates[i], domainIndices[i]);
+                            scoredNetworks[i] = scorer.getScored(currentNetwork, candidates[i], domainIndices[i], updatedBaseIndices);
+                        }
+                }
+
+                IDomainBasedEncodedScoredNetwork nextNetwork = currentNetwork;
+                for (int i = 0; i < candidates.length; i++){
+                    daughters++;
+                    BigInteger plainScore = plainScorer.getScored(candidates[i]).getBigIntegerScore();
+                    if (scoredNetworks[i] == null){
+                        // a daughter may only be rejected if it is less fit than its bound.
+                        rejected++;
+                        if (boundScore == null || plainScore.compareTo(boundScore) <= 0) mismatches++;
+                        continue;
+                    }
+                    if (!plainScore.equals(scoredNetworks[i].getBigIntegerScore())) mismatches++;
+                    if (scorer.compareFitness(scoredNetworks[i], nextNetwork) >= 0 || rnd.nextInt(4) == 0){
+                        nextNetwork = scoredNetworks[i];
+                    }
+                }
+
+                if (nextNetwork != currentNetwork){
+                    currentNetwork = nextNetwork;
+                    accepted++;
+                    checkDecomposition();
+                    previousCandidates = new IDomainBasedEncodedNetwork[0];
+                    previousDomainIndices = new int[0];
+                } else {
+                    previousCandidates = candidates;
+                    previousDomainIndices = domainIndices;
+                }
+            }
+        }
+
+        // compares the decomposition of the current network against its score and against the decomposition by the plain scorer.
+        void checkDecomposition(){
+            ScoreDecomposition decomposition = scorer.getDecomposition(currentNetwork);
+            if (!decomposition.getTotal().equals(currentNetwork.getBigIntegerScore())) mismatches++;
+            if (accepted%10 != 0) return;
+            ScoreDecomposition plainDecomposition = plainScorer.getDecomposition(plainScorer.getScored((IDomainBasedEncodedNetwork) currentNetwork));
+            if (!plainDecomposition.getTotal().equals(decomposition.getTotal())) mismatches++;
+            int oligomers = decomposition.getOligomerCount();
+            for (int o1 = 0; o1 < oligomers; o1++){
+                if (!plainDecomposition.getOligomerContribution(o1).equals(decomposition.getOligomerContribution(o1))) mismatches++;
+                for (int o2 = o1; o2 < oligomers; o2++){
+                    if (!plainDecomposition.getPairContribution(o1, o2).equals(decomposition.getPairContribution(o1, o2))) mismatches++;
+                }
+            }
+        }
+    }
+
+    // returns the indices of the bases of the given variable domain which differ between the networks.
+    private static int[] getUpdatedBaseIndices(IDomainBasedEncodedNetwork previousNetwork, IDomainBasedEncodedNetwork newNetwork, int domainIndex){
+        int[] previousBases = previousNetwork.getVariableDomainSequencesEncoded()[domainIndex];
+        int[] newBases = newNetwork.getVariableDomainSequencesEncoded()[domainIndex];
+        int[] ret = new int[newBases.length];
+        int updated = 0;
+        for (int i = 0; i < newBases.length; i++){
+            if (previousBases[i] != newBases[i]) ret[updated++] = i;
+        }
+        return Arrays.copyOf(ret, updated);
+    }
+
+    // Qian and Winfree 2011 square root circuit, as in Test_SeqEvo_Qian_Winfree_2011.
+    private static void addQianWinfreeDomains(Map<String,String> fixedDomains, Map<String,String> variableDomains, Map<String,String[]> oligomerDomains){
+        fixedDomains.put("c", "CA");
+        fixedDomains.put("Sf", "TTTTTTTTTTT");
+        fixedDomains.put("T", "TCT");
+
+        variableDomains.put("S1","TCCATTCCACT");
+        variableDomains.put("S4","CATAACAACCA");
+        variableDomains.put("S7","ACATATCAATT");
+        variableDomains.put("S10","TACAACATCTA");
+        variableDomains.put("S13","CAACTCATTAC");
+        variableDomains.put("S16","CTTCATAAATC");
+        variableDomains.put("S19","CCTCTTAAACA");
+        variableDomains.put("S22","TTCCTACATTT");
+        variableDomains.put("S25","ATTCACTCAAT");
+        variableDomains.put("S28","TCTACAATTCA");
+        variableDomains.put("S31","ATCCACACTTC");
+        variableDomains.put("S34","CATAACAAAAC");
+        variableDomains.put("S37","CCTCTTCCCTT");
+        variableDomains.put("S40","ATACAAATCCA");
+        variableDomains.put("S43","TCATACCTACT");
+        variableDomains.put("S46","AACCCAACTCA");
+        variableDomains.put("S49","TCCTTAACTCC");
+        variableDomains.put("S52","CTTCACAACTA");
+        variableDomains.put("S2","AAACAAAACCT");
+        variableDomains.put("S5","CCACCAAACTT");
+        variableDomains.put("S8","CTAACATACAA");
+        variableDomains.put("S11","ATATCCATAAC");
+        variableDomains.put("S14","TTATTCAAACC");
+        variableDomains.put("S17","ACTCCTAATAT");
+        variableDomains.put("S20","ATCTAACACTC");
+        variableDomains.put("S23","AATCTTCATCC");
+        variableDomains.put("S26","TTCATTACCTC");
+        variableDomains.put("S29","CCAATACTCCT");
+        variableDomains.put("S32","CACTTCAAACT");
+        variableDomains.put("S35","CTCTCCATCAC");
+        variableDomains.put("S38","TACCCTTTTCT");
+        variableDomains.put("S41","ACAAACCATTA");
+        variableDomains.put("S44","AAACTCTCTCT");
+        variableDomains.put("S47","TTCTCCCACCT");
+        variableDomains.put("S50","TTACCAACCAC");
+        variableDomains.put("S53","TATCTAATCTC");
+        variableDomains.put("S3","CCCTAAAATCT");
+        variableDomains.put("S6","TAACACAATCA");
+        variableDomains.put("S9","CCATCAAATAA");
+        variableDomains.put("S12","TCAATCAACAC");
+        variableDomains.put("S15","CACTATAATTC");
+        variableDomains.put("S18","TCTTCTAACAT");
+        variableDomains.put("S21","ACCATACTAAA");
+        variableDomains.put("S24","CTCATCCTTTA");
+        variableDomains.put("S27","AACACTCTATT");
+        variableDomains.put("S30","CCATTACAATC");
+        variableDomains.put("S33","ACTCAAACATA");
+        variableDomains.put("S36","AACTAAACAAC");
+        variableDomains.put("S39","CTATACACACC");
+        variableDomains.put("S42","CTTTTCACTAT");
+        variableDomains.put("S45","CCCAAAACCCA");
+        variableDomains.put("S48","TCACCACTATA");
+        variableDomains.put("S51","CAAACTACATC");
+
+        oligomerDomains.put("AA",new String[]{"c","S6","c","T","c","S5","c"});
+        oligomerDomains.put("AB",new String[]{"c.c","c.T","c.c","c.S5","c.c","c.T","c.c"});
+        oligomerDomains.put("AC",new String[]{"c","S7","c","T","c","S5","c"});
+        oligomerDomains.put("AD",new String[]{"c","S5","c"});
+        oligomerDomains.put("AE",new String[]{"c.c","c.S5","c.c","c.T","c.c","c.S2"});
+        oligomerDomains.put("AF",new String[]{"c","S5","c","T","c","S2","c"});
+        oligomerDomains.put("AG",new String[]{"c.c","c.T","c.c","c.S2","c.c","c.T","c.c"});
+        oligomerDomains.put("AH",new String[]{"c","S2","c","T","c","S1","c"});
+        oligomerDomains.put("AI",new String[]{"c.c","c.T","c.c","c.S1","c.c","c.T","c.c"});
+        oligomerDomains.put("AJ",new String[]{"c","S10","c","T","c","S1","c"});
+        oligomerDomains.put("AK",new String[]{"c","S1","c"});
+        oligomerDomains.put("AL",new String[]{"c.c","c.S1","c.c","c.T","c.c","c.S4"});
+        oligomerDomains.put("AM",new String[]{"c","S1","c","T","c","S4","c"});
+        oligomerDomains.put("AN",new String[]{"c.c","c.T","c.c","c.S4","c.c","c.T","c.c"});
+        oligomerDomains.put("AO",new String[]{"c","S2","c","T","c","S3","c"});
+        oligomerDomains.put("AP",new String[]{"c.c","c.T","c.c","c.S3","c.c","c.T","c.c"});
+        oligomerDomains.put("AQ",new String[]{"c","S11","c","T","c","S3","c"});
+        oligomerDomains.put("AR",new String[]{"c","S3","c"});
+        oligomerDomains.put("AS",new String[]{"c.c","c.S3","c.c","c.T","c.c","c.S12"});
+        oligomerDomains.put("AT",new String[]{"c","S3","c","T","c","S12","c"});
+        oligomerDomains.put("AU",new String[]{"c.c","c.T","c.c","c.S12","c.c","c.T","c.c"});
+        oligomerDomains.put("AW",new String[]{"c.c","c.T","c.c","c.S8","c.c","c.T","c.c"});
+        oligomerDomains.put("AX",new String[]{"c","S15","c","T","c","S8","c"});
+        oligomerDomains.put("AY",new String[]{"c","S8","c"});
+        oligomerDomains.put("AZ",new String[]{"c.c","c.S8","c.c","c.T","c.c","c.S16"});
+        oligomerDomains.put("BA",new String[]{"c","S8","c","T","c","S16","c"});
+        oligomerDomains.put("BB",new String[]{"c.c","c.T","c.c","c.S16","c.c","c.T","c.c"});
+        oligomerDomains.put("BD",new String[]{"c.c","c.T","c.c","c.S17","c.c","c.T","c.c"});
+        oligomerDomains.put("BE",new String[]{"c","S19","c","T","c","S17","c"});
+        oligomerDomains.put("BF",new String[]{"c","S17","c"});
+        oligomerDomains.put("BG",new String[]{"c.c","c.S17","c.c","c.T","c.c","c.S20"});
+        oligomerDomains.put("BH",new String[]{"c","S17","c","T","c","S20","c"});
+        oligomerDomains.put("BI",new String[]{"c.c","c.T","c.c","c.S20","c.c","c.T","c.c"});
+        oligomerDomains.put("BJ",new String[]{"c","S20","c","T","c","S21","c"});
+        oligomerDomains.put("BK",new String[]{"c","S20","c","T","c","S22","c"});
+        oligomerDomains.put("BL",new String[]{"c","S16","c","T","c","S18","c"});
+        oligomerDomains.put("BM",new String[]{"c","S4","c","T","c","S9","c"});
+        oligomerDomains.put("BN",new String[]{"c","S12","c","T","c","S13","c"});
+        oligomerDomains.put("BO",new String[]{"c","S12","c","T","c","S14","c"});
+        oligomerDomains.put("BP",new String[]{"c","S2","c","T","c","S8","c"});
+        oligomerDomains.put("BQ",new String[]{"c","S2","c","T","c","S17","c"});
+        oligomerDomains.put("BR",new String[]{"c","S4","c","T","c","S23","c"});
+        oligomerDomains.put("BS",new String[]{"c","S16","c","T","c","S24","c"});
+        oligomerDomains.put("CA",new String[]{"c","S6","c"});
+        oligomerDomains.put("CB",new String[]{"c.c","c.S6","c.c","c.T","c.c"});
+    }
+
+    // random domains of different lengths, shared by oligomers in both orientations.
+    private static void addRandomDomains(Map<String,String> fixedDomains, Map<String,String> variableDomains, Map<String,String[]> oligomerDomains){
+        Random rnd = new Random(2);
+        fixedDomains.put("F1", getRandomSequence(rnd, 8));
+        for (int i = 0; i < 8; i++){
+            variableDomains.put("D"+i, getRandomSequence(rnd, 8+i*4));
+        }
+        oligomerDomains.put("O1", new String[] {"D0","D1","F1"});
+        oligomerDomains.put("O2", new String[] {"c.D1","c.D0"});
+        oligomerDomains.put("O3", new String[] {"D2","c.F1","D3"});
+        oligomerDomains.put("O4", new String[] {"c.D3","D4","c.D2"});
+        oligomerDomains.put("O5", new String[] {"D5","c.D4","D0"});
+        oligomerDomains.put("O6", new String[] {"c.D5","D6"});
+        oligomerDomains.put("O7", new String[] {"c.D6","D7","D1"});
+        oligomerDomains.put("O8", new String[] {"c.D7"});
+    }
+
+    // duplexes of identical ACGT repeats, so that long runs of complementary base-pairs form between all oligomers.
+    private static void addRepetitiveDomains(Map<String,String> fixedDomains, Map<String,String> variableDomains, Map<String,String[]> oligomerDomains){
+        StringBuilder domainSequence = new StringBuilder();
+        for (int i = 0; i < 12; i++){
+            domainSequence.append("ACGT");
+        }
+        for (int i = 1; i <= 6; i++){
+            variableDomains.put("Domain-"+i, domainSequence.toString());
+            oligomerDomains.put("Duplex-"+i+"-Top", new String[] {"Domain-"+i});
+            oligomerDomains.put("Duplex-"+i+"-Bottom", new String[] {"c.Domain-"+i});
+        }
+        oligomerDomains.put("Bridge", new String[] {"Domain-1","Domain-2","c.Domain-3"});
+    }
+
+    private static String getRandomSequence(Random rnd, int length){
+        StringBuilder sequence = new StringBuilder();
+        for (int i = 0; i < length; i++){
+            sequence.append("ACGT".charAt(rnd.nextInt(4)));
+        }
+        return sequence.toString();
+    }
+
+}
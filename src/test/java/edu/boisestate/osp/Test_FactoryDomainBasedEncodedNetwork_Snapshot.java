@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2019 Boise State University
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package edu.boisestate.osp;
+
+import edu.boisestate.osp.coders.Coder;
+import edu.boisestate.osp.coders.ICoder;
+import edu.boisestate.osp.networks.FactoryDomainBasedEncodedNetwork;
+import edu.boisestate.osp.networks.IDomainBasedEncodedNetwork;
+import edu.boisestate.osp.networks.IDomainBasedEncodedScoredNetwork;
+import edu.boisestate.osp.scorers.DeltaWScorer;
+import edu.boisestate.osp.validators.IValidator;
+import edu.boisestate.osp.validators.Validator;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Builds a factory from maps in reverse name order, which stores a topology
+ * snapshot, and then a factory from maps in name order, which loads it. The
+ * indices of the two factories differ. Checks that both factories hold the
+ * same oligomer combinations by name as a factory without a snapshot, and that
+ * delta scores of networks of the second factory equal their full scores.
+ * The test fails if any check fails.
+ */
+public class Test_FactoryDomainBasedEncodedNetwork_Snapshot {
+
+    public static void main(String[] args) throws IOException{
+        Map<String,String> fixedDomains = new TreeMap<>();
+        Map<String,String> variableDomains = new TreeMap<>();
+        Map<String,String[]> oligomerDomains = new TreeMap<>();{
+            fixedDomains.put("F1", "ACGTTGCA");
+            variableDomains.put("D1", "AATTCCGGAATT");
+            variableDomains.put("D2", "ACACACAC");
+            variableDomains.put("D3", "TTTTGGGGCCCCAAAA");
+            variableDomains.put("D4", "ATATGCGC");
+            oligomerDomains.put("O1", new String[] {"D1","F1"});
+            oligomerDomains.put("O2", new String[] {"c.D1","D2"});
+            oligomerDomains.put("O3", new String[] {"c.D2","D3","c.F1"});
+            oligomerDomains.put("O4", new String[] {"c.D3"});
+            oligomerDomains.put("O5", new String[] {"D4","D1"});
+            oligomerDomains.put("O6", new String[] {"c.D4"});
+        }
+
+        File directory = Files.createTempDirectory("Test_FactoryDomainBasedEncodedNetwork_Snapshot").toFile();
+        ICoder coder = new Coder();
+        FactoryDomainBasedEncodedNetwork plainFactory = new FactoryDomainBasedEncodedNetwork(coder, fixedDomains, oligomerDomains, variableDomains);
+        FactoryDomainBasedEncodedNetwork savingFactory = new FactoryDomainBasedEncodedNetwork(coder, getReversed(fixedDomains), getReversed(oligomerDomains), getReversed(variableDomains), directory);
+        FactoryDomainBasedEncodedNetwork loadingFactory = new FactoryDomainBasedEncodedNetwork(coder, fixedDomains, oligomerDomains, variableDomains, directory);
+
+        int failures = 0;
+        File[] snapshots = directory.listFiles();
+        if (snapshots.length != 1){
+            System.out.println("Expected one snapshot but found "+snapshots.length+".");
+            failures++;
+        }
+
+        Set<String> plainCombinations = getCombinations(plainFactory.getNewNetwork(variableDomains));
+        IDomainBasedEncodedNetwork savingNetwork = savingFactory.getNewNetwork(getReversed(variableDomains));
+        IDomainBasedEncodedNetwork loadingNetwork = loadingFactory.getNewNetwork(variableDomains);
+        if (savingNetwork.getOligomerNames()[0].equals(loadingNetwork.getOligomerNames()[0])){
+            System.out.println("The factories index the oligomers in the same order.");
+            failures++;
+        }
+        if (!getCombinations(savingNetwork).equals(plainCombinations)){
+            System.out.println("The combinations of the factory which stored the snapshot differ.");
+            failures++;
+        }
+        if (!getCombinations(loadingNetwork).equals(plainCombinations)){
+            System.out.println("The combinations of the factory which loaded the snapshot differ.");
+            failures++;
+        }
+
+        DeltaWScorer scorer = new DeltaWScorer(fixedDomains, oligomerDomains, variableDomains, 10, 1, 10, 1, 10000, 1, 4);
+        IValidator validator = new Validator(coder, 100, 100, 100, 100);
+        IDomainBasedEncodedScoredNetwork parent = scorer.getScored(loadingNetwork);
+        for (int i = 0; i < 200; i++){
+            int domainIndex = loadingFactory.getMutationDomainIndex();
+            IDomainBasedEncodedNetwork daughter = loadingFactory.getType3Mutation(parent, domainIndex, validator);
+            if (daughter == null) continue;
+            IDomainBasedEncodedScoredNetwork scoredDaughter = scorer.getScored(parent, daughter, domainIndex);
+            if (!scoredDaughter.getBigIntegerScore().equals(scorer.getScored(daughter).getBigIntegerScore())){
+                System.out.println("Delta score of daughter "+i+" differs from its full score.");
+                failures++;
+            }
+            if (scorer.compareFitness(scoredDaughter, parent) >= 0) parent = scoredDaughter;
+        }
+
+        for (File snapshot : snapshots){
+            snapshot.delete();
+        }
+        directory.delete();
+
+        if (failures > 0){
+            System.out.println("FAILED: "+failures+" checks failed.");
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+        System.exit(0);
+    }
+
+    // returns a map with the entries of the given map in reverse order of their keys.
+    private static <T> Map<String,T> getReversed(Map<String,T> map){
+        Map<String,T> ret = new LinkedHashMap<>();
+        for (Map.Entry<String,T> entry : new TreeMap<>(map).descendingMap().entrySet()){
+            ret.put(entry.getKey(), entry.getValue());
+        }
+        return ret;
+    }
+
+    // returns each oligomer combination of each variable domain by name.
+    private static Set<String> getCombinations(IDomainBasedEncodedNetwork network){
+        Set<String> ret = new TreeSet<>();
+        String[] domainNames = network.getVariableDomainNames();
+        String[] oligomerNames = network.getOligomerNames();
+        for (Map.Entry<Integer,int[][]> entry : network.getVariableDomainToOligomerCombinations().entrySet()){
+            int[][] combinations = entry.getValue();
+            for (int i = 0; i < combinations[0].length; i++){
+                // oligomers of equal length may be combined in either order.
+                String name1 = oligomerNames[combinations[0][i]];
+                String name2 = oligomerNames[combinations[1][i]];
+                ret.add(domainNames[entry.getKey()]+":"+((name1.compareTo(name2) <= 0) ? name1+"/"+name2 : name2+"/"+name1));
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2019 Boise State University
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package edu.boisestate.osp;
+
+import edu.boisestate.osp.networks.IDomainBasedEncodedScoredNetwork;
+import edu.boisestate.osp.scorers.IScorer;
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs SeqEvo with an engine of its own, which climbs from the network of each
+ * lineage by keeping the fittest of a few type 3 daughters each cycle. Checks
+ * that every lineage runs its cycles through the engine, that the first
+ * lineage, which starts from the initial network, reports a network at least
+ * as fit as it, and that the report names the engine. Also checks that a
+ * request which sets both an engine and workers is rejected. The test fails
+ * if any check fails.
+ */
+public class Test_SeqEvo_LineageEngine {
+    
+    static class HillClimbingEngine implements SeqEvo.LineageEngine{
+        final AtomicInteger cycles = new AtomicInteger(0);
+        
+        @Override
+        public SeqEvo.LineageStep getLineageStep(int lineageIndex, SeqEvo.LineageContext context){
+            IScorer scorer = context.getScorer();
+            return (network, cycleIndex) -> {
+                cycles.incrementAndGet();
+                IDomainBasedEncodedScoredNetwork fittest = network;
+                for(IDomainBasedEncodedScoredNetwork daughter : context.getType3Mutations(network, 4)){
+                    if (scorer.compareFitness(daughter, fittest) > 0) fittest = daughter;
+                }
+                return new SeqEvo.LineageCycleReport(fittest, fittest, new Number[] {fittest.getBigIntegerScore()});
+            };
+        }
+    }
+    
+    public static void main(String[] args){
+        int NL = 3;
+        int CPL = 40;
+        
+        Map<String,String> parameters = new TreeMap<>();{
+            parameters.put(SeqEvo.NL_LABEL, String.valueOf(NL));
+            parameters.put(SeqEvo.CPL_LABEL, String.valueOf(CPL));
+        }
+        Map<String,String> fixedDomains = new TreeMap<>();{
+        }
+        Map<String,String> variableDomains = new TreeMap<>();{
+            variableDomains.put("Domain-1", "AATTCCGG");
+            variableDomains.put("Domain-2", "AATTCCGG");
+            variableDomains.put("Domain-3", "AATTCCGG");
+            variableDomains.put("Domain-4", "AATTCCGG");
+        }
+        Map<String,String[]> oligomerDomains = new TreeMap<>();{
+            oligomerDomains.put("Duplex-1-Top", new String[] {"Domain-1"});
+            oligomerDomains.put("Duplex-1-Bottom", new String[] {"c.Domain-1"});
+            oligomerDomains.put("Duplex-2-Top", new String[] {"Domain-2"});
+            oligomerDomains.put("Duplex-2-Bottom", new String[] {"c.Domain-2"});
+            oligomerDomains.put("Duplex-3-Top", new String[] {"Domain-3"});
+            oligomerDomains.put("Duplex-3-Bottom", new String[] {"c.Domain-3"});
+            oligomerDomains.put("Duplex-4-Top", new String[] {"Domain-4"});
+            oligomerDomains.put("Duplex-4-Bottom", new String[] {"c.Domain-4"});
+        }
+        
+        HillClimbingEngine engine = new HillClimbingEngine();
+        SeqEvo.Request request = new SeqEvo.Request(parameters, fixedDomains, variableDomains, oligomerDomains, null);
+        request.engine = engine;
+        SeqEvo.Report report = new SeqEvo().run(request);
+        
+        int failures = 0;
+        // the engine cannot be sent to workers, so a request which sets both is rejected before it runs.
+        Map<String,String> workerParameters = new TreeMap<>(parameters);
+        workerParameters.put(SeqEvo.WORKERS_LABEL, "127.0.0.1:1");
+        SeqEvo.Request workerRequest = new SeqEvo.Request(workerParameters, fixedDomains, variableDomains, oligomerDomains, null);
+        workerRequest.engine = new HillClimbingEngine();
+        try{
+            new SeqEvo().run(workerRequest);
+            System.out.println("A request with its own engine and workers was run.");
+            failures++;
+        } catch (IllegalArgumentException e){
+            System.out.println("A request with its own engine and workers was rejected: "+e.getMessage());
+        }
+        
+        if (engine.cycles.get() != NL*CPL){
+            System.out.println("The engine ran "+engine.cycles.get()+" cycles instead of "+(NL*CPL)+".");
+            failures++;
+        }
+        BigInteger initialScore = report.initialNetwork.getBigIntegerScore();
+        for(int i = 0; i < NL; i++){
+            // the trajectory holds the score of the initial network of the lineage and one score per cycle.
+            if (report.lineageFittestScores[i].length != CPL+1){
+                System.out.println("Lineage "+i+" reported "+report.lineageFittestScores[i].length+" scores instead of "+(CPL+1)+".");
+                failures++;
+            }
+            BigInteger score = report.lineageFittestNetworks[i].getBigIntegerScore();
+            if (i == 0 && score.compareTo(initialScore) > 0){
+                System.out.println("Lineage 0 reported a network scoring "+score+", less fit than the initial network scoring "+initialScore+".");
+                failures++;
+            }
+            System.out.println("Lineage "+i+": "+score+". "+report.lineageStopReasons[i]);
+        }
+        if (!HillClimbingEngine.class.getName().equals(report.usedParameters.get(SeqEvo.ENGINE_LABEL))){
+            System.out.println("The report names the engine "+report.usedParameters.get(SeqEvo.ENGINE_LABEL)+".");
+            failures++;
+        }
+        
+        if (failures > 0){
+            System.out.println("FAILED: "+failures+" checks failed.");
+            System.exit(1);
+        }
+        System.out.println("PASSED: "+NL+" lineages ran "+CPL+" cycles each through the engine of the request.");
+        System.exit(0);
+    }
+    
+}
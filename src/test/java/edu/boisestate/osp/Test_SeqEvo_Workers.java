@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2019 Boise State University
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package edu.boisestate.osp;
+
+import edu.boisestate.osp.networks.IDomainBasedEncodedScoredNetwork;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigInteger;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Starts several worker processes on the loopback address and runs SeqEvo
+ * with its lineages divided among them. First, jobs with an unknown base and
+ * with an unknown domain are sent to the first worker, which must answer each
+ * with an ERROR message and keep serving. The first run checks that the results
+ * of every worker are merged: each lineage returns a network and a stop
+ * reason, and the final network is the fittest of them. The second run sets
+ * the target score to a score reached by every lineage of the first run, and
+ * checks that every lineage, on every worker, stops because a lineage reached
+ * it, long before its cycle limit. The test fails if any check fails.
+ */
+public class Test_SeqEvo_Workers {
+    
+    public static void main(String[] args){
+        int numberWorkers = 3;
+        int NL = 6;
+        
+        List<Process> workers = new ArrayList<>();
+        int failures = 0;
+        try{
+            StringBuilder addresses = new StringBuilder();
+            for(int i = 0; i < numberWorkers; i++){
+                Process worker = new ProcessBuilder("java", "-cp", System.getProperty("java.class.path"), "edu.boisestate.osp.SeqEvo", "--worker", "0").redirectErrorStream(true).start();
+                workers.add(worker);
+                if (i > 0) addresses.append(",");
+                addresses.append("127.0.0.1:").append(getPort(worker, i));
+            }
+            
+            // malformed jobs are rejected, and the worker then takes part in the runs below.
+            int firstPort = Integer.parseInt(addresses.substring(addresses.indexOf(":")+1, (numberWorkers > 1) ? addresses.indexOf(",") : addresses.length()));
+            Map<String,String> badBaseDomains = getVariableDomains();
+            badBaseDomains.put("Domain-2", "AATTXCGG");
+            failures += checkRejected(firstPort, badBaseDomains, getOligomerDomains(), "unknown base");
+            Map<String,String[]> badDomainOligomers = getOligomerDomains();
+            badDomainOligomers.put("Duplex-5-Top", new String[] {"Domain-5"});
+            failures += checkRejected(firstPort, getVariableDomains(), badDomainOligomers, "unknown domain");
+            
+            Map<String,String> parameters = new TreeMap<>();
+            parameters.put(SeqEvo.WORKERS_LABEL, addresses.toString());
+            parameters.put(SeqEvo.NL_LABEL, String.valueOf(NL));
+            parameters.put(SeqEvo.CPL_LABEL, "20");
+            SeqEvo.Report merged = run(parameters);
+            failures += checkMerged(merged, NL);
+            
+            // every lineage of the first run reached the least fit of their scores.
+            BigInteger targetScore = getScore(merged.lineageFittestNetworks[0]);
+            for(int i = 1; i < NL; i++){
+                targetScore = targetScore.max(getScore(merged.lineageFittestNetworks[i]));
+            }
+            parameters.put(SeqEvo.CPL_LABEL, "1000000");
+            parameters.put(SeqEvo.MOT_LABEL, "120");
+            parameters.put(SeqEvo.TS_LABEL, targetScore.toString());
+            SeqEvo.Report targeted = run(parameters);
+            failures += checkMerged(targeted, NL);
+            for(int i = 0; i < NL; i++){
+                String reason = targeted.lineageStopReasons[i];
+                System.out.println("Lineage "+i+": "+reason);
+                if (reason == null || !reason.contains("target score")){
+                    System.out.println("Lineage "+i+" did not stop at the target score "+targetScore+": "+reason);
+                    failures++;
+                }
+            }
+        } catch (IOException e){
+            System.out.println("Could not start workers: "+e.getMessage());
+            failures++;
+        } finally {
+            for(Process worker : workers){
+                worker.destroy();
+            }
+        }
+        
+        if (failures > 0){
+            System.out.println("FAILED: "+failures+" checks failed.");
+            System.exit(1);
+        }
+        System.out.println("PASSED: the results of "+numberWorkers+" workers were merged and a target score reached on one worker stopped every lineage.");
+        System.exit(0);
+    }
+    
+    // returns the port printed by the worker once it listens, and then keeps printing its output.
+    static int getPort(Process worker, int workerIndex) throws IOException{
+        BufferedReader reader = new BufferedReader(new InputStreamReader(worker.getInputStream()));
+        String line;
+        while((line = reader.readLine()) != null){
+            System.out.println("Worker "+workerIndex+": "+line);
+            if (line.startsWith("SeqEvo worker listening on ")){
+                int port = Integer.parseInt(line.substring(line.lastIndexOf(' ')+1, line.length()-1));
+                CompletableFuture.runAsync(() -> {
+                    try{
+                        String l;
+                        while((l = reader.readLine()) != null){
+                            System.out.println("Worker "+workerIndex+": "+l);
+                        }
+                    } catch (IOException e){
+                        // the worker has stopped.
+                    }
+                });
+                return port;
+            }
+        }
+        throw new IOException("Worker "+workerIndex+" stopped before listening.");
+    }
+    
+    static SeqEvo.Report run(Map<String,String> parameters){
+        SeqEvo.Request request = new SeqEvo.Request(new TreeMap<>(parameters), new TreeMap<>(), getVariableDomains(), getOligomerDomains(), System.out);
+        return new SeqEvo().run(request);
+    }
+    
+    static Map<String,String> getVariableDomains(){
+        Map<String,String> variableDomains = new TreeMap<>();{
+            variableDomains.put("Domain-1", "AATTCCGG");
+            variableDomains.put("Domain-2", "AATTCCGG");
+            variableDomains.put("Domain-3", "AATTCCGG");
+            variableDomains.put("Domain-4", "AATTCCGG");
+        }
+        return variableDomains;
+    }
+    
+    static Map<String,String[]> getOligomerDomains(){
+        Map<String,String[]> oligomerDomains = new TreeMap<>();{
+            oligomerDomains.put("Duplex-1-Top", new String[] {"Domain-1"});
+            oligomerDomains.put("Duplex-1-Bottom", new String[] {"c.Domain-1"});
+            oligomerDomains.put("Duplex-2-Top", new String[] {"Domain-2"});
+            oligomerDomains.put("Duplex-2-Bottom", new String[] {"c.Domain-2"});
+            oligomerDomains.put("Duplex-3-Top", new String[] {"Domain-3"});
+            oligomerDomains.put("Duplex-3-Bottom", new String[] {"c.Domain-3"});
+            oligomerDomains.put("Duplex-4-Top", new String[] {"Domain-4"});
+            oligomerDomains.put("Duplex-4-Bottom", new String[] {"c.Domain-4"});
+        }
+        return oligomerDomains;
+    }
+    
+    // sends a job with the given domains to the worker. returns 1 unless the worker answers with an ERROR message whose reason holds the expected text.
+    static int checkRejected(int port, Map<String,String> variableDomains, Map<String,String[]> oligomerDomains, String expected){
+        try (Socket socket = new Socket("127.0.0.1", port)){
+            socket.setSoTimeout(LineageProtocol.READ_TIMEOUT_MILLIS);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            Map<String,String> parameters = new TreeMap<>();
+            parameters.put(SeqEvo.NL_LABEL, "1");
+            out.writeByte(LineageProtocol.JOB);
+            out.writeInt(LineageProtocol.MAGIC);
+            out.writeInt(LineageProtocol.VERSION);
+            BinaryFormat.writeMap(out, parameters);
+            BinaryFormat.writeMap(out, new TreeMap<>());
+            BinaryFormat.writeMap(out, variableDomains);
+            BinaryFormat.writeListMap(out, oligomerDomains);
+            out.writeInt(1);
+            out.writeInt(0);
+            out.flush();
+            byte type;
+            while((type = in.readByte()) == LineageProtocol.HEARTBEAT){
+            }
+            String reason = (type == LineageProtocol.ERROR) ? BinaryFormat.readString(in) : null;
+            if (reason == null || !reason.contains(expected)){
+                System.out.println("Job with an "+expected+" was answered with message "+type+" instead of an error: "+reason);
+                return 1;
+            }
+            System.out.println("Job with an "+expected+" was rejected: "+reason);
+            return 0;
+        } catch (IOException e){
+            System.out.println("Job with an "+expected+" was not answered: "+e);
+            return 1;
+        }
+    }
+    
+    // returns the number of failed checks of the merged results of every lineage.
+    static int checkMerged(SeqEvo.Report report, int NL){
+        int failures = 0;
+        if (report.lineageFittestNetworks.length != NL || report.lineageStopReasons.length != NL || report.lineageFittestScores.length != NL){
+            System.out.println("Received the results of "+report.lineageFittestNetworks.length+" lineages instead of "+NL+".");
+            return 1;
+        }
+        BigInteger fittestScore = null;
+        for(int i = 0; i < NL; i++){
+            String reason = report.lineageStopReasons[i];
+            if (report.lineageFittestNetworks[i] == null || reason == null || reason.startsWith("Lost worker")){
+                System.out.println("Lineage "+i+" returned no result: "+reason);
+                failures++;
+                continue;
+            }
+            BigInteger score = getScore(report.lineageFittestNetworks[i]);
+            if (fittestScore == null || score.compareTo(fittestScore) < 0) fittestScore = score;
+        }
+        if (fittestScore != null && getScore(report.finalNetwork).compareTo(fittestScore) != 0){
+            System.out.println("Final network scored "+report.finalNetwork.getScore()+" instead of the fittest lineage score "+fittestScore+".");
+            failures++;
+        }
+        return failures;
+    }
+    
+    static BigInteger getScore(IDomainBasedEncodedScoredNetwork network){
+        return new BigInteger(String.valueOf(network.getScore()));
+    }
+}